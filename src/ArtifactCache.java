@@ -0,0 +1,514 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 本地内容寻址缓存：对象按 SHA-1 存放，索引记录 URL -> 哈希及 ETag/Last-Modified，超过容量按最近最少使用淘汰。
+// 对象只在 fetch、withObject 的回调期间交给调用方，这期间对象被钉住，其他线程写入触发的淘汰会跳过它
+public class ArtifactCache {
+    private static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024 * 1024;
+    private static final long SAVE_DELAY_SECONDS = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ArtifactCache INSTANCE = new ArtifactCache(
+            new File(System.getProperty("user.home"), ".minecrafttoolkit/cache"));
+
+    public static ArtifactCache getInstance() {
+        return INSTANCE;
+    }
+
+    // 读取或复制缓存对象的回调，执行期间对象不会被淘汰
+    public interface ObjectAction<T> {
+        T apply(File object) throws IOException;
+    }
+
+    private final File root;
+    private final File objectsDir;
+    private final File indexFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "artifact-cache-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 以下字段由 this 保护；对象大小、引用计数和按哈希的访问时间由索引推导，不单独持久化
+    private Index index;
+    private boolean saveScheduled;
+    private final Map<String, Long> objectSizes = new HashMap<>();
+    private final Map<String, Integer> refCounts = new HashMap<>();
+    // 对象 -> 最近访问时间，按访问顺序排列，最久没用的在前，淘汰时从头依次删除，不必每次排序
+    private final Map<String, Long> hashAccess = new LinkedHashMap<>(16, 0.75f, true);
+    // 正在被回调使用的对象 -> 使用次数
+    private final Map<String, Integer> pins = new HashMap<>();
+    private long totalBytes;
+
+    private ArtifactCache(File root) {
+        this.root = root;
+        this.objectsDir = new File(root, "objects");
+        this.indexFile = new File(root, "index.json");
+        objectsDir.mkdirs();
+        index = loadIndex();
+        List<Entry> entries = new ArrayList<>(index.entries.values());
+        entries.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+        for (Entry entry : entries) {
+            addRef(entry.sha1, entry.size);
+            hashAccess.merge(entry.sha1, entry.lastAccess, Math::max);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::saveIndex));
+    }
+
+    public synchronized long getMaxBytes() {
+        return index.maxBytes;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        index.maxBytes = Math.max(0, maxBytes);
+        evictIfNeeded(null);
+        scheduleSave();
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public File objectFile(String sha1) {
+        String hash = sha1.toLowerCase();
+        return new File(new File(objectsDir, hash.substring(0, 2)), hash);
+    }
+
+    // 按内容哈希查找，命中时钉住对象并在回调中使用，返回回调的结果；未命中返回 null，不调用回调
+    public <T> T withObject(String sha1, ObjectAction<T> action) throws IOException {
+        String hash = sha1.toLowerCase();
+        if (!pin(hash)) {
+            return null;
+        }
+        try {
+            return action.apply(objectFile(hash));
+        } finally {
+            unpin(hash);
+        }
+    }
+
+    // 对象存在时钉住并更新访问时间
+    private boolean pin(String hash) {
+        File object = objectFile(hash);
+        if (!object.isFile()) {
+            return false;
+        }
+        synchronized (this) {
+            if (!object.isFile()) {
+                return false;
+            }
+            pins.merge(hash, 1, Integer::sum);
+            if (refCounts.containsKey(hash)) {
+                hashAccess.put(hash, System.currentTimeMillis());
+            }
+            scheduleSave();
+        }
+        return true;
+    }
+
+    // 最后一个使用者放开后，补上钉住期间被跳过的淘汰
+    private synchronized void unpin(String hash) {
+        Integer count = pins.get(hash);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            pins.put(hash, count - 1);
+            return;
+        }
+        pins.remove(hash);
+        evictIfNeeded(null);
+    }
+
+    // 按 URL 查找缓存记录；对象文件丢失或大小不符时顺带清理记录
+    public synchronized Entry lookup(String url) {
+        Entry entry = index.entries.get(url);
+        if (entry == null) {
+            return null;
+        }
+        File object = objectFile(entry.sha1);
+        if (!object.isFile() || object.length() != entry.size) {
+            index.entries.remove(url);
+            dropRef(entry.sha1);
+            scheduleSave();
+            return null;
+        }
+        return entry;
+    }
+
+    public synchronized void touch(Entry entry) {
+        entry.lastAccess = System.currentTimeMillis();
+        if (refCounts.containsKey(entry.sha1)) {
+            hashAccess.put(entry.sha1, entry.lastAccess);
+        }
+        scheduleSave();
+    }
+
+    // 为请求加上条件头，服务器返回 304 即说明缓存仍然有效
+    public static void applyValidators(HttpURLConnection connection, Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        if (entry.etag != null) {
+            connection.setRequestProperty("If-None-Match", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", entry.lastModified);
+        }
+    }
+
+    public static boolean isUnchanged(HttpURLConnection connection, Entry entry) throws IOException {
+        if (entry == null) {
+            return false;
+        }
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return true;
+        }
+        // 部分服务器对 HEAD 忽略条件头，这里再比对一次 ETag
+        String etag = connection.getHeaderField("ETag");
+        return etag != null && etag.equals(entry.etag)
+                && connection.getContentLengthLong() == entry.size;
+    }
+
+    // 取得 URL 对应的文件并在回调中使用：已知哈希直接命中；否则带条件头请求，未修改则复用缓存，修改了则边下载边哈希写入缓存
+    public <T> T fetch(URL url, String expectedSha1, ObjectAction<T> action) throws IOException {
+        String hash = fetchPinned(url, expectedSha1);
+        try {
+            return action.apply(objectFile(hash));
+        } finally {
+            unpin(hash);
+        }
+    }
+
+    // 取得 URL 对应的文件并复制到 target
+    public void fetchTo(URL url, String expectedSha1, File target) throws IOException {
+        fetch(url, expectedSha1, object -> {
+            materialize(object, target);
+            return null;
+        });
+    }
+
+    // 返回已钉住的对象哈希，调用方用完后 unpin
+    private String fetchPinned(URL url, String expectedSha1) throws IOException {
+        String key = url.toString();
+        if (expectedSha1 != null && pin(expectedSha1.toLowerCase())) {
+            return expectedSha1.toLowerCase();
+        }
+        Entry entry = lookup(key);
+
+        // 网络部分与其他下载共用调度器的连接数和带宽预算
+        DownloadScheduler scheduler = DownloadScheduler.getInstance();
+        String host = url.getHost();
+        acquireConnection(scheduler, host);
+        try {
+            return fetchFromNetwork(url, key, entry, expectedSha1, scheduler);
+        } finally {
+            scheduler.releaseConnection(host);
+        }
+    }
+
+    // 不经过缓存，直接下载到 target，边写边校验，校验通过后才替换 target。
+    // 用于游戏目录里本身就按哈希存放的资源文件：再存一份进缓存只会让写入量和占用翻倍
+    public void download(URL url, String expectedSha1, File target) throws IOException {
+        DownloadScheduler scheduler = DownloadScheduler.getInstance();
+        String host = url.getHost();
+        acquireConnection(scheduler, host);
+        try {
+            HttpURLConnection connection = DownloadEngine.openConnection(url);
+            try {
+                connection.setRequestMethod("GET");
+                int code = connection.getResponseCode();
+                if (code != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("响应码: " + code);
+                }
+                target.getParentFile().mkdirs();
+                File temp = File.createTempFile("download", ".part", target.getParentFile());
+                String sha1 = receive(connection, temp, scheduler);
+                if (expectedSha1 != null && !expectedSha1.equalsIgnoreCase(sha1)) {
+                    temp.delete();
+                    throw new IOException("文件校验失败，期望 " + expectedSha1 + "，实际 " + sha1);
+                }
+                moveIntoPlace(temp, target);
+            } finally {
+                connection.disconnect();
+            }
+        } finally {
+            scheduler.releaseConnection(host);
+        }
+    }
+
+    private static void acquireConnection(DownloadScheduler scheduler, String host) throws IOException {
+        try {
+            scheduler.acquireConnection(host);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("下载被中断");
+        }
+    }
+
+    // 把响应写入 temp 并返回其 SHA-1；失败时删除 temp
+    private static String receive(HttpURLConnection connection, File temp, DownloadScheduler scheduler) throws IOException {
+        MessageDigest digest = DownloadEngine.newDigest("SHA-1");
+        try (InputStream in = new DigestInputStream(connection.getInputStream(), digest);
+             OutputStream out = new FileOutputStream(temp)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                scheduler.throttle(bytesRead);
+                out.write(buffer, 0, bytesRead);
+            }
+        } catch (InterruptedException e) {
+            temp.delete();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("下载被中断");
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        return DownloadEngine.toHex(digest.digest());
+    }
+
+    private String fetchFromNetwork(URL url, String key, Entry entry, String expectedSha1,
+                                    DownloadScheduler scheduler) throws IOException {
+        HttpURLConnection connection;
+        try {
+            connection = DownloadEngine.openConnection(url);
+            connection.setRequestMethod("GET");
+            applyValidators(connection, expectedSha1 == null ? entry : null);
+            connection.connect();
+            if (expectedSha1 == null && isUnchanged(connection, entry)) {
+                connection.disconnect();
+                touch(entry);
+                if (pin(entry.sha1)) {
+                    return entry.sha1;
+                }
+                // 确认期间对象被淘汰了，不带条件头重新下载
+                return fetchFromNetwork(url, key, null, null, scheduler);
+            }
+        } catch (IOException e) {
+            // 离线时退回到已有的缓存
+            if (entry != null && expectedSha1 == null) {
+                touch(entry);
+                if (pin(entry.sha1)) {
+                    return entry.sha1;
+                }
+            }
+            throw e;
+        }
+
+        try {
+            int code = connection.getResponseCode();
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("响应码: " + code);
+            }
+            File temp = File.createTempFile("download", ".part", objectsDir);
+            String sha1 = receive(connection, temp, scheduler);
+            if (expectedSha1 != null && !expectedSha1.equalsIgnoreCase(sha1)) {
+                temp.delete();
+                throw new IOException("文件校验失败，期望 " + expectedSha1 + "，实际 " + sha1);
+            }
+            store(key, temp, sha1, connection.getHeaderField("ETag"),
+                    connection.getHeaderField("Last-Modified"), true);
+            return sha1;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // 把已经下载好的文件复制一份登记进缓存。不用硬链接：用户就地修改文件时不能连带改掉按哈希存放的对象
+    public void put(String url, File file, String sha1, String etag, String lastModified) throws IOException {
+        sha1 = sha1.toLowerCase();
+        if (objectFile(sha1).isFile() && store(url, null, sha1, etag, lastModified, false)) {
+            return;
+        }
+        if (file.length() > getMaxBytes()) {
+            return;
+        }
+        File temp = File.createTempFile("import", ".part", objectsDir);
+        Files.copy(file.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        store(url, temp, sha1, etag, lastModified, false);
+    }
+
+    // 把缓存对象复制到目标位置，替换目标原有的文件
+    public void materialize(File object, File target) throws IOException {
+        target.getParentFile().mkdirs();
+        Files.deleteIfExists(target.toPath());
+        Files.copy(object.toPath(), target.toPath());
+    }
+
+    // 把临时文件放到对象位置并登记；对象已存在时丢弃临时文件。在锁内完成，检查和登记之间对象不会被淘汰。
+    // temp 为 null 且对象不存在时返回 false
+    private synchronized boolean store(String url, File temp, String sha1, String etag, String lastModified,
+                                       boolean pin) throws IOException {
+        String hash = sha1.toLowerCase();
+        File object = objectFile(hash);
+        if (object.isFile()) {
+            if (temp != null) {
+                temp.delete();
+            }
+        } else if (temp != null) {
+            object.getParentFile().mkdirs();
+            moveIntoPlace(temp, object);
+        } else {
+            return false;
+        }
+        if (pin) {
+            pins.merge(hash, 1, Integer::sum);
+        }
+        record(url, hash, object.length(), etag, lastModified);
+        return true;
+    }
+
+    private static void moveIntoPlace(File temp, File object) throws IOException {
+        try {
+            Files.move(temp.toPath(), object.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), object.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private synchronized void record(String url, String sha1, long size, String etag, String lastModified) {
+        Entry entry = new Entry();
+        entry.sha1 = sha1.toLowerCase();
+        entry.size = size;
+        entry.etag = etag;
+        entry.lastModified = lastModified;
+        entry.lastAccess = System.currentTimeMillis();
+        Entry old = index.entries.put(url, entry);
+        addRef(entry.sha1, size);
+        hashAccess.put(entry.sha1, entry.lastAccess);
+        if (old != null) {
+            dropRef(old.sha1);
+        }
+        evictIfNeeded(entry.sha1);
+        scheduleSave();
+    }
+
+    // 调用方持有 this；按对象最近访问时间从旧到新删除，直到总量回到上限以内，刚写入的和被钉住的对象保留
+    private void evictIfNeeded(String keepHash) {
+        long excess = totalBytes - index.maxBytes;
+        if (excess <= 0) {
+            return;
+        }
+        // 只遍历不访问，不会改变顺序；找够要腾出的空间就停
+        List<String> victims = new ArrayList<>();
+        for (String hash : hashAccess.keySet()) {
+            if (excess <= 0) {
+                break;
+            }
+            if (hash.equals(keepHash) || pins.containsKey(hash)) {
+                continue;
+            }
+            victims.add(hash);
+            excess -= objectSizes.getOrDefault(hash, 0L);
+        }
+        for (String hash : victims) {
+            removeObject(hash);
+        }
+    }
+
+    // 调用方持有 this；删除对象及引用它的全部记录
+    private void removeObject(String hash) {
+        index.entries.values().removeIf(entry -> entry.sha1.equals(hash));
+        refCounts.put(hash, 1);
+        dropRef(hash);
+    }
+
+    private void addRef(String sha1, long size) {
+        if (refCounts.merge(sha1, 1, Integer::sum) == 1) {
+            objectSizes.put(sha1, size);
+            totalBytes += size;
+        }
+    }
+
+    // 最后一个引用消失时删除对象文件
+    private void dropRef(String sha1) {
+        Integer count = refCounts.get(sha1);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            refCounts.put(sha1, count - 1);
+            return;
+        }
+        refCounts.remove(sha1);
+        hashAccess.remove(sha1);
+        Long size = objectSizes.remove(sha1);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        objectFile(sha1).delete();
+    }
+
+    private Index loadIndex() {
+        if (indexFile.isFile()) {
+            try {
+                Index loaded = objectMapper.readValue(indexFile, Index.class);
+                if (loaded.entries == null) {
+                    loaded.entries = new LinkedHashMap<>();
+                }
+                return loaded;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return new Index();
+    }
+
+    // 索引写入做合并，批量安装时不会每个文件都重写一次
+    private void scheduleSave() {
+        if (saveScheduled) {
+            return;
+        }
+        saveScheduled = true;
+        saver.schedule(this::saveIndex, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private synchronized void saveIndex() {
+        saveScheduled = false;
+        // 在按访问排序的表上 get 也算一次访问，复制一份再查，不打乱淘汰顺序
+        Map<String, Long> accessTimes = new HashMap<>(hashAccess);
+        for (Entry entry : index.entries.values()) {
+            Long accessed = accessTimes.get(entry.sha1);
+            if (accessed != null && accessed > entry.lastAccess) {
+                entry.lastAccess = accessed;
+            }
+        }
+        root.mkdirs();
+        File temp = new File(root, "index.json.tmp");
+        try {
+            objectMapper.writeValue(temp, index);
+            moveIntoPlace(temp, indexFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static class Entry {
+        public String sha1;
+        public long size;
+        public String etag;
+        public String lastModified;
+        public long lastAccess;
+    }
+
+    public static class Index {
+        public long maxBytes = DEFAULT_MAX_BYTES;
+        public Map<String, Entry> entries = new LinkedHashMap<>();
+    }
+}
\ No newline at end of file
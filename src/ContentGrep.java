@@ -0,0 +1,227 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+// 并行文件内容查找：文本文件分块读入每个线程复用的缓冲区，按字节比较，不把整个文件解码成字符串。
+// 不用内存映射：映射要等垃圾回收才解除，在 Windows 上会一直锁住查找过的文件，日志无法轮转或删除
+public class ContentGrep {
+    // 超过此大小的文件不查找
+    private static final long MAX_FILE_SIZE = 256L * 1024 * 1024;
+    // 文件开头出现 0 字节即视为二进制文件
+    private static final int BINARY_PROBE_BYTES = 4096;
+    private static final int SNIPPET_LENGTH = 120;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(CHUNK_SIZE));
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    public static class Match {
+        private final Path path;
+        private final int line;
+        private final String snippet;
+
+        Match(Path path, int line, String snippet) {
+            this.path = path;
+            this.line = line;
+            this.snippet = snippet;
+        }
+
+        public Path getPath() { return path; }
+        public int getLine() { return line; }
+        public String getSnippet() { return snippet; }
+    }
+
+    // 阻塞直到全部文件查找完毕或 cancelled 返回 true；每个命中的文件回调一次（首个匹配位置）
+    public static void search(Collection<Path> files, String text, boolean ignoreCase,
+                              BooleanSupplier cancelled, Consumer<Match> consumer) throws InterruptedException {
+        // 中文文本文件可能是 UTF-8 也可能是 GBK，两种编码的字节序列都查找
+        Set<Charset> charsets = new LinkedHashSet<>();
+        charsets.add(StandardCharsets.UTF_8);
+        if (Charset.isSupported("GBK")) {
+            charsets.add(Charset.forName("GBK"));
+        }
+        List<byte[]> patterns = new ArrayList<>();
+        List<Charset> patternCharsets = new ArrayList<>();
+        for (Charset charset : charsets) {
+            byte[] pattern = (ignoreCase ? text.toLowerCase() : text).getBytes(charset);
+            boolean duplicate = false;
+            for (byte[] existing : patterns) {
+                duplicate |= Arrays.equals(existing, pattern);
+            }
+            if (!duplicate && pattern.length > 0) {
+                patterns.add(pattern);
+                patternCharsets.add(charset);
+            }
+        }
+        if (patterns.isEmpty()) {
+            return;
+        }
+        List<int[]> shifts = new ArrayList<>();
+        for (byte[] pattern : patterns) {
+            shifts.add(shiftTable(pattern, ignoreCase));
+        }
+
+        try {
+            POOL.submit(() -> files.parallelStream().forEach(path -> {
+                if (cancelled.getAsBoolean()) return;
+                Match match = searchFile(path, patterns, shifts, patternCharsets, ignoreCase);
+                if (match != null) {
+                    consumer.accept(match);
+                }
+            })).get();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        }
+    }
+
+    private static Match searchFile(Path path, List<byte[]> patterns, List<int[]> shifts, List<Charset> charsets,
+                                    boolean ignoreCase) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0 || size > MAX_FILE_SIZE) {
+                return null;
+            }
+            ByteBuffer buffer = BUFFERS.get();
+            byte[] bytes = buffer.array();
+            int overlap = 0;
+            for (byte[] pattern : patterns) {
+                overlap = Math.max(overlap, pattern.length - 1);
+            }
+            // bytes[0] 在文件中的位置、它之前的换行数，以及从上一块末尾留下的字节数（跨块的匹配不会漏掉）
+            long base = 0;
+            long newlines = 0;
+            int carried = 0;
+            while (true) {
+                buffer.clear().position(carried);
+                while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                    // 读满一块或到文件末尾
+                }
+                int limit = buffer.position();
+                boolean end = buffer.hasRemaining();
+                if (base == 0) {
+                    for (int i = 0; i < Math.min(limit, BINARY_PROBE_BYTES); i++) {
+                        if (bytes[i] == 0) {
+                            return null;
+                        }
+                    }
+                }
+                // 同一块里取最靠前的匹配，位置相同时按编码的先后
+                int best = -1;
+                int bestPattern = -1;
+                for (int p = 0; p < patterns.size(); p++) {
+                    int offset = indexOf(bytes, limit, patterns.get(p), shifts.get(p), ignoreCase);
+                    if (offset >= 0 && (best < 0 || offset < best)) {
+                        best = offset;
+                        bestPattern = p;
+                    }
+                }
+                if (best >= 0) {
+                    long line = newlines + countNewlines(bytes, 0, best) + 1;
+                    return describe(path, channel, base + best, line, charsets.get(bestPattern));
+                }
+                if (end) {
+                    return null;
+                }
+                int keep = Math.min(overlap, limit);
+                newlines += countNewlines(bytes, 0, limit - keep);
+                System.arraycopy(bytes, limit - keep, bytes, 0, keep);
+                base += limit - keep;
+                carried = keep;
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            // 无权限或被占用的文件跳过
+        }
+        return null;
+    }
+
+    private static int[] shiftTable(byte[] pattern, boolean ignoreCase) {
+        int m = pattern.length;
+        int[] shift = new int[256];
+        Arrays.fill(shift, m);
+        for (int i = 0; i < m - 1; i++) {
+            shift[pattern[i] & 0xFF] = m - 1 - i;
+            if (ignoreCase) {
+                shift[toUpper(pattern[i]) & 0xFF] = m - 1 - i;
+            }
+        }
+        return shift;
+    }
+
+    // Boyer-Moore-Horspool；忽略大小写时只折叠 ASCII 字母，多字节字符按原样比较
+    private static int indexOf(byte[] bytes, int limit, byte[] pattern, int[] shift, boolean ignoreCase) {
+        int m = pattern.length;
+        int position = 0;
+        while (position <= limit - m) {
+            int j = m - 1;
+            while (j >= 0 && matches(bytes[position + j], pattern[j], ignoreCase)) {
+                j--;
+            }
+            if (j < 0) {
+                return position;
+            }
+            position += shift[bytes[position + m - 1] & 0xFF];
+        }
+        return -1;
+    }
+
+    private static long countNewlines(byte[] bytes, int from, int to) {
+        long count = 0;
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n') count++;
+        }
+        return count;
+    }
+
+    private static boolean matches(byte actual, byte expected, boolean ignoreCase) {
+        if (actual == expected) return true;
+        return ignoreCase && actual >= 'A' && actual <= 'Z' && actual + 32 == expected;
+    }
+
+    private static byte toUpper(byte b) {
+        return b >= 'a' && b <= 'z' ? (byte) (b - 32) : b;
+    }
+
+    // 匹配位置 offset 附近读取一小段作为摘要
+    private static Match describe(Path path, FileChannel channel, long offset, long line, Charset charset) throws IOException {
+        long windowStart = Math.max(0, offset - SNIPPET_LENGTH / 2);
+        ByteBuffer window = ByteBuffer.allocate((int) (offset - windowStart) + SNIPPET_LENGTH * 3);
+        while (window.hasRemaining() && channel.read(window, windowStart + window.position()) > 0) {
+            // 读满或到文件末尾
+        }
+        byte[] bytes = window.array();
+        int limit = window.position();
+        int match = (int) (offset - windowStart);
+        // 很长的行（如压缩过的 JSON）只截取匹配位置附近的一段
+        int snippetStart = 0;
+        for (int i = match - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                snippetStart = i + 1;
+                break;
+            }
+        }
+        int lineEnd = match;
+        while (lineEnd < limit && bytes[lineEnd] != '\n' && lineEnd - snippetStart < SNIPPET_LENGTH * 3) {
+            lineEnd++;
+        }
+        String snippet = new String(bytes, snippetStart, lineEnd - snippetStart, charset).trim();
+        if (snippet.length() > SNIPPET_LENGTH) {
+            snippet = snippet.substring(0, SNIPPET_LENGTH) + "...";
+        }
+        return new Match(path, (int) line, snippet);
+    }
+}
\ No newline at end of file
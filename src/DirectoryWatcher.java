@@ -0,0 +1,158 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// 基于 WatchService 的目录监视：同一目录可被多处引用，事件在一个短时间窗口内合并后批量回调
+public class DirectoryWatcher {
+    private static final long COALESCE_MILLIS = 250;
+    // 单个目录积压的变化过多时不再逐项记录，直接让使用方整体重新读取
+    private static final int MAX_PENDING_PER_DIRECTORY = 5000;
+
+    public interface Listener {
+        // 在后台线程回调；changed 为发生变化的直接子项，overflow 为 true 时事件已丢失，需要整体重新读取该目录
+        void directoryChanged(Path directory, Set<Path> changed, boolean overflow);
+    }
+
+    private final WatchService watchService;
+    private final Listener listener;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "directory-watcher-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed;
+
+    // 以下字段由 this 保护
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Map<Path, Integer> refCounts = new HashMap<>();
+    private final Map<Path, Set<Path>> pending = new HashMap<>();
+    private final Set<Path> overflowed = new HashSet<>();
+    private boolean flushScheduled;
+
+    public DirectoryWatcher(Listener listener) throws IOException {
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+
+        Thread pollThread = new Thread(this::pollEvents, "directory-watcher");
+        pollThread.setDaemon(true);
+        pollThread.start();
+    }
+
+    public synchronized void watch(Path directory) {
+        Path dir = directory.toAbsolutePath().normalize();
+        if (refCounts.merge(dir, 1, Integer::sum) > 1) {
+            return;
+        }
+        try {
+            WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            keys.put(dir, key);
+            directories.put(key, dir);
+        } catch (IOException | UnsupportedOperationException e) {
+            // 无权限或文件系统不支持监视时只能手动刷新
+            refCounts.remove(dir);
+        }
+    }
+
+    public synchronized void unwatch(Path directory) {
+        Path dir = directory.toAbsolutePath().normalize();
+        Integer count = refCounts.get(dir);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            refCounts.put(dir, count - 1);
+            return;
+        }
+        refCounts.remove(dir);
+        WatchKey key = keys.remove(dir);
+        if (key != null) {
+            key.cancel();
+            directories.remove(key);
+        }
+        pending.remove(dir);
+        overflowed.remove(dir);
+    }
+
+    public void close() {
+        closed = true;
+        flusher.shutdownNow();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void pollEvents() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            synchronized (this) {
+                Path dir = directories.get(key);
+                List<WatchEvent<?>> events = key.pollEvents();
+                if (dir == null) {
+                    continue;
+                }
+                for (WatchEvent<?> event : events) {
+                    if (event.kind() == OVERFLOW) {
+                        overflowed.add(dir);
+                        continue;
+                    }
+                    Set<Path> changed = pending.computeIfAbsent(dir, k -> new HashSet<>());
+                    changed.add(dir.resolve((Path) event.context()));
+                    if (changed.size() > MAX_PENDING_PER_DIRECTORY) {
+                        pending.remove(dir);
+                        overflowed.add(dir);
+                    }
+                }
+                // 目录本身被删除或不可访问时监视失效，通知使用方重新读取
+                if (!key.reset()) {
+                    keys.remove(dir);
+                    directories.remove(key);
+                    overflowed.add(dir);
+                }
+                scheduleFlush();
+            }
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled || closed) {
+            return;
+        }
+        flushScheduled = true;
+        flusher.schedule(this::flush, COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        Map<Path, Set<Path>> changes;
+        Set<Path> overflow;
+        synchronized (this) {
+            flushScheduled = false;
+            changes = new HashMap<>(pending);
+            overflow = new HashSet<>(overflowed);
+            pending.clear();
+            overflowed.clear();
+        }
+
+        Set<Path> affected = new HashSet<>(changes.keySet());
+        affected.addAll(overflow);
+        for (Path dir : affected) {
+            try {
+                listener.directoryChanged(dir, changes.getOrDefault(dir, Collections.emptySet()), overflow.contains(dir));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
\ No newline at end of file
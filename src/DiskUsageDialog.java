@@ -0,0 +1,267 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// 磁盘占用分析窗口：后台统计指定目录，完成后以矩形树图显示各子目录占用，点击方块进入下一级
+public class DiskUsageDialog extends JDialog {
+    private final FolderSizeScanner.Scan scan;
+    private final Deque<FolderSizeScanner.SizeNode> history = new ArrayDeque<>();
+    private final TreemapPanel treemapPanel = new TreemapPanel();
+    private final JLabel pathLabel = new JLabel();
+    private final JLabel statusLabel = new JLabel("正在统计...");
+    private final JButton upButton = new JButton("↑ 上一级");
+    private final Timer progressTimer;
+    private FolderSizeScanner.SizeNode current;
+
+    public DiskUsageDialog(Frame owner, Path root) {
+        super(owner, "磁盘占用 - " + root, false);
+        setSize(800, 600);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        JToolBar toolBar = new JToolBar();
+        toolBar.setFloatable(false);
+        upButton.setEnabled(false);
+        upButton.addActionListener(e -> goUp());
+        toolBar.add(upButton);
+        toolBar.addSeparator();
+        toolBar.add(pathLabel);
+        pathLabel.setText(root.toString());
+
+        statusLabel.setBorder(BorderFactory.createLoweredBevelBorder());
+        add(toolBar, BorderLayout.NORTH);
+        add(treemapPanel, BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
+
+        scan = FolderSizeScanner.getInstance().scan(root);
+        progressTimer = new Timer(200, e -> updateProgress());
+        progressTimer.start();
+    }
+
+    private void updateProgress() {
+        if (!scan.isDone()) {
+            statusLabel.setText(String.format("正在统计... 已统计 %d 个文件，共 %s",
+                    scan.getFiles(), formatSize(scan.getBytes())));
+            return;
+        }
+        progressTimer.stop();
+        FolderSizeScanner.SizeNode result = scan.getFuture().getNow(null);
+        if (result == null) {
+            statusLabel.setText("统计失败");
+            return;
+        }
+        showNode(result);
+    }
+
+    private void showNode(FolderSizeScanner.SizeNode node) {
+        current = node;
+        pathLabel.setText(node.getPath().toString());
+        upButton.setEnabled(!history.isEmpty());
+        statusLabel.setText(String.format("%s，%d 个文件，%d 个子文件夹",
+                formatSize(node.getSize()), node.getFileCount(), node.getChildren().size()));
+        treemapPanel.setNode(node);
+    }
+
+    private void enter(FolderSizeScanner.SizeNode child) {
+        if (child.getChildren().isEmpty() && child.getFileBytes() == 0) return;
+        history.push(current);
+        showNode(child);
+    }
+
+    private void goUp() {
+        if (!history.isEmpty()) {
+            showNode(history.pop());
+        }
+    }
+
+    @Override
+    public void dispose() {
+        progressTimer.stop();
+        if (!scan.isDone()) {
+            scan.cancel();
+        }
+        super.dispose();
+    }
+
+    static String formatSize(long size) {
+        if (size < 1024) return size + " B";
+        if (size < 1024 * 1024) return String.format("%.1f KB", size / 1024.0);
+        if (size < 1024 * 1024 * 1024) return String.format("%.1f MB", size / (1024.0 * 1024.0));
+        return String.format("%.1f GB", size / (1024.0 * 1024.0 * 1024.0));
+    }
+
+    // 矩形树图：按 squarified 算法排布，尽量让每个方块接近正方形
+    private class TreemapPanel extends JPanel {
+        private final List<Block> blocks = new ArrayList<>();
+        private FolderSizeScanner.SizeNode node;
+        private Dimension laidOutSize;
+
+        TreemapPanel() {
+            setBackground(Color.WHITE);
+            ToolTipManager.sharedInstance().registerComponent(this);
+            addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    if (SwingUtilities.isRightMouseButton(e)) {
+                        goUp();
+                        return;
+                    }
+                    Block block = blockAt(e.getPoint());
+                    if (block != null && block.node != null) {
+                        enter(block.node);
+                    }
+                }
+            });
+        }
+
+        void setNode(FolderSizeScanner.SizeNode node) {
+            this.node = node;
+            laidOutSize = null;
+            repaint();
+        }
+
+        @Override
+        public String getToolTipText(MouseEvent e) {
+            Block block = blockAt(e.getPoint());
+            if (block == null || node == null || node.getSize() == 0) return null;
+            return String.format("%s - %s (%.1f%%)", block.label, formatSize(block.size), block.size * 100.0 / node.getSize());
+        }
+
+        private Block blockAt(Point point) {
+            for (Block block : blocks) {
+                if (block.bounds.contains(point)) return block;
+            }
+            return null;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            if (node == null) return;
+            if (!getSize().equals(laidOutSize)) {
+                layoutBlocks();
+                laidOutSize = getSize();
+            }
+
+            Graphics2D g2d = (Graphics2D) g.create();
+            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            FontMetrics metrics = g2d.getFontMetrics();
+            for (int i = 0; i < blocks.size(); i++) {
+                Block block = blocks.get(i);
+                Rectangle2D.Double r = block.bounds;
+                g2d.setColor(block.node == null ? Color.LIGHT_GRAY : Color.getHSBColor((i * 0.13f) % 1f, 0.35f, 0.95f));
+                g2d.fill(r);
+                g2d.setColor(Color.DARK_GRAY);
+                g2d.draw(r);
+
+                // 方块足够大时才显示名称和大小
+                if (r.width > 40 && r.height > metrics.getHeight() * 2 + 4) {
+                    g2d.setColor(Color.BLACK);
+                    Shape oldClip = g2d.getClip();
+                    g2d.clip(r);
+                    g2d.drawString(block.label, (float) r.x + 4, (float) r.y + metrics.getAscent() + 2);
+                    g2d.drawString(formatSize(block.size), (float) r.x + 4, (float) r.y + metrics.getHeight() + metrics.getAscent() + 2);
+                    g2d.setClip(oldClip);
+                }
+            }
+            g2d.dispose();
+        }
+
+        private void layoutBlocks() {
+            blocks.clear();
+            List<Block> items = new ArrayList<>();
+            for (FolderSizeScanner.SizeNode child : node.getChildren()) {
+                if (child.getSize() > 0) {
+                    items.add(new Block(child.getName(), child.getSize(), child));
+                }
+            }
+            if (node.getFileBytes() > 0) {
+                items.add(new Block("(文件)", node.getFileBytes(), null));
+            }
+            items.sort((a, b) -> Long.compare(b.size, a.size));
+
+            double total = 0;
+            for (Block item : items) {
+                total += item.size;
+            }
+            if (total > 0) {
+                squarify(items, 0, 0, getWidth() - 1, getHeight() - 1, total);
+            }
+            blocks.addAll(items);
+        }
+
+        private void squarify(List<Block> items, double x, double y, double width, double height, double remaining) {
+            int start = 0;
+            while (start < items.size() && width > 0 && height > 0) {
+                double scale = width * height / remaining;
+                double side = Math.min(width, height);
+
+                // 逐个加入当前行，直到最差的长宽比开始变坏
+                int end = start;
+                double rowSize = 0;
+                double worst = Double.MAX_VALUE;
+                double min = Double.MAX_VALUE;
+                double max = 0;
+                while (end < items.size()) {
+                    double size = items.get(end).size;
+                    double rowArea = (rowSize + size) * scale;
+                    double newMin = Math.min(min, size * scale);
+                    double newMax = Math.max(max, size * scale);
+                    double ratio = Math.max(side * side * newMax / (rowArea * rowArea), rowArea * rowArea / (side * side * newMin));
+                    if (end > start && ratio > worst) break;
+                    worst = ratio;
+                    rowSize += size;
+                    min = newMin;
+                    max = newMax;
+                    end++;
+                }
+
+                double rowArea = rowSize * scale;
+                if (width >= height) {
+                    double rowWidth = rowArea / height;
+                    double offset = y;
+                    for (int i = start; i < end; i++) {
+                        double itemHeight = items.get(i).size * scale / rowWidth;
+                        items.get(i).bounds = new Rectangle2D.Double(x, offset, rowWidth, itemHeight);
+                        offset += itemHeight;
+                    }
+                    x += rowWidth;
+                    width -= rowWidth;
+                } else {
+                    double rowHeight = rowArea / width;
+                    double offset = x;
+                    for (int i = start; i < end; i++) {
+                        double itemWidth = items.get(i).size * scale / rowHeight;
+                        items.get(i).bounds = new Rectangle2D.Double(offset, y, itemWidth, rowHeight);
+                        offset += itemWidth;
+                    }
+                    y += rowHeight;
+                    height -= rowHeight;
+                }
+                remaining -= rowSize;
+                start = end;
+            }
+        }
+    }
+
+    private static class Block {
+        final String label;
+        final long size;
+        final FolderSizeScanner.SizeNode node;
+        Rectangle2D.Double bounds = new Rectangle2D.Double();
+
+        Block(String label, long size, FolderSizeScanner.SizeNode node) {
+            this.label = label;
+            this.size = size;
+            this.node = node;
+        }
+    }
+}
\ No newline at end of file
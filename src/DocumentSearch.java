@@ -0,0 +1,415 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// 文档查找引擎：直接在引用文档内部数组的 Segment 上匹配，不把整篇文本复制成字符串；支持正则表达式和忽略大小写。
+// 高亮全部匹配在后台线程上分批进行，每批只短暂持有文档读锁，文档或查询变化后作废重来。
+// 除后台匹配外，所有方法都在事件分发线程上调用
+public class DocumentSearch {
+    private static final Color HIGHLIGHT_COLOR = new Color(255, 235, 120);
+    // 每批最多找这么多处或持有读锁这么久，然后把结果交给界面，让出读锁给编辑
+    private static final int BATCH_MATCHES = 500;
+    private static final long BATCH_NANOS = 20_000_000L;
+    // 单次匹配超过此时长视为失控的正则表达式，停止高亮，以免一直占着读锁卡住输入
+    private static final long MATCH_TIMEOUT_NANOS = 1_000_000_000L;
+    // 高亮太多时绘制和移除都很慢，超出部分只计数
+    private static final int MAX_HIGHLIGHTS = 5000;
+    private static final int RESTART_DELAY_MILLIS = 300;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "document-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final JTextComponent component;
+    private final Highlighter.HighlightPainter painter = new DefaultHighlighter.DefaultHighlightPainter(HIGHLIGHT_COLOR);
+    private final List<Object> highlights = new ArrayList<>();
+    // 文档每次修改、查询每次变化都加一，后台匹配据此判断结果是否过期
+    private final AtomicLong generation = new AtomicLong();
+    private final Timer restartTimer;
+    private Pattern pattern;
+    private Consumer<String> statusListener = status -> { };
+    // 上一次 findNext 找到的空匹配位置，再次查找时跳过它，否则会停在原地
+    private int lastEmptyMatch = -1;
+
+    private final DocumentListener documentListener = new DocumentListener() {
+        public void insertUpdate(DocumentEvent e) { documentChanged(); }
+        public void removeUpdate(DocumentEvent e) { documentChanged(); }
+        public void changedUpdate(DocumentEvent e) { }
+    };
+
+    public DocumentSearch(JTextComponent component) {
+        this.component = component;
+        restartTimer = new Timer(RESTART_DELAY_MILLIS, e -> highlightAll());
+        restartTimer.setRepeats(false);
+        component.getDocument().addDocumentListener(documentListener);
+        // 打开文件时文本组件会换成新的文档对象
+        component.addPropertyChangeListener("document", e -> {
+            if (e.getOldValue() != null) {
+                ((Document) e.getOldValue()).removeDocumentListener(documentListener);
+            }
+            ((Document) e.getNewValue()).addDocumentListener(documentListener);
+            documentChanged();
+        });
+    }
+
+    // 状态文字，例如匹配数量，在事件分发线程上回调
+    public void setStatusListener(Consumer<String> statusListener) {
+        this.statusListener = statusListener;
+    }
+
+    // 编译查询；regex 为 false 时按字面匹配。正则表达式有误时抛出 PatternSyntaxException
+    public static Pattern compile(String text, boolean regex, boolean ignoreCase) {
+        int flags = regex ? Pattern.MULTILINE : Pattern.LITERAL;
+        if (ignoreCase) {
+            flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        }
+        return Pattern.compile(text, flags);
+    }
+
+    // 设置要高亮的查询，null 表示清除高亮
+    public void setQuery(Pattern pattern) {
+        this.pattern = pattern;
+        highlightAll();
+    }
+
+    public void clear() {
+        setQuery(null);
+    }
+
+    private void documentChanged() {
+        generation.incrementAndGet();
+        lastEmptyMatch = -1;
+        if (pattern != null) {
+            restartTimer.restart();
+        }
+    }
+
+    /* ---------------- 查找与替换 ---------------- */
+
+    // 从选区末尾向后查找，到结尾后从头开始；找到时选中匹配并滚动到那里
+    public boolean findNext(Pattern pattern) {
+        DocumentText text = DocumentText.of(component.getDocument());
+        Matcher matcher = pattern.matcher(text);
+        int from = component.getSelectionEnd();
+        boolean found = matcher.find(from);
+        if (found && matcher.end() == matcher.start() && matcher.start() == lastEmptyMatch) {
+            found = from + 1 <= text.length() && matcher.find(from + 1);
+        }
+        if (!found && from > 0) {
+            found = matcher.find(0);
+        }
+        if (!found) return false;
+
+        lastEmptyMatch = matcher.start() == matcher.end() ? matcher.start() : -1;
+        component.setCaretPosition(matcher.start());
+        component.moveCaretPosition(matcher.end());
+        return true;
+    }
+
+    // 当前选区恰好是一处匹配时替换它，返回是否替换。expand 为 true 时替换串中的 $n、${name} 引用分组
+    public boolean replaceSelection(Pattern pattern, String replacement, boolean expand) {
+        int start = component.getSelectionStart();
+        int end = component.getSelectionEnd();
+        Document document = component.getDocument();
+        Matcher matcher = pattern.matcher(DocumentText.of(document));
+        // 透明边界：前后查看和 ^、$ 能看到选区外的文本，与整篇查找时的结果一致
+        matcher.region(start, end).useTransparentBounds(true).useAnchoringBounds(false);
+        if (!matcher.matches()) return false;
+
+        String text = expand ? expand(matcher, replacement) : replacement;
+        replace(document, start, end, text);
+        component.setCaretPosition(start + text.length());
+        return true;
+    }
+
+    // 先找出全部匹配，再从后往前逐个替换：前面的匹配位置不受影响，文档内部的间隙也只需一路向前移动。
+    // 调用方可以把这期间产生的编辑合并成一个可撤销的复合编辑
+    public int replaceAll(Pattern pattern, String replacement, boolean expand) {
+        Document document = component.getDocument();
+        Matcher matcher = pattern.matcher(DocumentText.of(document));
+        List<int[]> ranges = new ArrayList<>();
+        List<String> replacements = new ArrayList<>();
+        while (matcher.find()) {
+            ranges.add(new int[]{matcher.start(), matcher.end()});
+            replacements.add(expand ? expand(matcher, replacement) : replacement);
+        }
+        if (ranges.isEmpty()) return 0;
+
+        removeHighlights();
+        for (int i = ranges.size() - 1; i >= 0; i--) {
+            replace(document, ranges.get(i)[0], ranges.get(i)[1], replacements.get(i));
+        }
+        return ranges.size();
+    }
+
+    // 替换后的文字沿用原位置的字符样式
+    private static void replace(Document document, int start, int end, String text) {
+        AttributeSet attributes = document instanceof StyledDocument
+                ? ((StyledDocument) document).getCharacterElement(start).getAttributes() : null;
+        try {
+            if (document instanceof AbstractDocument) {
+                ((AbstractDocument) document).replace(start, end - start, text, attributes);
+            } else {
+                document.remove(start, end - start);
+                document.insertString(start, text, attributes);
+            }
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 与 Matcher.appendReplacement 相同的替换串语法：$n、${name} 引用分组，\ 转义下一个字符
+    private static String expand(Matcher matcher, String replacement) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < replacement.length(); i++) {
+            char c = replacement.charAt(i);
+            if (c == '\\' && i + 1 < replacement.length()) {
+                result.append(replacement.charAt(++i));
+            } else if (c == '$' && i + 1 < replacement.length() && replacement.charAt(i + 1) == '{') {
+                int close = replacement.indexOf('}', i + 2);
+                if (close < 0) throw new IllegalArgumentException("替换串中的 ${ 缺少 }");
+                String value = matcher.group(replacement.substring(i + 2, close));
+                if (value != null) result.append(value);
+                i = close;
+            } else if (c == '$' && i + 1 < replacement.length() && Character.isDigit(replacement.charAt(i + 1))) {
+                int group = replacement.charAt(++i) - '0';
+                if (group > matcher.groupCount()) throw new IndexOutOfBoundsException("没有第 " + group + " 组");
+                // 与 Matcher 一样，分组号有效时继续读入后面的数字
+                while (i + 1 < replacement.length() && Character.isDigit(replacement.charAt(i + 1))) {
+                    int next = group * 10 + (replacement.charAt(i + 1) - '0');
+                    if (next > matcher.groupCount()) break;
+                    group = next;
+                    i++;
+                }
+                String value = matcher.group(group);
+                if (value != null) result.append(value);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /* ---------------- 后台高亮 ---------------- */
+
+    private void highlightAll() {
+        restartTimer.stop();
+        removeHighlights();
+        long current = generation.incrementAndGet();
+        Pattern query = pattern;
+        if (query == null || query.pattern().isEmpty()) {
+            statusListener.accept(" ");
+            return;
+        }
+        Document document = component.getDocument();
+        if (!(document instanceof AbstractDocument)) return;
+        statusListener.accept("正在查找…");
+        EXECUTOR.execute(() -> scan((AbstractDocument) document, query, current));
+    }
+
+    // 每批在读锁内确认文档没有变过再继续匹配：文档没变时 Segment 引用的字符也不会变
+    private void scan(AbstractDocument document, Pattern query, long current) {
+        DocumentText text = null;
+        int position = 0;
+        int count = 0;
+        while (true) {
+            List<int[]> batch = new ArrayList<>();
+            boolean done = false;
+            boolean timedOut = false;
+            document.readLock();
+            try {
+                if (generation.get() != current) return;
+                if (text == null) {
+                    text = DocumentText.of(document);
+                }
+                long batchEnd = System.nanoTime() + BATCH_NANOS;
+                GuardedSequence guarded = new GuardedSequence(text);
+                Matcher matcher = query.matcher(guarded);
+                try {
+                    while (batch.size() < BATCH_MATCHES && System.nanoTime() < batchEnd) {
+                        guarded.deadline = System.nanoTime() + MATCH_TIMEOUT_NANOS;
+                        if (position > text.length() || !matcher.find(position)) {
+                            done = true;
+                            break;
+                        }
+                        batch.add(new int[]{matcher.start(), matcher.end()});
+                        position = matcher.end() > matcher.start() ? matcher.end() : matcher.end() + 1;
+                    }
+                } catch (MatchTimeoutException e) {
+                    timedOut = true;
+                }
+            } finally {
+                document.readUnlock();
+            }
+
+            count += batch.size();
+            int total = count;
+            boolean complete = done;
+            boolean failed = timedOut;
+            SwingUtilities.invokeLater(() -> {
+                if (generation.get() != current) return;
+                addHighlights(batch);
+                if (failed) {
+                    statusListener.accept("正则表达式过于复杂，已停止查找（已找到 " + total + " 处）");
+                } else if (complete) {
+                    statusListener.accept(total == 0 ? "没有匹配" : "共 " + total + " 处匹配");
+                } else {
+                    statusListener.accept("正在查找… 已找到 " + total + " 处");
+                }
+            });
+            if (done || timedOut) return;
+        }
+    }
+
+    private void addHighlights(List<int[]> batch) {
+        Highlighter highlighter = component.getHighlighter();
+        for (int[] range : batch) {
+            if (highlights.size() >= MAX_HIGHLIGHTS) return;
+            if (range[0] == range[1]) continue;
+            try {
+                highlights.add(highlighter.addHighlight(range[0], range[1], painter));
+            } catch (BadLocationException e) {
+                return;
+            }
+        }
+    }
+
+    private void removeHighlights() {
+        Highlighter highlighter = component.getHighlighter();
+        for (int i = highlights.size() - 1; i >= 0; i--) {
+            highlighter.removeHighlight(highlights.get(i));
+        }
+        highlights.clear();
+    }
+
+    private static class MatchTimeoutException extends RuntimeException {
+        MatchTimeoutException() {
+            super(null, null, false, false);
+        }
+    }
+
+    // 文档全文的字符序列。Segment 默认要求一次返回整段，GapContent 在间隙落在范围内时（编辑过文档中间之后总是如此）
+    // 会把全文复制进新数组；这里改为部分返回，间隙前后两段各取一个直接引用文档内部数组的 Segment
+    private static class DocumentText implements CharSequence {
+        private final Segment[] parts;
+        // 每一段在全文中的起点
+        private final int[] starts;
+        private final int length;
+
+        private DocumentText(Segment[] parts, int[] starts, int length) {
+            this.parts = parts;
+            this.starts = starts;
+            this.length = length;
+        }
+
+        static DocumentText of(Document document) {
+            int length = document.getLength();
+            List<Segment> parts = new ArrayList<>(2);
+            List<Integer> starts = new ArrayList<>(2);
+            int position = 0;
+            try {
+                while (position < length) {
+                    Segment part = new Segment();
+                    part.setPartialReturn(true);
+                    document.getText(position, length - position, part);
+                    if (part.count == 0) {
+                        throw new IllegalStateException("文档没有返回内容");
+                    }
+                    parts.add(part);
+                    starts.add(position);
+                    position += part.count;
+                }
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+            int[] offsets = new int[starts.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = starts.get(i);
+            }
+            return new DocumentText(parts.toArray(new Segment[0]), offsets, length);
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+            }
+            // 通常只有一两段，从后往前找所在的段
+            int part = parts.length - 1;
+            while (starts[part] > index) {
+                part--;
+            }
+            Segment segment = parts[part];
+            return segment.array[segment.offset + index - starts[part]];
+        }
+
+        // 分组和替换只会取出很短的一段，按需复制
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+            }
+            StringBuilder builder = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                builder.append(charAt(i));
+            }
+            return builder.toString();
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length).toString();
+        }
+    }
+
+    // 每读若干个字符检查一次是否超时，让失控的回溯匹配能够中止
+    private static class GuardedSequence implements CharSequence {
+        private final DocumentText text;
+        private long deadline;
+        private int reads;
+
+        GuardedSequence(DocumentText text) {
+            this.text = text;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++reads & 0xFFFF) == 0 && System.nanoTime() > deadline) {
+                throw new MatchTimeoutException();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,663 @@
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+public class DownloadEngine {
+    // 每个分段在放弃之前的最大重试次数
+    private static final int MAX_RETRIES = 5;
+    private static final long BASE_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 8000;
+    // 连接或读取超过该时间没有响应就断开重试，卡住的连接不会拖住整个下载
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    // 剩余不足该值的分段不再被拆分窃取
+    private static final long MIN_STEAL_SIZE = 1024 * 1024;
+    private static final long SAVE_INTERVAL_MS = 1000;
+    // 每个线程一块直接缓冲区，读满后一次性按位置写入文件
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final String STATE_SUFFIX = ".dlstate";
+    // 分段摘要只用于本地续传校验，与期望的整文件哈希算法无关
+    private static final String SEGMENT_DIGEST = "SHA-256";
+
+    private final URL url;
+    private final File outputFile;
+    private final File stateFile;
+    private final long fileSize;
+    private final int threadCount;
+    private final DownloadScheduler scheduler;
+
+    // 已完成区间（来自上一次未完成的下载）以及本次运行中的分段，均由 this 保护
+    private final List<DoneRange> resumedRanges = new ArrayList<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private final Deque<Segment> pending = new ArrayDeque<>();
+    // 所有线程共享的进度计数，界面按固定频率采样，不再每次读取都通知
+    private final LongAdder downloaded = new LongAdder();
+    private FileChannel channel;
+    private volatile boolean cancelled;
+    private volatile IOException failure;
+    private long lastSave;
+
+    // 整文件哈希按偏移顺序增量计算：hashedUpTo 之前的字节已进入 fileDigest
+    private final Object verifyLock = new Object();
+    private MessageDigest fileDigest;
+    private String expectedHash;
+    private volatile String fileHash;
+    private volatile long hashedUpTo;
+
+    public DownloadEngine(URL url, File outputFile, long fileSize, int threadCount, DownloadScheduler scheduler) {
+        this.url = url;
+        this.outputFile = outputFile;
+        this.stateFile = stateFileFor(outputFile);
+        this.fileSize = fileSize;
+        this.threadCount = Math.max(1, threadCount);
+        this.scheduler = scheduler;
+    }
+
+    public static File stateFileFor(File outputFile) {
+        return new File(outputFile.getParentFile(), outputFile.getName() + STATE_SUFFIX);
+    }
+
+    // 是否存在可以续传的状态文件
+    public static boolean canResume(File outputFile) {
+        return outputFile.exists() && stateFileFor(outputFile).exists();
+    }
+
+    // 是否存在同一地址留下的、可以续传的状态文件
+    public static boolean canResume(File outputFile, URL url) {
+        if (!canResume(outputFile)) {
+            return false;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(stateFileFor(outputFile)), "UTF-8"))) {
+            return url.toString().equals(reader.readLine());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public long getDownloaded() {
+        return downloaded.sum();
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // 设置期望的整文件哈希（十六进制），按长度识别 SHA-1 或 SHA-256
+    public void setExpectedHash(String hex) {
+        if (hex == null || hex.trim().isEmpty()) {
+            expectedHash = null;
+            fileDigest = null;
+            return;
+        }
+        expectedHash = hex.trim().toLowerCase();
+        fileDigest = newDigest(algorithmForHash(expectedHash));
+    }
+
+    // 没有期望值时也顺带计算整文件哈希，用于登记到本地缓存
+    public void enableHashing(String algorithm) {
+        if (fileDigest == null) {
+            fileDigest = newDigest(algorithm);
+        }
+    }
+
+    // 下载完成后的整文件哈希，未启用哈希时为 null
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public String getHashAlgorithm() {
+        return fileDigest != null ? fileDigest.getAlgorithm() : null;
+    }
+
+    public static String algorithmForHash(String hex) {
+        switch (hex.trim().length()) {
+            case 40:
+                return "SHA-1";
+            case 64:
+                return "SHA-256";
+            default:
+                throw new IllegalArgumentException("无法识别的哈希长度: " + hex);
+        }
+    }
+
+    public static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 所有下载相关的请求都经由这里打开连接，统一设置超时
+    public static HttpURLConnection openConnection(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        return connection;
+    }
+
+    // 文本 UTF-8 编码后的 SHA-1，用作缓存文件名
+    public static String sha1Hex(String text) {
+        return toHex(newDigest("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    // 阻塞直到下载完成、失败或被取消
+    public void download() throws IOException, InterruptedException {
+        loadState();
+        // 不是续传时先删掉旧文件，不在它的旧内容上覆盖写入
+        if (resumedRanges.isEmpty()) {
+            Files.deleteIfExists(outputFile.toPath());
+        }
+
+        // 所有线程共用一个按位置写入的 FileChannel，并预先分配到完整大小
+        channel = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            if (channel.size() > fileSize) {
+                channel.truncate(fileSize);
+            } else if (channel.size() < fileSize && fileSize > 0) {
+                channel.write(ByteBuffer.wrap(new byte[1]), fileSize - 1);
+            }
+            verifyResumedRanges();
+            planSegments();
+
+            // 分段线程来自调度器的共享线程池，连接数由调度器统一限制
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(scheduler.getWorkerPool().submit(() -> {
+                    runWorker();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (failure == null) {
+                        failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                    }
+                }
+            }
+            if (failure == null && !cancelled && fileDigest != null) {
+                verifyFileHash();
+            }
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            channel.close();
+        }
+
+        if (failure != null || cancelled) {
+            saveState();
+            if (failure != null) {
+                throw failure;
+            }
+            return;
+        }
+        if (!stateFile.delete() && stateFile.exists()) {
+            stateFile.deleteOnExit();
+        }
+    }
+
+    // 续传前按记录的分段摘要校验已下载区间，不一致的区间重新下载；同时顺带推进整文件哈希
+    private void verifyResumedRanges() throws IOException {
+        List<DoneRange> verified = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        for (DoneRange range : resumedRanges) {
+            boolean feedsFile = fileDigest != null && range.start == hashedUpTo;
+            if (range.digest == null && !feedsFile) {
+                verified.add(range);
+                continue;
+            }
+            MessageDigest rangeDigest = newDigest(SEGMENT_DIGEST);
+            MessageDigest partial = feedsFile ? cloneDigest(fileDigest) : null;
+            for (long position = range.start; position < range.end; ) {
+                buffer.clear();
+                buffer.limit((int) Math.min(BUFFER_SIZE, range.end - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                buffer.flip();
+                rangeDigest.update(buffer.duplicate());
+                if (partial != null) {
+                    partial.update(buffer);
+                }
+                position += read;
+            }
+            if (range.digest != null && !range.digest.equals(toHex(rangeDigest.digest()))) {
+                continue;
+            }
+            verified.add(range);
+            if (partial != null) {
+                fileDigest = partial;
+                hashedUpTo = range.end;
+            }
+        }
+        resumedRanges.clear();
+        resumedRanges.addAll(verified);
+    }
+
+    private void verifyFileHash() throws IOException {
+        String actual;
+        synchronized (verifyLock) {
+            catchUpFileHash(fileSize);
+            actual = toHex(fileDigest.digest());
+        }
+        fileHash = actual;
+        if (expectedHash != null && !actual.equals(expectedHash)) {
+            // 无法定位是哪一段出错，丢弃续传状态，下次从头下载
+            synchronized (this) {
+                resumedRanges.clear();
+                segments.clear();
+            }
+            failure = new IOException("文件校验失败，期望 " + expectedHash + "，实际 " + actual);
+        }
+    }
+
+    // 写入一块数据后调用：若它正好接在哈希进度之后就直接计入，再顺带追上之后已写完的连续区间
+    private void advanceFileHash(long position, ByteBuffer landed) throws IOException {
+        if (fileDigest == null || position != hashedUpTo) {
+            return;
+        }
+        synchronized (verifyLock) {
+            if (position != hashedUpTo) {
+                return;
+            }
+            fileDigest.update(landed);
+            hashedUpTo = position + landed.limit();
+            catchUpFileHash(contiguousEnd(hashedUpTo));
+        }
+    }
+
+    // 调用方持有 verifyLock；这里读取的都是刚写入的数据，通常命中页缓存
+    private void catchUpFileHash(long target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        while (hashedUpTo < target) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, target - hashedUpTo));
+            int read = channel.read(buffer, hashedUpTo);
+            if (read <= 0) {
+                throw new IOException("读取已下载数据失败");
+            }
+            buffer.flip();
+            fileDigest.update(buffer);
+            hashedUpTo += read;
+            if (hashedUpTo == target && target < fileSize) {
+                target = contiguousEnd(target);
+            }
+        }
+    }
+
+    // 从 offset 起已经写完的连续字节的末尾
+    private synchronized long contiguousEnd(long offset) {
+        boolean extended = true;
+        while (extended) {
+            extended = false;
+            for (DoneRange range : resumedRanges) {
+                if (range.start <= offset && range.end > offset) {
+                    offset = range.end;
+                    extended = true;
+                }
+            }
+            for (Segment s : segments) {
+                if (s.start <= offset && s.pos > offset) {
+                    offset = s.pos;
+                    extended = true;
+                }
+            }
+        }
+        return offset;
+    }
+
+    private static MessageDigest cloneDigest(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void runWorker() throws IOException, InterruptedException {
+        Segment segment;
+        while (!cancelled && failure == null && (segment = nextSegment()) != null) {
+            fetchWithRetry(segment);
+        }
+    }
+
+    // 优先领取尚未开始的分段，否则从剩余最多的分段尾部窃取一半
+    private synchronized Segment nextSegment() {
+        Segment next = pending.poll();
+        if (next != null) {
+            return next;
+        }
+        Segment victim = null;
+        for (Segment s : segments) {
+            if (!s.active) {
+                continue;
+            }
+            if (victim == null || s.remaining() > victim.remaining()) {
+                victim = s;
+            }
+        }
+        if (victim == null || victim.remaining() < MIN_STEAL_SIZE * 2) {
+            return null;
+        }
+        long mid = victim.pos + victim.remaining() / 2;
+        Segment stolen = new Segment(mid, victim.end);
+        victim.end = mid;
+        segments.add(stolen);
+        return stolen;
+    }
+
+    private void fetchWithRetry(Segment segment) throws IOException, InterruptedException {
+        synchronized (this) {
+            segment.active = true;
+        }
+        int attempt = 0;
+        try {
+            while (true) {
+                long before;
+                synchronized (this) {
+                    before = segment.pos;
+                }
+                try {
+                    fetch(segment);
+                    return;
+                } catch (IOException e) {
+                    if (cancelled || failure != null) {
+                        return;
+                    }
+                    // 读取超时同其他连接错误一样重试；本次已经有进展时重新计数，
+                    // 只有连续多次毫无进展才放弃整个分段
+                    synchronized (this) {
+                        if (segment.pos > before) {
+                            attempt = 0;
+                        }
+                    }
+                    if (++attempt > MAX_RETRIES) {
+                        String reason = e instanceof SocketTimeoutException ? "连接超时" : e.getMessage();
+                        failure = new IOException("分段 " + segment.pos + "-" + (segment.end - 1) + " 下载失败: " + reason, e);
+                        throw failure;
+                    }
+                    saveState();
+                    Thread.sleep(Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << (attempt - 1)));
+                }
+            }
+        } finally {
+            synchronized (this) {
+                segment.active = false;
+            }
+            saveState();
+        }
+    }
+
+    private void fetch(Segment segment) throws IOException, InterruptedException {
+        long start;
+        long end;
+        synchronized (this) {
+            start = segment.pos;
+            end = segment.end;
+        }
+        if (start >= end) {
+            return;
+        }
+
+        String host = url.getHost();
+        scheduler.acquireConnection(host);
+        HttpURLConnection connection = null;
+        try {
+            connection = openConnection(url);
+            connection.setRequestMethod("GET");
+            connection.setRequestProperty("Range", "bytes=" + start + "-" + (end - 1));
+            connection.connect();
+
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_OK && start != 0) {
+                throw new IOException("服务器不支持断点续传");
+            }
+            if (code != HttpURLConnection.HTTP_PARTIAL && code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("响应码: " + code);
+            }
+
+            try (ReadableByteChannel in = Channels.newChannel(connection.getInputStream())) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                boolean eof = false;
+                while (!eof && !cancelled && failure == null) {
+                    long position;
+                    long limit;
+                    synchronized (this) {
+                        position = segment.pos;
+                        limit = segment.end - position;
+                    }
+                    if (limit <= 0) {
+                        break;
+                    }
+                    // 尽量读满缓冲区，但不越过当前分段的末尾（可能已被窃取缩短）
+                    buffer.clear();
+                    buffer.limit((int) Math.min(BUFFER_SIZE, limit));
+                    while (buffer.hasRemaining()) {
+                        if (in.read(buffer) == -1) {
+                            eof = true;
+                            break;
+                        }
+                    }
+                    buffer.flip();
+                    int length = buffer.remaining();
+                    scheduler.throttle(length);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer, position + buffer.position());
+                    }
+                    if (length > 0) {
+                        buffer.flip();
+                        // 分段摘要随数据落地增量计算，续传时用来发现损坏的区间
+                        synchronized (this) {
+                            segment.digest.update(buffer.duplicate());
+                            segment.pos += length;
+                        }
+                        downloaded.add(length);
+                        advanceFileHash(position, buffer);
+                        maybeSaveState();
+                    }
+                }
+            }
+            boolean incomplete;
+            synchronized (this) {
+                incomplete = segment.remaining() > 0;
+            }
+            if (!cancelled && failure == null && incomplete) {
+                throw new IOException("连接提前关闭");
+            }
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            scheduler.releaseConnection(host);
+        }
+    }
+
+    private void planSegments() {
+        List<long[]> holes = new ArrayList<>();
+        long cursor = 0;
+        for (DoneRange range : resumedRanges) {
+            if (range.start > cursor) {
+                holes.add(new long[]{cursor, range.start});
+            }
+            cursor = Math.max(cursor, range.end);
+        }
+        if (cursor < fileSize) {
+            holes.add(new long[]{cursor, fileSize});
+        }
+
+        long missing = 0;
+        for (long[] hole : holes) {
+            missing += hole[1] - hole[0];
+        }
+        downloaded.add(fileSize - missing);
+
+        // 按线程数把缺失部分切成大致相等的分段，空洞本身不会被合并
+        long partSize = Math.max(MIN_STEAL_SIZE, missing / threadCount);
+        for (long[] hole : holes) {
+            for (long start = hole[0]; start < hole[1]; start += partSize) {
+                long end = Math.min(hole[1], start + partSize);
+                if (hole[1] - end < MIN_STEAL_SIZE) {
+                    end = hole[1];
+                }
+                Segment segment = new Segment(start, end);
+                segments.add(segment);
+                pending.add(segment);
+                if (end == hole[1]) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // 状态文件格式：首行 URL，次行文件大小，之后每行一个已完成区间 "start-end sha256"（end 不含）
+    private void loadState() {
+        if (!stateFile.exists() || !outputFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(stateFile), "UTF-8"))) {
+            String savedUrl = reader.readLine();
+            String savedSize = reader.readLine();
+            if (!url.toString().equals(savedUrl) || savedSize == null || Long.parseLong(savedSize) != fileSize) {
+                return;
+            }
+            List<DoneRange> ranges = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                int dash = parts[0].indexOf('-');
+                if (dash > 0) {
+                    long start = Long.parseLong(parts[0].substring(0, dash));
+                    long end = Long.parseLong(parts[0].substring(dash + 1));
+                    String digest = parts.length > 1 ? parts[1] : null;
+                    if (start >= 0 && end <= fileSize && start < end) {
+                        ranges.add(new DoneRange(start, end, digest));
+                    }
+                }
+            }
+            ranges.sort((a, b) -> Long.compare(a.start, b.start));
+            // 区间互不重叠才能按摘要逐段校验，重叠说明状态文件不可信
+            for (int i = 1; i < ranges.size(); i++) {
+                if (ranges.get(i).start < ranges.get(i - 1).end) {
+                    return;
+                }
+            }
+            resumedRanges.addAll(ranges);
+        } catch (IOException | NumberFormatException e) {
+            // 状态文件损坏时从头下载
+            resumedRanges.clear();
+        }
+    }
+
+    private void maybeSaveState() {
+        long now = System.currentTimeMillis();
+        if (now - lastSave >= SAVE_INTERVAL_MS) {
+            saveState();
+        }
+    }
+
+    private synchronized void saveState() {
+        lastSave = System.currentTimeMillis();
+        List<DoneRange> ranges = new ArrayList<>(resumedRanges);
+        for (Segment s : segments) {
+            if (s.pos > s.start) {
+                ranges.add(new DoneRange(s.start, s.pos, toHex(cloneDigest(s.digest).digest())));
+            }
+        }
+        ranges.sort((a, b) -> Long.compare(a.start, b.start));
+        // 先写临时文件再替换，避免进程被杀时留下半截状态
+        File tmp = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"))) {
+            writer.write(url.toString());
+            writer.write('\n');
+            writer.write(Long.toString(fileSize));
+            writer.write('\n');
+            for (DoneRange range : ranges) {
+                writer.write(range.start + "-" + range.end);
+                if (range.digest != null) {
+                    writer.write(' ');
+                    writer.write(range.digest);
+                }
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (!tmp.renameTo(stateFile)) {
+            stateFile.delete();
+            tmp.renameTo(stateFile);
+        }
+    }
+
+    // 一个下载分段：[start, end)，pos 为下一个待写入的位置；end 可能被窃取者缩短
+    private static class Segment {
+        final long start;
+        // [start, pos) 的摘要，与 pos 一起在 DownloadEngine 的锁内更新
+        final MessageDigest digest = newDigest(SEGMENT_DIGEST);
+        long pos;
+        long end;
+        boolean active;
+
+        Segment(long start, long end) {
+            this.start = start;
+            this.pos = start;
+            this.end = end;
+        }
+
+        long remaining() {
+            return end - pos;
+        }
+    }
+
+    private static class DoneRange {
+        final long start;
+        final long end;
+        final String digest;
+
+        DoneRange(long start, long end, String digest) {
+            this.start = start;
+            this.end = end;
+            this.digest = digest;
+        }
+    }
+}
\ No newline at end of file
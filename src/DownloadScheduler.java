@@ -0,0 +1,332 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// 全局下载调度服务：Downloader 和 WebBrowser 共用同一个实例
+public class DownloadScheduler {
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 5;
+    public static final int PRIORITY_HIGH = 10;
+
+    private static final DownloadScheduler INSTANCE = new DownloadScheduler();
+
+    public static DownloadScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    public enum Status {
+        QUEUED("等待中"), RUNNING("下载中"), COMPLETED("已完成"), FAILED("失败"), CANCELLED("已取消");
+
+        private final String description;
+
+        Status(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+    // 所有下载任务和分段线程共用的守护线程池，不再每次点击新建线程池
+    private final ExecutorService workerPool = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "download-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final TokenBucket bandwidth = new TokenBucket();
+
+    // 以下字段由 this 保护
+    private int maxActiveJobs = 3;
+    private int maxConnections = 16;
+    private int maxConnectionsPerHost = 8;
+    private int activeJobs;
+    private int activeConnections;
+    private final Map<String, Integer> hostConnections = new HashMap<>();
+
+    private DownloadScheduler() {
+    }
+
+    public Job submit(URL url, File outputFile, int threadCount, int priority) {
+        return submit(url, outputFile, threadCount, priority, null);
+    }
+
+    // expectedHash 为 SHA-1 或 SHA-256 十六进制串，下载过程中增量校验；为空则不校验
+    public Job submit(URL url, File outputFile, int threadCount, int priority, String expectedHash) {
+        Job job = new Job(url, outputFile, threadCount, priority, expectedHash, sequence.getAndIncrement());
+        queue.add(job);
+        dispatch();
+        return job;
+    }
+
+    public ExecutorService getWorkerPool() {
+        return workerPool;
+    }
+
+    public synchronized void setMaxActiveJobs(int maxActiveJobs) {
+        this.maxActiveJobs = Math.max(1, maxActiveJobs);
+        dispatch();
+    }
+
+    public synchronized void setMaxConnections(int maxConnections, int maxConnectionsPerHost) {
+        this.maxConnections = Math.max(1, maxConnections);
+        this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+        notifyAll();
+    }
+
+    // 全局带宽上限（字节/秒），0 表示不限速
+    public void setBandwidthLimit(long bytesPerSecond) {
+        bandwidth.setRate(bytesPerSecond);
+    }
+
+    public long getBandwidthLimit() {
+        return bandwidth.getRate();
+    }
+
+    // 在打开连接前调用，超过全局或单主机连接数时阻塞
+    public synchronized void acquireConnection(String host) throws InterruptedException {
+        while (activeConnections >= maxConnections
+                || hostConnections.getOrDefault(host, 0) >= maxConnectionsPerHost) {
+            wait();
+        }
+        activeConnections++;
+        hostConnections.merge(host, 1, Integer::sum);
+    }
+
+    public synchronized void releaseConnection(String host) {
+        activeConnections--;
+        hostConnections.computeIfPresent(host, (h, count) -> count > 1 ? count - 1 : null);
+        notifyAll();
+    }
+
+    // 每读入一块数据调用一次，按令牌桶限速
+    public void throttle(int bytes) throws InterruptedException {
+        bandwidth.acquire(bytes);
+    }
+
+    private synchronized void dispatch() {
+        while (activeJobs < maxActiveJobs) {
+            Job job = queue.poll();
+            if (job == null) {
+                return;
+            }
+            activeJobs++;
+            workerPool.submit(() -> {
+                try {
+                    job.run();
+                } finally {
+                    synchronized (DownloadScheduler.this) {
+                        activeJobs--;
+                    }
+                    dispatch();
+                }
+            });
+        }
+    }
+
+    public class Job implements Comparable<Job> {
+        private final URL url;
+        private final File outputFile;
+        private final int threadCount;
+        private final int priority;
+        private final String expectedHash;
+        private final long order;
+        private final List<Consumer<Job>> listeners = new CopyOnWriteArrayList<>();
+        private volatile Status status = Status.QUEUED;
+        private volatile DownloadEngine engine;
+        private volatile long fileSize = -1;
+        private volatile Exception error;
+        private volatile boolean cancelRequested;
+        private volatile long cachedBytes;
+        private String etag;
+        private String lastModified;
+
+        private Job(URL url, File outputFile, int threadCount, int priority, String expectedHash, long order) {
+            this.url = url;
+            this.outputFile = outputFile;
+            this.threadCount = threadCount;
+            this.priority = priority;
+            this.expectedHash = expectedHash;
+            this.order = order;
+        }
+
+        // 状态变化时在后台线程回调，界面代码需要自行切回 EDT
+        public void addListener(Consumer<Job> listener) {
+            listeners.add(listener);
+        }
+
+        public URL getUrl() { return url; }
+        public File getOutputFile() { return outputFile; }
+        public int getPriority() { return priority; }
+        public Status getStatus() { return status; }
+        public Exception getError() { return error; }
+        public long getFileSize() { return fileSize; }
+
+        public long getDownloaded() {
+            DownloadEngine current = engine;
+            return current != null ? current.getDownloaded() : cachedBytes;
+        }
+
+        public void cancel() {
+            cancelRequested = true;
+            DownloadEngine current = engine;
+            if (current != null) {
+                current.cancel();
+            }
+            if (queue.remove(this)) {
+                setStatus(Status.CANCELLED);
+            }
+        }
+
+        private void run() {
+            if (cancelRequested) {
+                setStatus(Status.CANCELLED);
+                return;
+            }
+            setStatus(Status.RUNNING);
+            try {
+                if (!probe()) {
+                    engine = new DownloadEngine(url, outputFile, fileSize, threadCount, DownloadScheduler.this);
+                    engine.setExpectedHash(expectedHash);
+                    engine.enableHashing("SHA-1");
+                    if (cancelRequested) {
+                        engine.cancel();
+                    }
+                    engine.download();
+                    if (!engine.isCancelled()) {
+                        storeInCache();
+                    }
+                }
+                setStatus(engine != null && engine.isCancelled() ? Status.CANCELLED : Status.COMPLETED);
+            } catch (Exception e) {
+                e.printStackTrace();
+                error = e;
+                setStatus(Status.FAILED);
+            }
+        }
+
+        // 发送带条件头的 HEAD 取得文件大小；本地缓存仍然有效时直接从缓存取出并返回 true
+        private boolean probe() throws IOException, InterruptedException {
+            ArtifactCache cache = ArtifactCache.getInstance();
+            if (expectedHash != null && expectedHash.length() == 40
+                    && cache.withObject(expectedHash, this::takeFromCache) != null) {
+                return true;
+            }
+            ArtifactCache.Entry entry = DownloadEngine.canResume(outputFile) ? null : cache.lookup(url.toString());
+            // 缓存的内容与期望的哈希不符时不能用，不发条件头，否则 304 响应里没有文件大小
+            if (entry != null && expectedHash != null && !expectedHash.equalsIgnoreCase(entry.sha1)) {
+                entry = null;
+            }
+
+            String host = url.getHost();
+            acquireConnection(host);
+            try {
+                HttpURLConnection connection = DownloadEngine.openConnection(url);
+                connection.setRequestMethod("HEAD");
+                ArtifactCache.applyValidators(connection, entry);
+                connection.connect();
+                if (ArtifactCache.isUnchanged(connection, entry)) {
+                    connection.disconnect();
+                    cache.touch(entry);
+                    if (cache.withObject(entry.sha1, this::takeFromCache) != null) {
+                        return true;
+                    }
+                } else {
+                    long size = connection.getContentLengthLong();
+                    etag = connection.getHeaderField("ETag");
+                    lastModified = connection.getHeaderField("Last-Modified");
+                    connection.disconnect();
+                    if (size == -1) {
+                        throw new IOException("无法获取文件大小");
+                    }
+                    fileSize = size;
+                    return false;
+                }
+            } finally {
+                releaseConnection(host);
+            }
+            // 确认期间对象被淘汰了，记录也随之删除，放开连接后重新探测一次即按普通下载处理
+            return probe();
+        }
+
+        private Boolean takeFromCache(File object) throws IOException {
+            ArtifactCache.getInstance().materialize(object, outputFile);
+            fileSize = object.length();
+            cachedBytes = fileSize;
+            return true;
+        }
+
+        private void storeInCache() {
+            if (!"SHA-1".equals(engine.getHashAlgorithm()) || engine.getFileHash() == null) {
+                return;
+            }
+            try {
+                ArtifactCache.getInstance().put(url.toString(), outputFile, engine.getFileHash(), etag, lastModified);
+            } catch (IOException e) {
+                // 缓存失败不影响下载结果
+                e.printStackTrace();
+            }
+        }
+
+        private void setStatus(Status status) {
+            this.status = status;
+            for (Consumer<Job> listener : listeners) {
+                listener.accept(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+
+    // 简单令牌桶：允许透支，透支部分按速率休眠偿还，桶容量为一秒的流量
+    private static class TokenBucket {
+        private long rate;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        synchronized void setRate(long bytesPerSecond) {
+            rate = Math.max(0, bytesPerSecond);
+            tokens = Math.min(tokens, rate);
+            lastRefill = System.nanoTime();
+        }
+
+        synchronized long getRate() {
+            return rate;
+        }
+
+        void acquire(int bytes) throws InterruptedException {
+            long sleepNanos;
+            synchronized (this) {
+                if (rate <= 0) {
+                    return;
+                }
+                long now = System.nanoTime();
+                tokens = Math.min(rate, tokens + (now - lastRefill) * rate / 1e9);
+                lastRefill = now;
+                tokens -= bytes;
+                sleepNanos = tokens < 0 ? (long) (-tokens * 1e9 / rate) : 0;
+            }
+            if (sleepNanos > 0) {
+                Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -3,11 +3,7 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.*;
-import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicLong;
 /*
     TODO:I Love NuanRMxi and SkyDynamic
     DO NOT REMOVE!
@@ -17,19 +13,33 @@ public class Downloader extends JFrame {
     private JButton destinationButton;
     private JComboBox<Integer> threadCountComboBox;
     private JButton downloadButton;
+    private JComboBox<String> bandwidthComboBox;
+    private JTextField hashField;
+    private JComboBox<String> cacheSizeComboBox;
     private JProgressBar progressBar;
-    private ExecutorService executorService;
     private String destinationPath;
+    private DownloadScheduler.Job currentJob;
+    private Timer progressTimer;
+
+    // 进度条按万分比显示，避免超过 2GB 的文件溢出 int
+    private static final int PROGRESS_SCALE = 10000;
+    private static final int PROGRESS_TICK_MS = 100;
+
+    private static final String[] BANDWIDTH_LABELS = {"不限速", "512 KB/s", "1 MB/s", "5 MB/s", "10 MB/s"};
+    private static final long[] BANDWIDTH_LIMITS = {0, 512 * 1024, 1024 * 1024, 5 * 1024 * 1024, 10 * 1024 * 1024};
+
+    private static final String[] CACHE_SIZE_LABELS = {"不缓存", "1 GB", "2 GB", "4 GB", "8 GB", "16 GB"};
+    private static final long[] CACHE_SIZES = {0, 1L << 30, 2L << 30, 4L << 30, 8L << 30, 16L << 30};
 
     public Downloader() {
         super("文件下载器");
-        setSize(600, 300);
+        setSize(600, 380);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLayout(new BorderLayout());
 
         // Create input fields
         JPanel inputPanel = new JPanel();
-        inputPanel.setLayout(new GridLayout(3, 2, 10, 10));
+        inputPanel.setLayout(new GridLayout(6, 2, 10, 10));
         inputPanel.add(new JLabel("文件URL:"));
         urlField = new JTextField();
         inputPanel.add(urlField);
@@ -49,6 +59,36 @@ public class Downloader extends JFrame {
         threadCountComboBox = new JComboBox<>(threadCounts);
         inputPanel.add(threadCountComboBox);
 
+        // 限速对所有下载（包括浏览器下载）全局生效，避免与服务器抢占上行带宽
+        inputPanel.add(new JLabel("全局限速:"));
+        bandwidthComboBox = new JComboBox<>(BANDWIDTH_LABELS);
+        long currentLimit = DownloadScheduler.getInstance().getBandwidthLimit();
+        for (int i = 0; i < BANDWIDTH_LIMITS.length; i++) {
+            if (BANDWIDTH_LIMITS[i] == currentLimit) {
+                bandwidthComboBox.setSelectedIndex(i);
+            }
+        }
+        bandwidthComboBox.addActionListener(e -> DownloadScheduler.getInstance()
+                .setBandwidthLimit(BANDWIDTH_LIMITS[bandwidthComboBox.getSelectedIndex()]));
+        inputPanel.add(bandwidthComboBox);
+
+        inputPanel.add(new JLabel("SHA-1/SHA-256 (可选):"));
+        hashField = new JTextField();
+        inputPanel.add(hashField);
+
+        // 下载完成的文件会登记到本地缓存，再次下载同一 URL 时只做一次条件请求
+        inputPanel.add(new JLabel("本地缓存上限:"));
+        cacheSizeComboBox = new JComboBox<>(CACHE_SIZE_LABELS);
+        long currentCacheSize = ArtifactCache.getInstance().getMaxBytes();
+        for (int i = 0; i < CACHE_SIZES.length; i++) {
+            if (CACHE_SIZES[i] == currentCacheSize) {
+                cacheSizeComboBox.setSelectedIndex(i);
+            }
+        }
+        cacheSizeComboBox.addActionListener(e -> ArtifactCache.getInstance()
+                .setMaxBytes(CACHE_SIZES[cacheSizeComboBox.getSelectedIndex()]));
+        inputPanel.add(cacheSizeComboBox);
+
         // Create download button
         downloadButton = new JButton("开始下载");
         downloadButton.addActionListener(new ActionListener() {
@@ -82,86 +122,95 @@ public class Downloader extends JFrame {
     private void startDownload() {
         String url = urlField.getText();
         int threadCount = (int) threadCountComboBox.getSelectedItem();
+        String expectedHash = hashField.getText().trim();
 
         if (destinationPath == null || destinationPath.isEmpty()) {
             JOptionPane.showMessageDialog(this, "请选择保存位置", "错误", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        executorService = Executors.newFixedThreadPool(threadCount);
-
         try {
             URL fileUrl = new URL(url);
-            HttpURLConnection connection = (HttpURLConnection) fileUrl.openConnection();
-            connection.setRequestMethod("HEAD");
-            connection.connect();
-
-            int fileSize = connection.getContentLength();
-            if (fileSize == -1) {
-                JOptionPane.showMessageDialog(this, "无法获取文件大小", "错误", JOptionPane.ERROR_MESSAGE);
-                return;
+            if (!expectedHash.isEmpty()) {
+                DownloadEngine.algorithmForHash(expectedHash);
             }
 
-            progressBar.setMaximum(fileSize);
-            progressBar.setValue(0);
-
-            long partSize = fileSize / threadCount;
-            AtomicLong downloaded = new AtomicLong(0);
-
             // 获取文件名
             String fileName = fileUrl.getPath().substring(fileUrl.getPath().lastIndexOf('/') + 1);
             File outputFile = new File(destinationPath, fileName);
 
-            // 如果文件已存在，提示用户
-            if (outputFile.exists()) {
+            // 有未完成的下载时直接续传，否则文件已存在则提示用户
+            if (!DownloadEngine.canResume(outputFile) && outputFile.exists()) {
                 int result = JOptionPane.showConfirmDialog(this, "文件已存在，是否覆盖?", "提示", JOptionPane.YES_NO_OPTION);
                 if (result == JOptionPane.NO_OPTION) {
                     return;
                 }
             }
 
-            for (int i = 0; i < threadCount; i++) {
-                long start = i * partSize;
-                long end = (i == threadCount - 1) ? fileSize - 1 : start + partSize - 1;
-
-                executorService.submit(() -> {
-                    try {
-                        HttpURLConnection partConnection = (HttpURLConnection) fileUrl.openConnection();
-                        partConnection.setRequestMethod("GET");
-                        partConnection.setRequestProperty("Range", "bytes=" + start + "-" + end);
-                        partConnection.connect();
-
-                        InputStream inputStream = partConnection.getInputStream();
-                        RandomAccessFile randomAccessFile = new RandomAccessFile(outputFile, "rw");
-                        randomAccessFile.seek(start);
-
-                        byte[] buffer = new byte[4096];
-                        int bytesRead;
-                        long totalBytesRead = 0;
-
-                        while ((bytesRead = inputStream.read(buffer)) != -1) {
-                            randomAccessFile.write(buffer, 0, bytesRead);
-                            totalBytesRead += bytesRead;
-                            downloaded.addAndGet(bytesRead);
-                            SwingUtilities.invokeLater(() -> {
-                                progressBar.setValue((int) downloaded.get());
-                            });
-                        }
-
-                        randomAccessFile.close();
-                        inputStream.close();
-                    } catch (Exception e) {
-                        JOptionPane.showMessageDialog(this, "下载失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-                        e.printStackTrace();
-                    }
-                });
+            progressBar.setMaximum(PROGRESS_SCALE);
+            progressBar.setValue(0);
+            progressBar.setString("等待中");
+
+            DownloadScheduler.Job job = DownloadScheduler.getInstance()
+                    .submit(fileUrl, outputFile, threadCount, DownloadScheduler.PRIORITY_NORMAL, expectedHash);
+            job.addListener(j -> SwingUtilities.invokeLater(() -> onJobStatusChanged(j)));
+            currentJob = job;
+
+            // 界面按固定频率采样下载计数，而不是每次读取都向 EDT 投递任务
+            if (progressTimer == null) {
+                progressTimer = new Timer(PROGRESS_TICK_MS, e -> updateProgress());
             }
+            progressTimer.start();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "下载失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
             e.printStackTrace();
         }
     }
 
+    private void onJobStatusChanged(DownloadScheduler.Job job) {
+        if (job == currentJob) {
+            updateProgress();
+        }
+        switch (job.getStatus()) {
+            case COMPLETED:
+                JOptionPane.showMessageDialog(this, "下载完成: " + job.getOutputFile().getAbsolutePath(), "成功", JOptionPane.INFORMATION_MESSAGE);
+                break;
+            case FAILED:
+                JOptionPane.showMessageDialog(this, "下载失败: " + job.getError().getMessage() + "\n再次开始下载可从中断处继续", "错误", JOptionPane.ERROR_MESSAGE);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void updateProgress() {
+        DownloadScheduler.Job job = currentJob;
+        if (job == null) {
+            return;
+        }
+        DownloadScheduler.Status status = job.getStatus();
+        if (status != DownloadScheduler.Status.QUEUED && status != DownloadScheduler.Status.RUNNING) {
+            progressTimer.stop();
+        }
+        long total = job.getFileSize();
+        if (total < 0) {
+            progressBar.setString(status.getDescription());
+            return;
+        }
+        long downloaded = job.getDownloaded();
+        progressBar.setValue(total > 0 ? (int) (downloaded * PROGRESS_SCALE / total) : PROGRESS_SCALE);
+        progressBar.setString(String.format("%.1f MB / %.1f MB", downloaded / 1048576.0, total / 1048576.0));
+    }
+
+    @Override
+    public void dispose() {
+        // 关闭窗口不会中断下载，任务继续由全局调度器完成
+        if (progressTimer != null) {
+            progressTimer.stop();
+        }
+        super.dispose();
+    }
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
             Downloader downloader = new Downloader();
@@ -0,0 +1,456 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// 自动保存日志：记录上次保存（检查点）之后文档的每一处插入和删除，定时把新增的记录追加到日志文件末尾，
+// 不必每次都写出整篇文档。程序异常退出后重新打开同一文件，在文件内容上按顺序重放这些记录即可恢复。
+// 日志头记下检查点时文件的大小和修改时间，文件在别处被改过时日志作废。
+// 正在使用的日志锁住同名的 .lock 文件（进程退出时由操作系统释放），同一进程或其他进程里别的窗口不会把它当作遗留日志。
+// 除 replay 读取日志外，所有方法都在事件分发线程上调用，写文件在日志线程上进行
+public class EditJournal {
+    private static final int FLUSH_MILLIS = 5000;
+    private static final int MAGIC = 0x4A524E31;
+    private static final byte INSERT = 'I';
+    private static final byte REMOVE = 'R';
+    private static final Path DIRECTORY = Paths.get(System.getProperty("user.home"), ".javaows", "autosave");
+
+    // findUntitled 认领、尚未交给 openUntitled 或 discardUntitled 的日志锁
+    private static final Map<Path, FileLock> CLAIMED = new ConcurrentHashMap<>();
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "edit-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 一条编辑记录：text 不为 null 时是插入，否则是删除 length 个字符
+    private static class Record {
+        final int offset;
+        final String text;
+        final int length;
+
+        Record(int offset, String text, int length) {
+            this.offset = offset;
+            this.text = text;
+            this.length = length;
+        }
+    }
+
+    private final Document document;
+    private boolean untitled;
+    private Path journalFile;
+    private long baseLength;
+    private long baseModified;
+    // 检查点之后的全部记录，firstSequence 为其中第一条的序号
+    private final List<Record> records = new ArrayList<>();
+    private long firstSequence;
+    private int flushed;
+    private boolean fileCreated;
+    private boolean suspended;
+    // 持有日志锁才写日志文件；没拿到锁说明另一个窗口正在记录同一文件，本窗口不记录
+    private FileLock lock;
+    private boolean closed;
+    private final Timer timer;
+    private final DocumentListener listener = new DocumentListener() {
+        public void insertUpdate(DocumentEvent e) {
+            if (suspended) return;
+            try {
+                records.add(new Record(e.getOffset(), document.getText(e.getOffset(), e.getLength()), e.getLength()));
+            } catch (BadLocationException ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        public void removeUpdate(DocumentEvent e) {
+            if (suspended) return;
+            records.add(new Record(e.getOffset(), null, e.getLength()));
+        }
+
+        // 样式变化不影响保存的纯文本
+        public void changedUpdate(DocumentEvent e) { }
+    };
+
+    private EditJournal(Path journalFile, Document document, File base) {
+        this.journalFile = journalFile;
+        this.document = document;
+        this.untitled = base == null;
+        if (base != null) {
+            baseLength = base.length();
+            baseModified = base.lastModified();
+        }
+        timer = new Timer(FLUSH_MILLIS, e -> flush());
+    }
+
+    // document 的内容应与 file 当前的内容一致
+    public static EditJournal forFile(File file, Document document) {
+        return new EditJournal(journalFileFor(file), document, file);
+    }
+
+    // 无标题文档，application 用来区分不同程序的日志
+    public static EditJournal forUntitled(String application, Document document) {
+        return new EditJournal(DIRECTORY.resolve(application + "-untitled-" + System.nanoTime() + ".journal"), document, null);
+    }
+
+    // 恢复无标题文档：journalFile 应来自 findUntitled，document 应为空文档
+    public static EditJournal openUntitled(Path journalFile, Document document) {
+        EditJournal journal = new EditJournal(journalFile, document, null);
+        journal.lock = CLAIMED.remove(journalFile);
+        return journal;
+    }
+
+    // 上次异常退出时留下、没有被任何运行中的窗口使用的无标题文档日志。返回的日志已被认领，
+    // 调用方对每一个都要调用 openUntitled、discardUntitled 或 releaseUntitled 之一
+    public static List<Path> findUntitled(String application) {
+        List<Path> result = new ArrayList<>();
+        if (!Files.isDirectory(DIRECTORY)) return result;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(DIRECTORY, application + "-untitled-*.journal")) {
+            for (Path path : stream) {
+                FileLock claimed = tryLock(path);
+                if (claimed == null) continue;
+                CLAIMED.put(path, claimed);
+                result.add(path);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return result;
+    }
+
+    // 放弃认领，日志留给以后恢复
+    public static void releaseUntitled(Path journalFile) {
+        release(CLAIMED.remove(journalFile));
+    }
+
+    private static Path lockFileFor(Path journalFile) {
+        return journalFile.resolveSibling(journalFile.getFileName() + ".lock");
+    }
+
+    // 锁住日志的 .lock 文件，已被本进程或其他进程锁住时返回 null
+    private static FileLock tryLock(Path journalFile) {
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(journalFile.getParent());
+            channel = FileChannel.open(lockFileFor(journalFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock result = channel.tryLock();
+            if (result != null) return result;
+        } catch (IOException | OverlappingFileLockException e) {
+            // 同一进程内已被锁住时抛出 OverlappingFileLockException
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        return null;
+    }
+
+    private static void release(FileLock lock) {
+        if (lock == null) return;
+        try {
+            lock.channel().close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 删除日志及其 .lock 文件，删完再释放锁，免得别的窗口在这之间认领
+    private static void deleteAndRelease(Path journalFile, FileLock lock) {
+        delete(journalFile);
+        if (lock != null) delete(lockFileFor(journalFile));
+        release(lock);
+    }
+
+    private static Path journalFileFor(File file) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            return DIRECTORY.resolve(DownloadEngine.toHex(digest) + ".journal");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* ---------------- 恢复 ---------------- */
+
+    // 日志存在、与当前文件对得上、没有别的窗口正在使用且至少有一条记录
+    public boolean hasRecoverableEdits() {
+        if (!acquireLock()) return false;
+        try (DataInputStream in = openJournal()) {
+            if (in == null) return false;
+            in.readByte();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // 把日志中的记录依次应用到文档上，返回应用的条数。应在 start 之后调用，记录会重新记入本日志，直到下次保存
+    public int replay() {
+        int count = 0;
+        try (DataInputStream in = openJournal()) {
+            if (in == null) return 0;
+            while (true) {
+                Record record;
+                try {
+                    record = readRecord(in);
+                } catch (EOFException e) {
+                    // 写到一半的最后一条记录
+                    break;
+                }
+                if (record.text != null) {
+                    document.insertString(record.offset, record.text, null);
+                } else {
+                    document.remove(record.offset, record.length);
+                }
+                count++;
+            }
+        } catch (IOException | BadLocationException e) {
+            e.printStackTrace();
+        }
+        return count;
+    }
+
+    public static void discardUntitled(Path journalFile) {
+        FileLock claimed = CLAIMED.remove(journalFile);
+        if (claimed == null) return;
+        EXECUTOR.execute(() -> deleteAndRelease(journalFile, claimed));
+    }
+
+    public void discard() {
+        records.clear();
+        flushed = 0;
+        fileCreated = false;
+        if (lock == null) return;
+        Path file = journalFile;
+        EXECUTOR.execute(() -> delete(file));
+    }
+
+    private boolean acquireLock() {
+        if (closed) return false;
+        if (lock == null) {
+            lock = tryLock(journalFile);
+        }
+        return lock != null;
+    }
+
+    // 读完日志头、校验通过时返回停在第一条记录处的输入流
+    private DataInputStream openJournal() throws IOException {
+        if (!Files.isRegularFile(journalFile)) return null;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalFile)));
+        try {
+            if (in.readInt() != MAGIC) {
+                in.close();
+                return null;
+            }
+            long length = in.readLong();
+            long modified = in.readLong();
+            if (!untitled && (length != baseLength || modified != baseModified)) {
+                in.close();
+                return null;
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static Record readRecord(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int offset = in.readInt();
+        if (type == INSERT) {
+            int length = in.readInt();
+            if (length < 0) throw new EOFException("日志记录已损坏");
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            return new Record(offset, text, text.length());
+        }
+        if (type == REMOVE) {
+            return new Record(offset, null, in.readInt());
+        }
+        throw new EOFException("日志记录已损坏");
+    }
+
+    /* ---------------- 记录 ---------------- */
+
+    // 开始记录编辑并定时写盘。无标题文档的初始内容也作为一条插入记录，恢复时从空文档开始
+    public void start() {
+        if (untitled && document.getLength() > 0) {
+            try {
+                records.add(new Record(0, document.getText(0, document.getLength()), document.getLength()));
+            } catch (BadLocationException e) {
+                e.printStackTrace();
+            }
+        }
+        acquireLock();
+        document.addDocumentListener(listener);
+        timer.start();
+    }
+
+    // keepFile 为 false 时删除日志文件（已保存或用户放弃修改），等待删除完成，以免随后退出程序时来不及删
+    // 可重复调用；关闭后的 checkpoint 等调用不再写日志
+    public void close(boolean keepFile) {
+        closed = true;
+        timer.stop();
+        document.removeDocumentListener(listener);
+        FileLock owned = lock;
+        lock = null;
+        if (owned == null) return;
+        // 没有任何记录时日志文件不存在，和不保留一样清掉 .lock 文件
+        if (keepFile && (fileCreated || flushed < records.size())) {
+            flush(owned);
+            EXECUTOR.execute(() -> release(owned));
+            return;
+        }
+        Path file = journalFile;
+        try {
+            EXECUTOR.submit(() -> deleteAndRelease(file, owned)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 跟踪文件尾部等场合文档随文件内容变化，暂停记录；resume 时以文件当前内容作为新的检查点
+    public void suspend() {
+        suspended = true;
+    }
+
+    public void resume(File file) {
+        suspended = false;
+        checkpoint(mark(), file);
+    }
+
+    // 取文档快照时调用，返回此刻之前最后一条记录之后的序号
+    public long mark() {
+        return firstSequence + records.size();
+    }
+
+    // 截至 mark 的内容已经保存到 file：丢弃这之前的记录，日志头改为 file 的现状，只保留之后的编辑
+    public void checkpoint(long mark, File file) {
+        Path target = journalFileFor(file);
+        if (!target.equals(journalFile)) {
+            // 无标题文档首次保存或另存为：旧日志作废
+            Path old = journalFile;
+            FileLock oldLock = lock;
+            if (oldLock != null) {
+                EXECUTOR.execute(() -> deleteAndRelease(old, oldLock));
+            }
+            journalFile = target;
+            lock = null;
+            untitled = false;
+            fileCreated = false;
+            acquireLock();
+        }
+        int dropped = (int) Math.max(0, Math.min(records.size(), mark - firstSequence));
+        records.subList(0, dropped).clear();
+        firstSequence += dropped;
+        baseLength = file.length();
+        baseModified = file.lastModified();
+        if (lock == null) {
+            flushed = records.size();
+        } else if (records.isEmpty()) {
+            Path old = journalFile;
+            EXECUTOR.execute(() -> delete(old));
+            fileCreated = false;
+            flushed = 0;
+        } else {
+            rewrite();
+        }
+    }
+
+    private void flush() {
+        flush(lock);
+    }
+
+    private void flush(FileLock owned) {
+        if (owned == null || flushed == records.size()) return;
+        if (!fileCreated) {
+            rewrite();
+            return;
+        }
+        List<Record> batch = new ArrayList<>(records.subList(flushed, records.size()));
+        flushed = records.size();
+        Path file = journalFile;
+        EXECUTOR.execute(() -> {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file.toFile(), true)))) {
+                writeRecords(out, batch);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    // 重写整个日志：日志头加上检查点之后的全部记录
+    private void rewrite() {
+        List<Record> batch = new ArrayList<>(records);
+        flushed = records.size();
+        fileCreated = true;
+        Path file = journalFile;
+        long length = baseLength;
+        long modified = baseModified;
+        EXECUTOR.execute(() -> {
+            try {
+                Files.createDirectories(file.getParent());
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(file.toFile())))) {
+                    out.writeInt(MAGIC);
+                    out.writeLong(length);
+                    out.writeLong(modified);
+                    writeRecords(out, batch);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private static void writeRecords(DataOutputStream out, List<Record> batch) throws IOException {
+        for (Record record : batch) {
+            if (record.text != null) {
+                byte[] bytes = record.text.getBytes(StandardCharsets.UTF_8);
+                out.writeByte(INSERT);
+                out.writeInt(record.offset);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            } else {
+                out.writeByte(REMOVE);
+                out.writeInt(record.offset);
+                out.writeInt(record.length);
+            }
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
\ No newline at end of file
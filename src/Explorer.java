@@ -1,16 +1,21 @@
 import javax.swing.*;
+import javax.swing.Timer;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreePath;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableCellRenderer;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.io.*;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
@@ -21,8 +26,8 @@ public class Explorer extends JFrame {
     private JTree directoryTree;
     private JTable fileTable;
     private JList<FileItem> fileList;
-    private DefaultTableModel tableModel;
-    private DefaultListModel<FileItem> listModel;
+    private FileTableModel tableModel;
+    private FileListModel listModel;
     private DefaultTreeModel treeModel;
     private JLabel statusLabel;
     private JTextField pathField;
@@ -38,7 +43,45 @@ public class Explorer extends JFrame {
     private Stack<String> backHistory = new Stack<>();
     private Stack<String> forwardHistory = new Stack<>();
     private String currentPath;
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
+    // 目录树按层懒加载，多个节点可同时在小型工作窃取线程池中加载，互不阻塞
+    private static final int TREE_LOADER_THREADS = 4;
+    private final ExecutorService treeLoader = Executors.newWorkStealingPool(TREE_LOADER_THREADS);
+    // 正在加载子节点的树节点，只在EDT中访问
+    private final Set<DirectoryNode> loadingTreeNodes = new HashSet<>();
+    private boolean restoringTreeSelection;
+
+    private static final boolean IS_WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+    // 大目录分批推送到界面：攒够一批或距上次推送超过一定时间就推送一次
+    private static final int LISTING_CHUNK_SIZE = 2000;
+    private static final long LISTING_PUBLISH_NANOS = 100_000_000L;
+    private static final Comparator<FileItem> FILE_ORDER = (f1, f2) -> {
+        if (f1.isDirectory() && !f2.isDirectory()) return -1;
+        if (!f1.isDirectory() && f2.isDirectory()) return 1;
+        return f1.getName().compareToIgnoreCase(f2.getName());
+    };
+
+    // 当前目录的文件列表，表格和图标视图共用，只在EDT中修改
+    private List<FileItem> fileItems = new ArrayList<>();
+    // 每次加载目录递增，后台线程据此放弃过期的加载
+    private volatile int listingGeneration;
+    private final ExecutorService listingExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "explorer-listing");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final SimpleDateFormat tableDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+    // 监视当前目录和已展开的树节点，变化以增量方式应用到界面
+    private DirectoryWatcher directoryWatcher;
+    private Path listedDirectory;
+    private final Map<Path, DirectoryNode> watchedTreeNodes = new HashMap<>();
+    // 目录仍在加载时收到的变化先暂存，加载完成后再应用；为 null 表示没有正在进行的加载
+    private Map<Path, FileItem> deferredChanges;
+
+    // 文件夹大小：开启后为当前目录下每个子文件夹启动统计，定时把部分结果刷新到大小列
+    private boolean folderSizesEnabled;
+    private final Map<Path, FolderSizeScanner.Scan> folderScans = new HashMap<>();
+    private Timer folderSizeTimer;
 
     // 视图模式：true=列表视图，false=图标视图
     private boolean isListView = true;
@@ -46,6 +89,13 @@ public class Explorer extends JFrame {
     // 文件类型图标
     private Map<String, Icon> fileIcons = new HashMap<>();
     private Map<String, Icon> largeFileIcons = new HashMap<>();
+    // 复制或剪切的文件，粘贴时使用
+    private final List<Path> clipboardPaths = new ArrayList<>();
+    private boolean clipboardCut;
+
+    // 图标视图中图片文件的缩略图，只为正在绘制的单元格请求
+    private ThumbnailCache thumbnailCache;
+    private static final Set<String> THUMBNAIL_EXTENSIONS = new HashSet<>(Arrays.asList("png", "jpg", "jpeg", "bmp", "gif"));
 
     public Explorer() {
         // 设置Metal外观
@@ -56,6 +106,16 @@ public class Explorer extends JFrame {
         }
 
         initializeFileIcons();
+        thumbnailCache = new ThumbnailCache(48, () -> {
+            if (!isListView) {
+                fileList.repaint();
+            }
+        });
+        try {
+            directoryWatcher = new DirectoryWatcher(this::onDirectoryChanged);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
         setupUI();
         initializeDefaultPath();
     }
@@ -256,6 +316,10 @@ public class Explorer extends JFrame {
         JMenu editMenu = new JMenu("编辑(E)");
         editMenu.setMnemonic('E');
 
+        JMenuItem cutItem = new JMenuItem("剪切");
+        cutItem.setAccelerator(KeyStroke.getKeyStroke("ctrl X"));
+        cutItem.addActionListener(e -> cutSelectedItems());
+
         JMenuItem copyItem = new JMenuItem("复制");
         copyItem.setAccelerator(KeyStroke.getKeyStroke("ctrl C"));
         copyItem.addActionListener(e -> copySelectedItems());
@@ -268,10 +332,17 @@ public class Explorer extends JFrame {
         renameItem.setAccelerator(KeyStroke.getKeyStroke("F2"));
         renameItem.addActionListener(e -> renameSelectedItem());
 
+        JMenuItem searchItem = new JMenuItem("搜索...");
+        searchItem.setAccelerator(KeyStroke.getKeyStroke("ctrl F"));
+        searchItem.addActionListener(e -> showSearch());
+
+        editMenu.add(cutItem);
         editMenu.add(copyItem);
         editMenu.add(pasteItem);
         editMenu.addSeparator();
         editMenu.add(renameItem);
+        editMenu.addSeparator();
+        editMenu.add(searchItem);
 
         // 查看菜单
         JMenu viewMenu = new JMenu("查看(V)");
@@ -293,8 +364,17 @@ public class Explorer extends JFrame {
         viewMenu.add(listViewItem);
         viewMenu.add(iconViewItem);
         viewMenu.addSeparator();
+        JCheckBoxMenuItem folderSizeItem = new JCheckBoxMenuItem("计算文件夹大小");
+        folderSizeItem.addActionListener(e -> setFolderSizesEnabled(folderSizeItem.isSelected()));
+
+        JMenuItem diskUsageItem = new JMenuItem("磁盘占用分析");
+        diskUsageItem.addActionListener(e -> showDiskUsage());
+
         viewMenu.add(refreshItem);
         viewMenu.addSeparator();
+        viewMenu.add(folderSizeItem);
+        viewMenu.add(diskUsageItem);
+        viewMenu.addSeparator();
         viewMenu.add(propertiesItem);
 
         menuBar.add(fileMenu);
@@ -332,6 +412,10 @@ public class Explorer extends JFrame {
         viewModeButton.setToolTipText("切换视图模式");
         viewModeButton.addActionListener(e -> toggleViewMode());
 
+        JButton searchButton = new JButton("搜索");
+        searchButton.setToolTipText("在当前文件夹中搜索 (Ctrl+F)");
+        searchButton.addActionListener(e -> showSearch());
+
         // 地址栏
         pathField = new JTextField();
         pathField.addActionListener(e -> navigateToPath(pathField.getText()));
@@ -342,6 +426,7 @@ public class Explorer extends JFrame {
         toolBar.add(refreshButton);
         toolBar.addSeparator();
         toolBar.add(viewModeButton);
+        toolBar.add(searchButton);
         toolBar.addSeparator();
         toolBar.add(new JLabel("地址: "));
         toolBar.add(pathField);
@@ -380,6 +465,8 @@ public class Explorer extends JFrame {
         // 创建图标视图
         createFileList();
         JScrollPane listScrollPane = new JScrollPane(fileList);
+        // 滚动后丢弃还没开始解码的缩略图请求，重绘时可见单元格会重新请求
+        listScrollPane.getViewport().addChangeListener(e -> thumbnailCache.cancelPending());
         rightPanel.add(listScrollPane, "ICON");
 
         // 默认显示列表视图
@@ -393,12 +480,10 @@ public class Explorer extends JFrame {
         directoryTree.setRootVisible(true);
         directoryTree.setShowsRootHandles(true);
 
-        // 添加系统根目录
+        // 添加系统根目录，子目录在展开时才加载
         File[] roots = File.listRoots();
         for (File rootFile : roots) {
-            DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode(rootFile.getAbsolutePath());
-            root.add(rootNode);
-            loadDirectoryIntoTree(rootNode, rootFile, 1);
+            root.add(new DirectoryNode(rootFile.toPath(), rootFile.getAbsolutePath()));
         }
 
         // 展开根节点
@@ -407,12 +492,10 @@ public class Explorer extends JFrame {
         // 添加选择监听器
         directoryTree.addTreeSelectionListener(e -> {
             TreePath path = e.getPath();
-            if (path != null) {
-                DefaultMutableTreeNode node = (DefaultMutableTreeNode) path.getLastPathComponent();
-                if (!node.isRoot()) {
-                    String dirPath = buildPathFromNode(node);
-                    navigateToDirectory(dirPath);
-                }
+            if (!restoringTreeSelection && path != null && e.isAddedPath()
+                    && path.getLastPathComponent() instanceof DirectoryNode) {
+                DirectoryNode node = (DirectoryNode) path.getLastPathComponent();
+                navigateToDirectory(node.getDirectory().toString());
             }
         });
 
@@ -420,91 +503,142 @@ public class Explorer extends JFrame {
         directoryTree.addTreeExpansionListener(new javax.swing.event.TreeExpansionListener() {
             @Override
             public void treeExpanded(javax.swing.event.TreeExpansionEvent event) {
-                DefaultMutableTreeNode node = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
-                if (!node.isRoot()) {
-                    String dirPath = buildPathFromNode(node);
-                    File dir = new File(dirPath);
-                    if (dir.exists() && dir.isDirectory()) {
-                        loadDirectoryIntoTree(node, dir, 1);
-                    }
+                Object node = event.getPath().getLastPathComponent();
+                if (node instanceof DirectoryNode) {
+                    DirectoryNode dirNode = (DirectoryNode) node;
+                    // 已加载过的节点折叠期间没有监视，重新展开时在后台刷新一次
+                    loadTreeNode(dirNode);
+                    watchTreeNode(dirNode);
                 }
             }
 
             @Override
             public void treeCollapsed(javax.swing.event.TreeExpansionEvent event) {
-                // 可以在这里添加折叠时的处理逻辑
+                DefaultMutableTreeNode node = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
+                cancelTreeLoads(node);
+                unwatchTreeNodes(node);
             }
         });
     }
 
-    private void loadDirectoryIntoTree(DefaultMutableTreeNode parentNode, File directory, int depth) {
-        if (depth <= 0) return;
+    // 在线程池中读取一层子目录，完成后在EDT中一次性替换子节点；已有子节点及其展开状态保留
+    private void loadTreeNode(DirectoryNode node) {
+        if (loadingTreeNodes.contains(node)) return;
 
-        // 清除现有子节点
-        parentNode.removeAllChildren();
+        int generation = ++node.loadGeneration;
+        loadingTreeNodes.add(node);
+        if (node.getChildCount() == 0) {
+            treeModel.insertNodeInto(new DefaultMutableTreeNode("正在加载...", false), node, 0);
+        }
 
-        executor.submit(() -> {
-            try {
-                File[] files = directory.listFiles();
-                if (files != null) {
-                    List<DefaultMutableTreeNode> childNodes = new ArrayList<>();
-
-                    for (File file : files) {
-                        if (file.isDirectory() && !file.isHidden()) {
-                            DefaultMutableTreeNode childNode = new DefaultMutableTreeNode(file.getName());
-                            childNodes.add(childNode);
-
-                            // 递归加载子目录
-                            if (depth > 1) {
-                                loadDirectoryIntoTree(childNode, file, depth - 1);
-                            }
-                        }
+        treeLoader.submit(() -> {
+            List<DirectoryNode> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(node.getDirectory())) {
+                for (Path entry : stream) {
+                    if (generation != node.loadGeneration) {
+                        return;
+                    }
+                    FileItem item = readFileItem(entry);
+                    if (item != null && item.isDirectory() && !item.isHidden()) {
+                        children.add(new DirectoryNode(entry, item.getName()));
                     }
-
-                    // 在EDT中更新UI
-                    SwingUtilities.invokeLater(() -> {
-                        for (DefaultMutableTreeNode child : childNodes) {
-                            parentNode.add(child);
-                        }
-                        treeModel.nodeStructureChanged(parentNode);
-                    });
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
+            } catch (IOException | DirectoryIteratorException e) {
+                // 无权限或已被删除的目录按空目录显示
             }
+            children.sort((a, b) -> a.toString().compareToIgnoreCase(b.toString()));
+            SwingUtilities.invokeLater(() -> applyTreeLoad(node, generation, children));
         });
     }
 
-    private String buildPathFromNode(DefaultMutableTreeNode node) {
-        StringBuilder path = new StringBuilder();
-        TreePath treePath = new TreePath(node.getPath());
+    private void applyTreeLoad(DirectoryNode node, int generation, List<DirectoryNode> children) {
+        if (generation != node.loadGeneration) return;
+        loadingTreeNodes.remove(node);
 
-        for (int i = 1; i < treePath.getPathCount(); i++) {
-            DefaultMutableTreeNode pathNode = (DefaultMutableTreeNode) treePath.getPathComponent(i);
-            if (i == 1) {
-                path.append(pathNode.getUserObject().toString());
+        Map<Path, DirectoryNode> existing = new HashMap<>();
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (node.getChildAt(i) instanceof DirectoryNode) {
+                DirectoryNode child = (DirectoryNode) node.getChildAt(i);
+                existing.put(child.getDirectory(), child);
+            }
+        }
+        Set<TreePath> expanded = new HashSet<>();
+        Enumeration<TreePath> expandedPaths = directoryTree.getExpandedDescendants(new TreePath(node.getPath()));
+        if (expandedPaths != null) {
+            expanded.addAll(Collections.list(expandedPaths));
+        }
+        TreePath selected = directoryTree.getSelectionPath();
+
+        node.removeAllChildren();
+        for (DirectoryNode child : children) {
+            DirectoryNode previous = existing.remove(child.getDirectory());
+            if (previous != null) {
+                // 折叠着的子节点下次展开时会重新读取，先恢复展开标记
+                if (!expanded.contains(new TreePath(previous.getPath()))) {
+                    previous.loaded = false;
+                }
+                node.add(previous);
             } else {
-                path.append(File.separator).append(pathNode.getUserObject().toString());
+                node.add(child);
             }
         }
+        node.loaded = true;
+        // 不再存在的子目录：停止其下的加载和监视
+        for (DirectoryNode removed : existing.values()) {
+            cancelTreeLoads(removed);
+            unwatchTreeNodes(removed);
+        }
+        treeModel.nodeStructureChanged(node);
 
-        return path.toString();
+        for (TreePath path : expanded) {
+            DefaultMutableTreeNode last = (DefaultMutableTreeNode) path.getLastPathComponent();
+            if (last.getRoot() == treeModel.getRoot()) {
+                directoryTree.expandPath(path);
+            }
+        }
+        if (selected != null && directoryTree.getSelectionPath() == null
+                && ((DefaultMutableTreeNode) selected.getLastPathComponent()).getRoot() == treeModel.getRoot()) {
+            restoringTreeSelection = true;
+            directoryTree.setSelectionPath(selected);
+            restoringTreeSelection = false;
+        }
     }
 
-    private void createFileTable() {
-        String[] columnNames = {"名称", "类型", "大小", "修改时间"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+    // 取消节点及其子孙上正在进行的加载；从未加载成功的节点恢复为未加载状态，
+    // 已加载过的节点只去掉重新读取时放入的“正在加载...”占位节点
+    private void cancelTreeLoads(DefaultMutableTreeNode root) {
+        Iterator<DirectoryNode> iterator = loadingTreeNodes.iterator();
+        while (iterator.hasNext()) {
+            DirectoryNode node = iterator.next();
+            if (!root.isNodeDescendant(node)) continue;
+
+            node.loadGeneration++;
+            iterator.remove();
+            if (!node.loaded && node.getChildCount() > 0) {
+                node.removeAllChildren();
+                treeModel.nodeStructureChanged(node);
+            } else if (node.loaded) {
+                for (int i = node.getChildCount() - 1; i >= 0; i--) {
+                    if (!(node.getChildAt(i) instanceof DirectoryNode)) {
+                        treeModel.removeNodeFromParent((DefaultMutableTreeNode) node.getChildAt(i));
+                    }
+                }
             }
+        }
+    }
 
-            @Override
-            public Class<?> getColumnClass(int column) {
-                if (column == 0) return Object.class;
-                return String.class;
+    // 导航到其他目录时，不在新路径上的节点的加载已经过期：取消并折叠
+    private void cancelStaleTreeLoads(Path destination) {
+        for (DirectoryNode node : new ArrayList<>(loadingTreeNodes)) {
+            if (!destination.startsWith(node.getDirectory())) {
+                cancelTreeLoads(node);
+                directoryTree.collapsePath(new TreePath(node.getPath()));
             }
-        };
+        }
+    }
+
+    private void createFileTable() {
+        tableModel = new FileTableModel();
 
         fileTable = new JTable(tableModel);
         fileTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
@@ -546,7 +680,7 @@ public class Explorer extends JFrame {
     }
 
     private void createFileList() {
-        listModel = new DefaultListModel<>();
+        listModel = new FileListModel();
         fileList = new JList<>(listModel);
         fileList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         fileList.setLayoutOrientation(JList.HORIZONTAL_WRAP);
@@ -605,88 +739,337 @@ public class Explorer extends JFrame {
 
     private void loadDirectoryContents(String path) {
         statusLabel.setText("正在加载...");
-        tableModel.setRowCount(0);
-        listModel.clear();
+        replaceItems(new ArrayList<>());
+        startListing(Paths.get(path), true);
+    }
 
-        executor.submit(() -> {
-            try {
-                File directory = new File(path);
-                if (!directory.exists() || !directory.isDirectory()) {
-                    SwingUtilities.invokeLater(() -> {
-                        statusLabel.setText("无效的目录: " + path);
-                    });
+    // 重新读取当前目录但不先清空界面，读取完成后整体替换并保留选中项
+    private void rescanCurrentDirectory() {
+        startListing(Paths.get(currentPath), false);
+    }
+
+    private void startListing(Path directory, boolean publishChunks) {
+        int generation = ++listingGeneration;
+        // 条目路径、监视键和当前路径都用同一个规范化路径，否则输入相对路径或含 .. 的路径时
+        // 监视器报告的变化对不上已有条目
+        Path normalized = directory.toAbsolutePath().normalize();
+        if (!normalized.toString().equals(currentPath)) {
+            currentPath = normalized.toString();
+            pathField.setText(currentPath);
+        }
+        if (directoryWatcher != null && !normalized.equals(listedDirectory)) {
+            if (listedDirectory != null) {
+                directoryWatcher.unwatch(listedDirectory);
+            }
+            directoryWatcher.watch(normalized);
+        }
+        listedDirectory = normalized;
+        deferredChanges = new HashMap<>();
+        if (publishChunks) {
+            cancelStaleTreeLoads(normalized);
+            cancelFolderScans();
+        }
+
+        listingExecutor.submit(() -> listDirectory(normalized, generation, publishChunks));
+    }
+
+    // 每个条目只读取一次属性，结果分批推送给界面，最后整体排序一次
+    private void listDirectory(Path directory, int generation, boolean publishChunks) {
+        List<FileItem> allItems = new ArrayList<>();
+        List<FileItem> pending = new ArrayList<>();
+        long lastPublish = System.nanoTime();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                if (generation != listingGeneration) {
                     return;
                 }
-
-                File[] files = directory.listFiles();
-                if (files == null) {
+                FileItem item = readFileItem(entry);
+                if (item == null || item.isHidden()) continue;
+
+                allItems.add(item);
+                pending.add(item);
+                if (publishChunks && (pending.size() >= LISTING_CHUNK_SIZE || System.nanoTime() - lastPublish > LISTING_PUBLISH_NANOS)) {
+                    List<FileItem> chunk = pending;
+                    int loaded = allItems.size();
                     SwingUtilities.invokeLater(() -> {
-                        statusLabel.setText("无法访问目录: " + path);
+                        if (generation == listingGeneration) {
+                            appendItems(chunk);
+                            statusLabel.setText(String.format("正在加载... 已读取 %d 个项目", loaded));
+                        }
                     });
-                    return;
+                    pending = new ArrayList<>();
+                    lastPublish = System.nanoTime();
+                }
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            finishListing(generation, null, "无效的目录: " + directory);
+            return;
+        } catch (AccessDeniedException e) {
+            finishListing(generation, null, "无法访问目录: " + directory);
+            return;
+        } catch (IOException | DirectoryIteratorException e) {
+            e.printStackTrace();
+            finishListing(generation, null, "加载失败: " + e.getMessage());
+            return;
+        }
+
+        // 排序：文件夹在前，然后按名称排序
+        allItems.sort(FILE_ORDER);
+        finishListing(generation, allItems, null);
+    }
+
+    private void finishListing(int generation, List<FileItem> items, String error) {
+        SwingUtilities.invokeLater(() -> {
+            if (generation != listingGeneration) return;
+            Map<Path, FileItem> changes = deferredChanges;
+            deferredChanges = null;
+            if (items == null) {
+                replaceItems(new ArrayList<>());
+                statusLabel.setText(error);
+                return;
+            }
+            replaceItems(items);
+            if (!changes.isEmpty()) {
+                applyListingChanges(changes);
+            }
+            startFolderScans(fileItems);
+            statusLabel.setText(String.format("就绪 - %d 个项目", fileItems.size()));
+        });
+    }
+
+    // 在监视线程中回调：先在后台重新读取变化项的属性，再回到EDT应用差异
+    private void onDirectoryChanged(Path directory, Set<Path> changed, boolean overflow) {
+        if (overflow) {
+            SwingUtilities.invokeLater(() -> reloadWatchedDirectory(directory));
+            return;
+        }
+        Map<Path, FileItem> changes = new HashMap<>();
+        for (Path path : changed) {
+            // 已删除或无法读取的项目记为 null
+            changes.put(path, readFileItem(path));
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (directory.equals(listedDirectory)) {
+                if (deferredChanges != null) {
+                    deferredChanges.putAll(changes);
+                } else {
+                    applyListingChanges(changes);
+                    statusLabel.setText(String.format("就绪 - %d 个项目", fileItems.size()));
                 }
+            }
+            DirectoryNode node = watchedTreeNodes.get(directory);
+            if (node != null) {
+                applyTreeChanges(node, changes);
+            }
+        });
+    }
+
+    private void reloadWatchedDirectory(Path directory) {
+        if (directory.equals(listedDirectory)) {
+            rescanCurrentDirectory();
+        }
+        DirectoryNode node = watchedTreeNodes.get(directory);
+        if (node != null) {
+            loadTreeNode(node);
+        }
+    }
+
+    // 把变化逐项应用到已排序的文件列表：删除、原地更新或按顺序插入，表格和列表的选中项随之移动
+    private void applyListingChanges(Map<Path, FileItem> changes) {
+        if (changes.size() > LISTING_CHUNK_SIZE) {
+            List<FileItem> merged = new ArrayList<>(fileItems.size() + changes.size());
+            for (FileItem item : fileItems) {
+                if (!changes.containsKey(item.getPath())) {
+                    merged.add(item);
+                }
+            }
+            for (FileItem item : changes.values()) {
+                if (item != null && !item.isHidden()) {
+                    merged.add(item);
+                }
+            }
+            merged.sort(FILE_ORDER);
+            replaceItems(merged);
+            return;
+        }
 
-                // 排序：文件夹在前，然后按名称排序
-                Arrays.sort(files, (f1, f2) -> {
-                    if (f1.isDirectory() && !f2.isDirectory()) return -1;
-                    if (!f1.isDirectory() && f2.isDirectory()) return 1;
-                    return f1.getName().compareToIgnoreCase(f2.getName());
-                });
-
-                List<Object[]> tableRows = new ArrayList<>();
-                List<FileItem> listItems = new ArrayList<>();
-                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
-                for (File file : files) {
-                    if (file.isHidden()) continue;
-
-                    String name = file.getName();
-                    String type = file.isDirectory() ? "文件夹" : getFileType(file);
-                    String size = file.isDirectory() ? "" : formatFileSize(file.length());
-                    String modifiedTime = dateFormat.format(new Date(file.lastModified()));
-
-                    // 为表格视图创建数据
-                    Icon smallIcon = getFileIcon(file, false);
-                    FileNameWithIcon nameWithIcon = new FileNameWithIcon(name, smallIcon);
-                    tableRows.add(new Object[]{nameWithIcon, type, size, modifiedTime});
-
-                    // 为图标视图创建数据
-                    Icon largeIcon = getFileIcon(file, true);
-                    FileItem fileItem = new FileItem(file, name, largeIcon);
-                    listItems.add(fileItem);
+        Set<Path> handled = new HashSet<>();
+        for (int i = fileItems.size() - 1; i >= 0; i--) {
+            Path path = fileItems.get(i).getPath();
+            if (!changes.containsKey(path)) continue;
+
+            FileItem oldItem = fileItems.get(i);
+            FileItem newItem = changes.get(path);
+            if (newItem != null && !newItem.isHidden() && newItem.isDirectory() == oldItem.isDirectory()) {
+                fileItems.set(i, newItem);
+                tableModel.fireTableRowsUpdated(i, i);
+                if (newItem.getLastModified() != oldItem.getLastModified()) {
+                    startFolderScans(Collections.singletonList(newItem));
                 }
+                listModel.itemsUpdated(i, i);
+                handled.add(path);
+            } else {
+                fileItems.remove(i);
+                tableModel.fireTableRowsDeleted(i, i);
+                listModel.itemsRemoved(i, i);
+            }
+        }
 
-                SwingUtilities.invokeLater(() -> {
-                    // 更新表格视图
-                    for (Object[] row : tableRows) {
-                        tableModel.addRow(row);
-                    }
+        for (Map.Entry<Path, FileItem> entry : changes.entrySet()) {
+            FileItem item = entry.getValue();
+            if (item == null || item.isHidden() || handled.contains(entry.getKey())) continue;
 
-                    // 更新图标视图
-                    for (FileItem item : listItems) {
-                        listModel.addElement(item);
-                    }
+            int index = Collections.binarySearch(fileItems, item, FILE_ORDER);
+            if (index < 0) index = -index - 1;
+            fileItems.add(index, item);
+            tableModel.fireTableRowsInserted(index, index);
+            startFolderScans(Collections.singletonList(item));
+            listModel.itemsAdded(index, index);
+        }
+    }
 
-                    statusLabel.setText(String.format("就绪 - %d 个项目", tableRows.size()));
-                });
+    private void applyTreeChanges(DirectoryNode node, Map<Path, FileItem> changes) {
+        // 尚未加载完成的节点稍后会整体读取，无需逐项处理
+        if (!node.loaded) return;
+
+        for (Map.Entry<Path, FileItem> entry : changes.entrySet()) {
+            String name = entry.getKey().getFileName().toString();
+            FileItem item = entry.getValue();
+            boolean shouldExist = item != null && item.isDirectory() && !item.isHidden();
+
+            DirectoryNode existing = null;
+            int insertIndex = node.getChildCount();
+            for (int i = 0; i < node.getChildCount(); i++) {
+                // 重新读取期间可能有“正在加载...”占位节点
+                if (!(node.getChildAt(i) instanceof DirectoryNode)) continue;
+                DirectoryNode child = (DirectoryNode) node.getChildAt(i);
+                int order = name.compareToIgnoreCase(child.toString());
+                if (name.equals(child.toString())) {
+                    existing = child;
+                    break;
+                }
+                if (order < 0 && insertIndex == node.getChildCount()) {
+                    insertIndex = i;
+                }
+            }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-                SwingUtilities.invokeLater(() -> {
-                    statusLabel.setText("加载失败: " + e.getMessage());
-                });
+            if (existing != null && !shouldExist) {
+                cancelTreeLoads(existing);
+                unwatchTreeNodes(existing);
+                treeModel.removeNodeFromParent(existing);
+            } else if (existing == null && shouldExist) {
+                treeModel.insertNodeInto(new DirectoryNode(entry.getKey(), name), node, insertIndex);
             }
-        });
+        }
     }
 
-    private Icon getFileIcon(File file, boolean large) {
+    private void watchTreeNode(DirectoryNode node) {
+        if (directoryWatcher == null) return;
+        Path normalized = node.getDirectory().toAbsolutePath().normalize();
+        if (watchedTreeNodes.put(normalized, node) == null) {
+            directoryWatcher.watch(normalized);
+        }
+    }
+
+    // 折叠节点时一并停止监视其下仍处于展开状态的子节点
+    private void unwatchTreeNodes(DefaultMutableTreeNode collapsed) {
+        if (directoryWatcher == null) return;
+        Iterator<Map.Entry<Path, DirectoryNode>> iterator = watchedTreeNodes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, DirectoryNode> entry = iterator.next();
+            if (collapsed.isNodeDescendant(entry.getValue())) {
+                directoryWatcher.unwatch(entry.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    // Windows 上目录流返回的路径自带缓存的属性，这里不会再产生额外的系统调用
+    private FileItem readFileItem(Path path) {
+        String name = path.getFileName().toString();
+        try {
+            BasicFileAttributes attrs;
+            boolean hidden;
+            if (IS_WINDOWS) {
+                DosFileAttributes dosAttrs = Files.readAttributes(path, DosFileAttributes.class);
+                attrs = dosAttrs;
+                hidden = dosAttrs.isHidden();
+            } else {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                hidden = name.startsWith(".");
+            }
+            return new FileItem(path, name, attrs.isDirectory(), hidden, attrs.size(), attrs.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            // 失效的符号链接等：读取链接本身的属性
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                return new FileItem(path, name, false, name.startsWith("."), attrs.size(), attrs.lastModifiedTime().toMillis());
+            } catch (IOException ignored) {
+                return null;
+            }
+        }
+    }
+
+    private void appendItems(List<FileItem> items) {
+        int first = fileItems.size();
+        fileItems.addAll(items);
+        int last = fileItems.size() - 1;
+        if (last >= first) {
+            tableModel.fireTableRowsInserted(first, last);
+            listModel.itemsAdded(first, last);
+        }
+    }
+
+    // 整体替换文件列表，尽量保留原来选中的项目
+    private void replaceItems(List<FileItem> items) {
+        Set<Path> selectedPaths = new HashSet<>();
+        for (FileItem item : getSelectedItems()) {
+            selectedPaths.add(item.getPath());
+        }
+
+        int oldSize = fileItems.size();
+        fileItems = items;
+        tableModel.fireTableDataChanged();
+        listModel.itemsReplaced(oldSize, items.size());
+
+        if (selectedPaths.isEmpty()) return;
+        ListSelectionModel tableSelection = fileTable.getSelectionModel();
+        ListSelectionModel listSelection = fileList.getSelectionModel();
+        tableSelection.setValueIsAdjusting(true);
+        listSelection.setValueIsAdjusting(true);
+        for (int i = 0; i < items.size(); i++) {
+            if (selectedPaths.contains(items.get(i).getPath())) {
+                tableSelection.addSelectionInterval(i, i);
+                listSelection.addSelectionInterval(i, i);
+            }
+        }
+        tableSelection.setValueIsAdjusting(false);
+        listSelection.setValueIsAdjusting(false);
+    }
+
+    private List<FileItem> getSelectedItems() {
+        List<FileItem> selected = new ArrayList<>();
+        if (isListView) {
+            for (int row : fileTable.getSelectedRows()) {
+                selected.add(fileItems.get(row));
+            }
+        } else {
+            for (int index : fileList.getSelectedIndices()) {
+                selected.add(fileItems.get(index));
+            }
+        }
+        return selected;
+    }
+
+    private Icon getFileIcon(FileItem item, boolean large) {
         Map<String, Icon> icons = large ? largeFileIcons : fileIcons;
 
-        if (file.isDirectory()) {
+        if (item.isDirectory()) {
             return icons.get("folder");
         }
 
-        String extension = getFileExtension(file.getName()).toLowerCase();
+        String extension = getFileExtension(item.getName()).toLowerCase();
         if (icons.containsKey(extension)) {
             return icons.get(extension);
         }
@@ -706,12 +1089,12 @@ public class Explorer extends JFrame {
         return icons.get("file");
     }
 
-    private String getFileType(File file) {
-        if (file.isDirectory()) {
+    private String getFileType(FileItem item) {
+        if (item.isDirectory()) {
             return "文件夹";
         }
 
-        String extension = getFileExtension(file.getName());
+        String extension = getFileExtension(item.getName());
         if (extension.isEmpty()) {
             return "文件";
         }
@@ -820,9 +1203,7 @@ public class Explorer extends JFrame {
     private void openSelectedTableItem() {
         int selectedRow = fileTable.getSelectedRow();
         if (selectedRow >= 0) {
-            FileNameWithIcon nameWithIcon = (FileNameWithIcon) tableModel.getValueAt(selectedRow, 0);
-            String fileName = nameWithIcon.getName();
-            openFile(fileName);
+            openFile(fileItems.get(selectedRow).getName());
         }
     }
 
@@ -879,18 +1260,8 @@ public class Explorer extends JFrame {
 
     private void deleteSelectedItems() {
         List<String> selectedFiles = new ArrayList<>();
-
-        if (isListView) {
-            int[] selectedRows = fileTable.getSelectedRows();
-            for (int row : selectedRows) {
-                FileNameWithIcon nameWithIcon = (FileNameWithIcon) tableModel.getValueAt(row, 0);
-                selectedFiles.add(nameWithIcon.getName());
-            }
-        } else {
-            List<FileItem> selectedItems = fileList.getSelectedValuesList();
-            for (FileItem item : selectedItems) {
-                selectedFiles.add(item.getName());
-            }
+        for (FileItem item : getSelectedItems()) {
+            selectedFiles.add(item.getName());
         }
 
         if (selectedFiles.isEmpty()) return;
@@ -899,63 +1270,58 @@ public class Explorer extends JFrame {
         int result = JOptionPane.showConfirmDialog(this, message, "确认删除", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
 
         if (result == JOptionPane.YES_OPTION) {
+            // 在后台删除，大文件夹不会卡住界面
+            List<Path> paths = new ArrayList<>();
             for (String fileName : selectedFiles) {
-                File file = new File(currentPath, fileName);
-
-                try {
-                    if (file.isDirectory()) {
-                        deleteDirectory(file);
-                    } else {
-                        file.delete();
-                    }
-                } catch (Exception e) {
-                    JOptionPane.showMessageDialog(this, "删除失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-                }
+                paths.add(Paths.get(currentPath, fileName));
             }
-            refreshCurrentDirectory();
-            statusLabel.setText("删除操作完成");
+            runFileOperation(FileOperation.delete(paths), "删除操作完成");
         }
     }
 
-    private void deleteDirectory(File directory) throws IOException {
-        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, java.nio.file.attribute.BasicFileAttributes attrs) throws IOException {
-                Files.delete(file);
-                return FileVisitResult.CONTINUE;
-            }
+    private void copySelectedItems() {
+        setClipboard(false);
+    }
 
-            @Override
-            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-                Files.delete(dir);
-                return FileVisitResult.CONTINUE;
-            }
-        });
+    private void cutSelectedItems() {
+        setClipboard(true);
     }
 
-    private void copySelectedItems() {
-        statusLabel.setText("复制功能尚未实现");
+    private void setClipboard(boolean cut) {
+        List<FileItem> selectedItems = getSelectedItems();
+        if (selectedItems.isEmpty()) return;
+        clipboardPaths.clear();
+        for (FileItem item : selectedItems) {
+            clipboardPaths.add(item.getPath());
+        }
+        clipboardCut = cut;
+        statusLabel.setText(String.format("已%s %d 个项目", cut ? "剪切" : "复制", clipboardPaths.size()));
     }
 
     private void pasteItems() {
-        statusLabel.setText("粘贴功能尚未实现");
+        if (clipboardPaths.isEmpty() || currentPath == null) return;
+        Path target = Paths.get(currentPath);
+        FileOperation.ConflictResolver resolver = FileOperationDialog.createConflictResolver(this);
+        if (clipboardCut) {
+            runFileOperation(FileOperation.move(clipboardPaths, target, resolver), "移动完成");
+            // 剪切的文件只能粘贴一次
+            clipboardPaths.clear();
+        } else {
+            runFileOperation(FileOperation.copy(clipboardPaths, target, resolver), "粘贴完成");
+        }
     }
 
-    private void renameSelectedItem() {
-        String fileName = null;
+    private void runFileOperation(FileOperation operation, String doneMessage) {
+        statusLabel.setText("正在处理...");
+        new FileOperationDialog(this, operation, () -> {
+            refreshCurrentDirectory();
+            statusLabel.setText(operation.isCancelled() ? "操作已取消" : doneMessage);
+        }).start();
+    }
 
-        if (isListView) {
-            int selectedRow = fileTable.getSelectedRow();
-            if (selectedRow >= 0) {
-                FileNameWithIcon nameWithIcon = (FileNameWithIcon) tableModel.getValueAt(selectedRow, 0);
-                fileName = nameWithIcon.getName();
-            }
-        } else {
-            FileItem selectedItem = fileList.getSelectedValue();
-            if (selectedItem != null) {
-                fileName = selectedItem.getName();
-            }
-        }
+    private void renameSelectedItem() {
+        List<FileItem> selectedItems = getSelectedItems();
+        String fileName = selectedItems.isEmpty() ? null : selectedItems.get(0).getName();
 
         if (fileName != null) {
             String newName = JOptionPane.showInputDialog(this, "请输入新名称:", fileName);
@@ -976,7 +1342,7 @@ public class Explorer extends JFrame {
 
     private void refreshCurrentDirectory() {
         if (currentPath != null) {
-            loadDirectoryContents(currentPath);
+            rescanCurrentDirectory();
         }
     }
 
@@ -1000,9 +1366,16 @@ public class Explorer extends JFrame {
             }
         });
 
+        JMenuItem cutItem = new JMenuItem("剪切");
+        cutItem.addActionListener(e -> cutSelectedItems());
+
         JMenuItem copyItem = new JMenuItem("复制");
         copyItem.addActionListener(e -> copySelectedItems());
 
+        JMenuItem pasteItem = new JMenuItem("粘贴");
+        pasteItem.setEnabled(!clipboardPaths.isEmpty());
+        pasteItem.addActionListener(e -> pasteItems());
+
         JMenuItem deleteItem = new JMenuItem("删除");
         deleteItem.addActionListener(e -> deleteSelectedItems());
 
@@ -1014,7 +1387,9 @@ public class Explorer extends JFrame {
 
         contextMenu.add(openItem);
         contextMenu.addSeparator();
+        contextMenu.add(cutItem);
         contextMenu.add(copyItem);
+        contextMenu.add(pasteItem);
         contextMenu.add(deleteItem);
         contextMenu.add(renameItem);
         contextMenu.addSeparator();
@@ -1025,72 +1400,234 @@ public class Explorer extends JFrame {
     }
 
     private void showProperties() {
-        String fileName = null;
+        List<FileItem> selectedItems = getSelectedItems();
+        String fileName = selectedItems.isEmpty() ? null : selectedItems.get(0).getName();
 
-        if (isListView) {
-            int selectedRow = fileTable.getSelectedRow();
-            if (selectedRow >= 0) {
-                FileNameWithIcon nameWithIcon = (FileNameWithIcon) tableModel.getValueAt(selectedRow, 0);
-                fileName = nameWithIcon.getName();
+        if (fileName != null) {
+            File file = new File(currentPath, fileName);
+
+            if (!file.isDirectory()) {
+                JOptionPane.showMessageDialog(this, buildPropertiesText(file, formatFileSize(file.length())), "属性", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+
+            // 文件夹的总大小在后台统计，对话框打开期间定时刷新
+            FolderSizeScanner.Scan scan = folderScans.get(file.toPath());
+            boolean started = scan == null || scan.isCancelled();
+            if (started) {
+                scan = FolderSizeScanner.getInstance().scan(file.toPath());
+            }
+            FolderSizeScanner.Scan propertiesScan = scan;
+            JTextArea infoArea = new JTextArea();
+            infoArea.setEditable(false);
+            infoArea.setOpaque(false);
+            Runnable update = () -> infoArea.setText(buildPropertiesText(file, String.format("%s%s，%d 个文件",
+                    formatFileSize(propertiesScan.getSize()), propertiesScan.isDone() ? "" : "（正在统计...）", propertiesScan.getFiles())));
+            update.run();
+            Timer timer = new Timer(200, e -> update.run());
+            timer.start();
+            JOptionPane.showMessageDialog(this, infoArea, "属性", JOptionPane.INFORMATION_MESSAGE);
+            timer.stop();
+            // 为对话框单独启动的统计随对话框关闭而停止，列表中的统计仍由 folderScans 管理
+            if (started) {
+                propertiesScan.cancel();
             }
+        }
+    }
+
+    private String buildPropertiesText(File file, String sizeText) {
+        StringBuilder info = new StringBuilder();
+        info.append("名称: ").append(file.getName()).append("\n");
+        info.append("类型: ").append(file.isDirectory() ? "文件夹" : "文件").append("\n");
+        info.append("位置: ").append(file.getParent()).append("\n");
+        info.append("大小: ").append(sizeText).append("\n");
+        info.append("修改时间: ").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(file.lastModified()))).append("\n");
+        info.append("只读: ").append(file.canWrite() ? "否" : "是").append("\n");
+        info.append("隐藏: ").append(file.isHidden() ? "是" : "否");
+        return info.toString();
+    }
+
+    private void setFolderSizesEnabled(boolean enabled) {
+        folderSizesEnabled = enabled;
+        if (enabled) {
+            startFolderScans(fileItems);
         } else {
-            FileItem selectedItem = fileList.getSelectedValue();
-            if (selectedItem != null) {
-                fileName = selectedItem.getName();
+            cancelFolderScans();
+        }
+        tableModel.fireTableChanged(new TableModelEvent(tableModel, 0, Integer.MAX_VALUE, 2));
+    }
+
+    private void startFolderScans(List<FileItem> items) {
+        if (!folderSizesEnabled) return;
+
+        for (FileItem item : items) {
+            if (!item.isDirectory()) continue;
+            FolderSizeScanner.Scan previous = folderScans.put(item.getPath(), FolderSizeScanner.getInstance().scan(item.getPath()));
+            if (previous != null) {
+                previous.cancel();
             }
         }
+        if (folderSizeTimer == null) {
+            folderSizeTimer = new Timer(300, e -> refreshFolderSizes());
+        }
+        folderSizeTimer.start();
+    }
 
-        if (fileName != null) {
-            File file = new File(currentPath, fileName);
+    private void cancelFolderScans() {
+        for (FolderSizeScanner.Scan scan : folderScans.values()) {
+            scan.cancel();
+        }
+        folderScans.clear();
+        if (folderSizeTimer != null) {
+            folderSizeTimer.stop();
+        }
+    }
 
-            StringBuilder info = new StringBuilder();
-            info.append("名称: ").append(file.getName()).append("\n");
-            info.append("类型: ").append(file.isDirectory() ? "文件夹" : "文件").append("\n");
-            info.append("位置: ").append(file.getParent()).append("\n");
-            info.append("大小: ").append(formatFileSize(file.length())).append("\n");
-            info.append("修改时间: ").append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(file.lastModified()))).append("\n");
-            info.append("只读: ").append(file.canWrite() ? "否" : "是").append("\n");
-            info.append("隐藏: ").append(file.isHidden() ? "是" : "否");
+    // 只通知大小列变化，表格只会重绘可见的单元格
+    private void refreshFolderSizes() {
+        boolean running = false;
+        for (FolderSizeScanner.Scan scan : folderScans.values()) {
+            if (!scan.isDone()) {
+                running = true;
+                break;
+            }
+        }
+        if (!running) {
+            folderSizeTimer.stop();
+        }
+        if (!fileItems.isEmpty()) {
+            tableModel.fireTableChanged(new TableModelEvent(tableModel, 0, fileItems.size() - 1, 2));
+        }
+    }
+
+    private String formatFolderSize(FileItem item) {
+        FolderSizeScanner.Scan scan = folderScans.get(item.getPath());
+        if (scan == null) return "";
+        return scan.isDone() ? formatFileSize(scan.getSize()) : formatFileSize(scan.getBytes()) + "...";
+    }
 
-            JOptionPane.showMessageDialog(this, info.toString(), "属性", JOptionPane.INFORMATION_MESSAGE);
+    private void showDiskUsage() {
+        if (currentPath != null) {
+            new DiskUsageDialog(this, Paths.get(currentPath)).setVisible(true);
         }
     }
 
-    // 内部类：文件项
-    private static class FileItem {
-        private File file;
-        private String name;
-        private Icon icon;
+    // 在当前目录下按文件名或内容搜索，结果中的文件夹可直接在资源管理器中打开
+    private void showSearch() {
+        if (currentPath != null) {
+            new FileSearchDialog(this, Paths.get(currentPath), path -> navigateToDirectory(path.toString())).setVisible(true);
+        }
+    }
 
-        public FileItem(File file, String name, Icon icon) {
-            this.file = file;
+    // 内部类：文件项，每个文件只保存一条记录，属性在列出目录时一次读取
+    private static class FileItem {
+        private final Path path;
+        private final String name;
+        private final boolean directory;
+        private final boolean hidden;
+        private final long size;
+        private final long lastModified;
+
+        public FileItem(Path path, String name, boolean directory, boolean hidden, long size, long lastModified) {
+            this.path = path;
             this.name = name;
-            this.icon = icon;
+            this.directory = directory;
+            this.hidden = hidden;
+            this.size = size;
+            this.lastModified = lastModified;
         }
 
-        public File getFile() { return file; }
+        public Path getPath() { return path; }
+        public File getFile() { return path.toFile(); }
         public String getName() { return name; }
-        public Icon getIcon() { return icon; }
+        public boolean isDirectory() { return directory; }
+        public boolean isHidden() { return hidden; }
+        public long getSize() { return size; }
+        public long getLastModified() { return lastModified; }
 
         @Override
         public String toString() { return name; }
     }
 
-    // 内部类：文件名与图标的包装类
-    private static class FileNameWithIcon {
-        private String name;
-        private Icon icon;
+    // 内部类：目录树节点，子目录在第一次展开时才读取
+    private static class DirectoryNode extends DefaultMutableTreeNode {
+        private final Path directory;
+        // 每次开始或取消加载时递增，加载线程据此放弃过期结果
+        private volatile int loadGeneration;
+        private boolean loaded;
 
-        public FileNameWithIcon(String name, Icon icon) {
-            this.name = name;
-            this.icon = icon;
+        public DirectoryNode(Path directory, String name) {
+            super(name, true);
+            this.directory = directory;
         }
 
-        public String getName() { return name; }
-        public Icon getIcon() { return icon; }
+        public Path getDirectory() { return directory; }
 
+        // 加载前总是显示展开标记，加载后没有子目录才显示为叶子
         @Override
-        public String toString() { return name; }
+        public boolean isLeaf() { return loaded && getChildCount() == 0; }
+    }
+
+    // 内部类：表格模型，直接读取 fileItems，类型、大小和时间只在绘制可见行时格式化
+    private class FileTableModel extends AbstractTableModel {
+        private final String[] columnNames = {"名称", "类型", "大小", "修改时间"};
+
+        @Override
+        public int getRowCount() { return fileItems.size(); }
+
+        @Override
+        public int getColumnCount() { return columnNames.length; }
+
+        @Override
+        public String getColumnName(int column) { return columnNames[column]; }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            if (column == 0) return Object.class;
+            return String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            FileItem item = fileItems.get(row);
+            switch (column) {
+                case 0: return item;
+                case 1: return getFileType(item);
+                case 2: return item.isDirectory() ? formatFolderSize(item) : formatFileSize(item.getSize());
+                default: return tableDateFormat.format(new Date(item.getLastModified()));
+            }
+        }
+    }
+
+    // 内部类：图标视图模型，与表格共用 fileItems
+    private class FileListModel extends AbstractListModel<FileItem> {
+        @Override
+        public int getSize() { return fileItems.size(); }
+
+        @Override
+        public FileItem getElementAt(int index) { return fileItems.get(index); }
+
+        void itemsAdded(int first, int last) {
+            fireIntervalAdded(this, first, last);
+        }
+
+        void itemsRemoved(int first, int last) {
+            fireIntervalRemoved(this, first, last);
+        }
+
+        void itemsUpdated(int first, int last) {
+            fireContentsChanged(this, first, last);
+        }
+
+        // 先移除再插入，让 JList 同时清理失效的选中项
+        void itemsReplaced(int oldSize, int newSize) {
+            if (oldSize > 0) {
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            }
+            if (newSize > 0) {
+                fireIntervalAdded(this, 0, newSize - 1);
+            }
+        }
     }
 
     // 内部类：表格文件名渲染器
@@ -1101,10 +1638,10 @@ public class Explorer extends JFrame {
 
         @Override
         public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
-            if (value instanceof FileNameWithIcon) {
-                FileNameWithIcon nameWithIcon = (FileNameWithIcon) value;
-                setText(nameWithIcon.getName());
-                setIcon(nameWithIcon.getIcon());
+            if (value instanceof FileItem) {
+                FileItem item = (FileItem) value;
+                setText(item.getName());
+                setIcon(getFileIcon(item, false));
             } else {
                 setText(value != null ? value.toString() : "");
                 setIcon(null);
@@ -1124,6 +1661,9 @@ public class Explorer extends JFrame {
 
     // 内部类：图标视图渲染器
     private class FileIconCellRenderer extends JLabel implements ListCellRenderer<FileItem> {
+        // 渲染器绘制完当前单元格后才会处理下一个，缩略图图标可以复用
+        private final ThumbnailIcon thumbnailIcon = new ThumbnailIcon(48);
+
         public FileIconCellRenderer() {
             setOpaque(true);
             setHorizontalAlignment(JLabel.CENTER);
@@ -1136,7 +1676,7 @@ public class Explorer extends JFrame {
         public Component getListCellRendererComponent(JList<? extends FileItem> list, FileItem value, int index, boolean isSelected, boolean cellHasFocus) {
             if (value != null) {
                 setText(value.getName());
-                setIcon(value.getIcon());
+                setIcon(getThumbnailOrIcon(value));
             } else {
                 setText("");
                 setIcon(null);
@@ -1152,12 +1692,58 @@ public class Explorer extends JFrame {
 
             return this;
         }
+
+        private Icon getThumbnailOrIcon(FileItem item) {
+            if (!item.isDirectory() && THUMBNAIL_EXTENSIONS.contains(getFileExtension(item.getName()).toLowerCase())) {
+                BufferedImage thumbnail = thumbnailCache.get(item.getPath(), item.getLastModified(), item.getSize());
+                if (thumbnail != null) {
+                    return thumbnailIcon.withImage(thumbnail);
+                }
+            }
+            return getFileIcon(item, true);
+        }
+    }
+
+    // 缩略图居中绘制在固定大小的方框内，保证各单元格文字对齐
+    private static class ThumbnailIcon implements Icon {
+        private final int size;
+        private BufferedImage image;
+
+        ThumbnailIcon(int size) {
+            this.size = size;
+        }
+
+        ThumbnailIcon withImage(BufferedImage image) {
+            this.image = image;
+            return this;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            if (image != null) {
+                g.drawImage(image, x + (size - image.getWidth()) / 2, y + (size - image.getHeight()) / 2, null);
+            }
+        }
+
+        @Override
+        public int getIconWidth() { return size; }
+
+        @Override
+        public int getIconHeight() { return size; }
     }
 
     // 清理资源
     private void cleanup() {
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
+        for (DirectoryNode node : loadingTreeNodes) {
+            node.loadGeneration++;
+        }
+        treeLoader.shutdownNow();
+        cancelFolderScans();
+        listingGeneration++;
+        listingExecutor.shutdownNow();
+        thumbnailCache.close();
+        if (directoryWatcher != null) {
+            directoryWatcher.close();
         }
     }
 
@@ -0,0 +1,417 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 后台文件操作：复制、移动、删除。小文件并行复制，大文件逐个用 transferTo 零拷贝传输，
+// 同一磁盘内的移动直接重命名；支持暂停、取消和冲突处理
+public class FileOperation {
+    public enum Type { COPY, MOVE, DELETE }
+
+    public enum ConflictChoice { OVERWRITE, SKIP, KEEP_BOTH }
+
+    // 目标已存在同名文件时调用，在操作线程上执行，可以阻塞等待用户选择
+    public interface ConflictResolver {
+        ConflictChoice resolve(Path source, Path target);
+    }
+
+    // 小于此大小的文件交给线程池并行复制，大文件顺序传输避免磁头来回寻道
+    private static final long SMALL_FILE_SIZE = 1024 * 1024;
+    // 每次 transferTo 的长度，两次之间检查暂停和取消
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+    private static final ExecutorService SMALL_FILE_POOL = Executors.newFixedThreadPool(4, r -> {
+        Thread thread = new Thread(r, "file-operation-small");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Type type;
+    private final List<Path> sources;
+    private final Path targetDir;
+    private final ConflictResolver resolver;
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong doneBytes = new AtomicLong();
+    private final AtomicLong totalFiles = new AtomicLong();
+    private final AtomicLong doneFiles = new AtomicLong();
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    // 有文件失败或被跳过的顶层源，移动时不删除这些源
+    private final Set<Path> incompleteSources = ConcurrentHashMap.newKeySet();
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private final Object pauseLock = new Object();
+    private volatile boolean paused;
+    private volatile boolean cancelled;
+    private volatile Path currentFile;
+    private volatile boolean planning = true;
+
+    private FileOperation(Type type, List<Path> sources, Path targetDir, ConflictResolver resolver) {
+        this.type = type;
+        this.sources = new ArrayList<>(sources);
+        this.targetDir = targetDir;
+        this.resolver = resolver;
+    }
+
+    public static FileOperation copy(List<Path> sources, Path targetDir, ConflictResolver resolver) {
+        return new FileOperation(Type.COPY, sources, targetDir, resolver);
+    }
+
+    public static FileOperation move(List<Path> sources, Path targetDir, ConflictResolver resolver) {
+        return new FileOperation(Type.MOVE, sources, targetDir, resolver);
+    }
+
+    public static FileOperation delete(List<Path> sources) {
+        return new FileOperation(Type.DELETE, sources, null, null);
+    }
+
+    public void start() {
+        Thread thread = new Thread(this::run, "file-operation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public Type getType() { return type; }
+    public long getTotalBytes() { return totalBytes.get(); }
+    public long getDoneBytes() { return doneBytes.get(); }
+    public long getTotalFiles() { return totalFiles.get(); }
+    public long getDoneFiles() { return doneFiles.get(); }
+    public Path getCurrentFile() { return currentFile; }
+    // 仍在统计需要处理的文件时为 true，此时总数还不完整
+    public boolean isPlanning() { return planning; }
+    public boolean isPaused() { return paused; }
+    public boolean isCancelled() { return cancelled; }
+    public boolean isDone() { return future.isDone(); }
+    public CompletableFuture<Void> getFuture() { return future; }
+
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    public void pause() {
+        paused = true;
+    }
+
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    public void cancel() {
+        synchronized (pauseLock) {
+            cancelled = true;
+            pauseLock.notifyAll();
+        }
+    }
+
+    private void run() {
+        try {
+            if (type == Type.DELETE) {
+                runDelete();
+            } else {
+                runTransfer();
+            }
+        } catch (CancellationException e) {
+            // 已完成的部分保留，正在写入的文件已删除
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            errors.add(e.toString());
+        } finally {
+            currentFile = null;
+            future.complete(null);
+        }
+    }
+
+    // 暂停时在此等待；取消后抛出 CancellationException 结束当前任务
+    private void checkpoint() {
+        if (paused && !cancelled) {
+            synchronized (pauseLock) {
+                while (paused && !cancelled) {
+                    try {
+                        pauseLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        cancelled = true;
+                    }
+                }
+            }
+        }
+        if (cancelled) {
+            throw new CancellationException();
+        }
+    }
+
+    private void runTransfer() {
+        List<Entry> directories = new ArrayList<>();
+        List<Entry> largeFiles = new ArrayList<>();
+        List<Entry> smallFiles = new ArrayList<>();
+        List<Path> copiedSources = new ArrayList<>();
+
+        for (Path source : sources) {
+            checkpoint();
+            source = source.toAbsolutePath().normalize();
+            Path target = targetDir.resolve(source.getFileName().toString()).toAbsolutePath().normalize();
+            if (targetDir.toAbsolutePath().normalize().startsWith(source)) {
+                errors.add(source + ": 不能复制到自身的子文件夹中");
+                continue;
+            }
+            if (type == Type.MOVE && source.equals(target)) {
+                continue;
+            }
+            // 两边都是文件夹时合并，其中的同名文件在统计时逐个处理
+            if (Files.exists(target, LinkOption.NOFOLLOW_LINKS) && (source.equals(target) || !bothDirectories(source, target))) {
+                target = resolveConflict(source, target);
+                if (target == null) continue;
+            }
+            if (type == Type.MOVE && tryRename(source, target)) {
+                continue;
+            }
+            try {
+                plan(source, target, directories, largeFiles, smallFiles);
+                copiedSources.add(source);
+            } catch (IOException e) {
+                errors.add(source + ": " + e.getMessage());
+            }
+        }
+        planning = false;
+
+        for (Entry directory : directories) {
+            checkpoint();
+            try {
+                Files.createDirectories(directory.target);
+            } catch (IOException e) {
+                errors.add(directory.target + ": " + e.getMessage());
+                incompleteSources.add(directory.root);
+            }
+        }
+
+        List<Future<?>> smallTasks = new ArrayList<>(smallFiles.size());
+        for (Entry entry : smallFiles) {
+            smallTasks.add(SMALL_FILE_POOL.submit(() -> copyFile(entry)));
+        }
+        try {
+            for (Entry entry : largeFiles) {
+                copyFile(entry);
+            }
+        } finally {
+            // 取消时也要等并行任务退出，之后才能认为操作结束
+            for (Future<?> task : smallTasks) {
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancel();
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof CancellationException)) {
+                        errors.add(String.valueOf(e.getCause()));
+                    }
+                }
+            }
+        }
+        checkpoint();
+
+        if (type == Type.MOVE) {
+            for (Path source : copiedSources) {
+                if (!incompleteSources.contains(source)) {
+                    deleteTree(source, false);
+                }
+            }
+        }
+    }
+
+    private static boolean bothDirectories(Path source, Path target) {
+        return Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS) && Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    // 返回实际的目标路径，跳过时返回 null
+    private Path resolveConflict(Path source, Path target) {
+        // 复制到所在的文件夹时直接保留两者
+        ConflictChoice choice = source.equals(target) ? ConflictChoice.KEEP_BOTH : resolver.resolve(source, target);
+        switch (choice) {
+            case SKIP:
+                return null;
+            case KEEP_BOTH:
+                return uniqueName(target);
+            default:
+                if (Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS) != Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS)) {
+                    errors.add(target + ": 无法用文件替换文件夹");
+                    return null;
+                }
+                return target;
+        }
+    }
+
+    private static Path uniqueName(Path target) {
+        String name = target.getFileName().toString();
+        int dot = Files.isDirectory(target) ? -1 : name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        Path candidate = target.resolveSibling(base + " - 副本" + extension);
+        for (int i = 2; Files.exists(candidate, LinkOption.NOFOLLOW_LINKS); i++) {
+            candidate = target.resolveSibling(base + " - 副本 (" + i + ")" + extension);
+        }
+        return candidate;
+    }
+
+    // 同一文件系统内的移动只需重命名；跨磁盘时 ATOMIC_MOVE 失败，改为复制后删除
+    private boolean tryRename(Path source, Path target) {
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS) && Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS)) {
+            // 合并到已有文件夹，只能逐个处理
+            return false;
+        }
+        try {
+            currentFile = source;
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            totalFiles.incrementAndGet();
+            doneFiles.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void plan(Path root, Path rootTarget, List<Entry> directories, List<Entry> largeFiles, List<Entry> smallFiles) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                checkpoint();
+                currentFile = dir;
+                directories.add(new Entry(root, dir, rootTarget.resolve(root.relativize(dir).toString()), 0, false));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                checkpoint();
+                Path target = file.equals(root) ? rootTarget : rootTarget.resolve(root.relativize(file).toString());
+                // 文件夹合并时，里面的同名文件逐个处理冲突
+                if (!file.equals(root) && Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                    target = resolveConflict(file, target);
+                    if (target == null) {
+                        incompleteSources.add(root);
+                        return FileVisitResult.CONTINUE;
+                    }
+                }
+                Entry entry = new Entry(root, file, target, attrs.size(), attrs.isSymbolicLink());
+                (attrs.size() < SMALL_FILE_SIZE ? smallFiles : largeFiles).add(entry);
+                totalBytes.addAndGet(attrs.size());
+                totalFiles.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                errors.add(file + ": " + e.getMessage());
+                incompleteSources.add(root);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void copyFile(Entry entry) {
+        checkpoint();
+        currentFile = entry.source;
+        long copied = 0;
+        try {
+            if (entry.symbolicLink) {
+                Files.copy(entry.source, entry.target, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                try (FileChannel in = FileChannel.open(entry.source, StandardOpenOption.READ);
+                     FileChannel out = FileChannel.open(entry.target, StandardOpenOption.WRITE,
+                             StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    long size = in.size();
+                    while (copied < size) {
+                        checkpoint();
+                        long transferred = in.transferTo(copied, Math.min(TRANSFER_CHUNK, size - copied), out);
+                        if (transferred <= 0) {
+                            // 复制过程中文件被截短
+                            break;
+                        }
+                        copied += transferred;
+                        doneBytes.addAndGet(transferred);
+                    }
+                }
+                Files.setLastModifiedTime(entry.target, Files.getLastModifiedTime(entry.source));
+            }
+            doneFiles.incrementAndGet();
+        } catch (CancellationException e) {
+            deletePartial(entry.target);
+            throw e;
+        } catch (IOException e) {
+            errors.add(entry.source + ": " + e.getMessage());
+            incompleteSources.add(entry.root);
+            deletePartial(entry.target);
+        } finally {
+            // 失败或取消时进度按完整大小计入，避免进度条停在中间
+            doneBytes.addAndGet(Math.max(0, entry.size - copied));
+        }
+    }
+
+    private static void deletePartial(Path target) {
+        try {
+            Files.deleteIfExists(target);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void runDelete() {
+        planning = false;
+        for (Path source : sources) {
+            deleteTree(source, true);
+        }
+    }
+
+    private void deleteTree(Path root, boolean countFiles) {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    checkpoint();
+                    currentFile = file;
+                    if (countFiles) {
+                        totalFiles.incrementAndGet();
+                    }
+                    Files.delete(file);
+                    if (countFiles) {
+                        doneFiles.incrementAndGet();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    checkpoint();
+                    if (e != null) throw e;
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            errors.add(root + ": " + e.getMessage());
+        }
+    }
+
+    private static class Entry {
+        final Path root;
+        final Path source;
+        final Path target;
+        final long size;
+        final boolean symbolicLink;
+
+        Entry(Path root, Path source, Path target, long size, boolean symbolicLink) {
+            this.root = root;
+            this.source = source;
+            this.target = target;
+            this.size = size;
+            this.symbolicLink = symbolicLink;
+        }
+    }
+}
\ No newline at end of file
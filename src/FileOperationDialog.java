@@ -0,0 +1,163 @@
+import javax.swing.*;
+import javax.swing.Timer;
+import java.awt.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.util.List;
+
+// 文件操作进度窗口：操作超过半秒仍未完成才显示，提供暂停和取消；结束后汇报错误
+public class FileOperationDialog extends JDialog {
+    private static final int SHOW_DELAY_MILLIS = 500;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final FileOperation operation;
+    private final Runnable onFinished;
+    private final JProgressBar progressBar = new JProgressBar(0, 1000);
+    private final JLabel summaryLabel = new JLabel(" ");
+    private final JLabel fileLabel = new JLabel(" ");
+    private final JButton pauseButton = new JButton("暂停");
+    private final Timer progressTimer;
+    private final long startTime = System.currentTimeMillis();
+
+    public FileOperationDialog(Frame owner, FileOperation operation, Runnable onFinished) {
+        super(owner, titleOf(operation.getType()), false);
+        this.operation = operation;
+        this.onFinished = onFinished;
+        setSize(480, 170);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+
+        JPanel panel = new JPanel(new GridLayout(3, 1, 5, 5));
+        panel.setBorder(BorderFactory.createEmptyBorder(10, 10, 5, 10));
+        panel.add(summaryLabel);
+        panel.add(fileLabel);
+        panel.add(progressBar);
+        progressBar.setStringPainted(true);
+        progressBar.setIndeterminate(true);
+
+        pauseButton.addActionListener(e -> togglePause());
+        JButton cancelButton = new JButton("取消");
+        cancelButton.addActionListener(e -> operation.cancel());
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(pauseButton);
+        buttonPanel.add(cancelButton);
+
+        setLayout(new BorderLayout());
+        add(panel, BorderLayout.CENTER);
+        add(buttonPanel, BorderLayout.SOUTH);
+
+        progressTimer = new Timer(200, e -> updateProgress());
+    }
+
+    // 开始执行操作；窗口延迟显示，很快完成的操作不会闪一下
+    public void start() {
+        operation.start();
+        progressTimer.start();
+    }
+
+    private static String titleOf(FileOperation.Type type) {
+        switch (type) {
+            case COPY: return "正在复制";
+            case MOVE: return "正在移动";
+            default: return "正在删除";
+        }
+    }
+
+    private void togglePause() {
+        if (operation.isPaused()) {
+            operation.resume();
+            pauseButton.setText("暂停");
+        } else {
+            operation.pause();
+            pauseButton.setText("继续");
+        }
+    }
+
+    private void updateProgress() {
+        if (operation.isDone()) {
+            finish();
+            return;
+        }
+        if (!isVisible() && System.currentTimeMillis() - startTime >= SHOW_DELAY_MILLIS) {
+            setVisible(true);
+        }
+
+        long doneBytes = operation.getDoneBytes();
+        long totalBytes = operation.getTotalBytes();
+        double seconds = Math.max(0.001, (System.currentTimeMillis() - startTime) / 1000.0);
+        if (operation.getType() == FileOperation.Type.DELETE) {
+            summaryLabel.setText(String.format("已删除 %d 个文件", operation.getDoneFiles()));
+        } else if (operation.isPlanning()) {
+            summaryLabel.setText(String.format("正在统计... %d 个文件，%s", operation.getTotalFiles(), DiskUsageDialog.formatSize(totalBytes)));
+        } else {
+            summaryLabel.setText(String.format("%d / %d 个文件，%s / %s，%s/s%s",
+                    operation.getDoneFiles(), operation.getTotalFiles(),
+                    DiskUsageDialog.formatSize(doneBytes), DiskUsageDialog.formatSize(totalBytes),
+                    DiskUsageDialog.formatSize((long) (doneBytes / seconds)), operation.isPaused() ? "（已暂停）" : ""));
+        }
+        Path current = operation.getCurrentFile();
+        fileLabel.setText(current != null ? current.toString() : " ");
+
+        boolean determinate = operation.getType() != FileOperation.Type.DELETE && !operation.isPlanning() && totalBytes > 0;
+        progressBar.setIndeterminate(!determinate);
+        if (determinate) {
+            progressBar.setValue((int) (doneBytes * 1000 / totalBytes));
+            progressBar.setString(String.format("%.1f%%", doneBytes * 100.0 / totalBytes));
+        } else {
+            progressBar.setString(null);
+        }
+    }
+
+    private void finish() {
+        progressTimer.stop();
+        dispose();
+        onFinished.run();
+
+        List<String> errors = operation.getErrors();
+        if (!errors.isEmpty()) {
+            StringBuilder message = new StringBuilder("以下项目处理失败:\n");
+            for (int i = 0; i < Math.min(errors.size(), MAX_REPORTED_ERRORS); i++) {
+                message.append(errors.get(i)).append("\n");
+            }
+            if (errors.size() > MAX_REPORTED_ERRORS) {
+                message.append("... 共 ").append(errors.size()).append(" 个错误");
+            }
+            JOptionPane.showMessageDialog(getOwner(), message.toString(), "错误", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // 在事件分发线程上询问用户如何处理同名文件，可选择对之后的冲突使用同一选择
+    public static FileOperation.ConflictResolver createConflictResolver(Component parent) {
+        return new FileOperation.ConflictResolver() {
+            private FileOperation.ConflictChoice remembered;
+
+            @Override
+            public FileOperation.ConflictChoice resolve(Path source, Path target) {
+                if (remembered != null) {
+                    return remembered;
+                }
+                FileOperation.ConflictChoice[] choice = {FileOperation.ConflictChoice.SKIP};
+                try {
+                    SwingUtilities.invokeAndWait(() -> {
+                        JCheckBox applyToAll = new JCheckBox("对之后的冲突执行相同操作");
+                        Object[] message = {"目标位置已存在 \"" + target.getFileName() + "\"", target.getParent().toString(), applyToAll};
+                        String[] options = {"替换", "跳过", "保留两者"};
+                        int result = JOptionPane.showOptionDialog(parent, message, "文件冲突",
+                                JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[1]);
+                        if (result == 0) {
+                            choice[0] = FileOperation.ConflictChoice.OVERWRITE;
+                        } else if (result == 2) {
+                            choice[0] = FileOperation.ConflictChoice.KEEP_BOTH;
+                        }
+                        if (applyToAll.isSelected()) {
+                            remembered = choice[0];
+                        }
+                    });
+                } catch (InterruptedException | InvocationTargetException e) {
+                    e.printStackTrace();
+                }
+                return choice[0];
+            }
+        };
+    }
+}
\ No newline at end of file
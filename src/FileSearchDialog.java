@@ -0,0 +1,295 @@
+import javax.swing.*;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// 文件搜索窗口：输入即按文件名查询索引；填写内容后可在匹配的文件中并行查找文本
+public class FileSearchDialog extends JDialog {
+    private static final int MAX_RESULTS = 1000;
+    private static final int QUERY_DELAY_MILLIS = 150;
+
+    private final FileSearchIndex index;
+    private final Consumer<Path> navigator;
+    private final JTextField queryField = new JTextField();
+    private final JTextField contentField = new JTextField();
+    private final JCheckBox ignoreCaseBox = new JCheckBox("忽略大小写", true);
+    private final JButton grepButton = new JButton("查找内容");
+    private final JLabel statusLabel = new JLabel("就绪");
+    private final ResultTableModel resultModel = new ResultTableModel();
+    private final JTable resultTable = new JTable(resultModel);
+    private final Timer queryTimer;
+    private final Runnable indexListener = () -> SwingUtilities.invokeLater(this::onIndexUpdated);
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "file-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 每次发起查询递增，用于丢弃过期结果和中止内容查找
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+    private boolean grepActive;
+
+    public FileSearchDialog(Frame owner, Path root, Consumer<Path> navigator) {
+        super(owner, "搜索 - " + root, false);
+        this.index = FileSearchIndex.forRoot(root);
+        this.navigator = navigator;
+        setSize(800, 550);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        setLayout(new BorderLayout(5, 5));
+
+        JPanel inputPanel = new JPanel(new GridBagLayout());
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(3, 3, 3, 3);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        inputPanel.add(new JLabel("文件名:"), gbc);
+        gbc.gridx = 1;
+        gbc.weightx = 1;
+        inputPanel.add(queryField, gbc);
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.weightx = 0;
+        inputPanel.add(new JLabel("包含文字:"), gbc);
+        gbc.gridx = 1;
+        gbc.weightx = 1;
+        inputPanel.add(contentField, gbc);
+        gbc.gridx = 2;
+        gbc.weightx = 0;
+        inputPanel.add(ignoreCaseBox, gbc);
+        gbc.gridx = 3;
+        inputPanel.add(grepButton, gbc);
+
+        resultTable.setRowHeight(20);
+        resultTable.getColumnModel().getColumn(0).setPreferredWidth(200);
+        resultTable.getColumnModel().getColumn(1).setPreferredWidth(300);
+        resultTable.getColumnModel().getColumn(2).setPreferredWidth(250);
+        resultTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    openSelected();
+                }
+            }
+        });
+
+        JButton revealButton = new JButton("打开所在位置");
+        revealButton.addActionListener(e -> revealSelected());
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(statusLabel, BorderLayout.CENTER);
+        bottomPanel.add(revealButton, BorderLayout.EAST);
+
+        add(inputPanel, BorderLayout.NORTH);
+        add(new JScrollPane(resultTable), BorderLayout.CENTER);
+        add(bottomPanel, BorderLayout.SOUTH);
+
+        queryTimer = new Timer(QUERY_DELAY_MILLIS, e -> runNameSearch());
+        queryTimer.setRepeats(false);
+        queryField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { queryTimer.restart(); }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) { queryTimer.restart(); }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) { queryTimer.restart(); }
+        });
+        queryField.addActionListener(e -> runNameSearch());
+        contentField.addActionListener(e -> runContentSearch());
+        grepButton.addActionListener(e -> runContentSearch());
+
+        index.addListener(indexListener);
+        index.open();
+        updateIndexStatus();
+    }
+
+    private void onIndexUpdated() {
+        // 索引仍在建立时自动刷新文件名结果
+        if (!grepActive && !queryField.getText().trim().isEmpty()) {
+            runNameSearch();
+        } else {
+            updateIndexStatus();
+        }
+    }
+
+    private void updateIndexStatus() {
+        statusLabel.setText(index.isBuilding()
+                ? String.format("正在建立索引... 已索引 %d 项", index.size())
+                : String.format("已索引 %d 项", index.size()));
+    }
+
+    private void runNameSearch() {
+        queryTimer.stop();
+        grepActive = false;
+        int generation = searchGeneration.incrementAndGet();
+        String query = queryField.getText();
+        if (query.trim().isEmpty()) {
+            resultModel.setRows(new ArrayList<>());
+            updateIndexStatus();
+            return;
+        }
+        searchExecutor.submit(() -> {
+            long start = System.nanoTime();
+            List<FileSearchIndex.Result> results = index.search(query, MAX_RESULTS);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            List<ResultRow> rows = new ArrayList<>(results.size());
+            for (FileSearchIndex.Result result : results) {
+                rows.add(new ResultRow(result.getPath(), result.isDirectory(), result.isDirectory() ? "文件夹" : ""));
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (generation != searchGeneration.get()) return;
+                resultModel.setRows(rows);
+                statusLabel.setText(String.format("%s找到 %d 个结果%s，用时 %d 毫秒",
+                        index.isBuilding() ? "正在建立索引... " : "", rows.size(),
+                        rows.size() >= MAX_RESULTS ? "（仅显示前 " + MAX_RESULTS + " 个）" : "", elapsed));
+            });
+        });
+    }
+
+    // 在文件名匹配的文件中查找文字；文件名为空时查找索引中的全部文件
+    private void runContentSearch() {
+        String text = contentField.getText();
+        if (text.isEmpty()) {
+            runNameSearch();
+            return;
+        }
+        queryTimer.stop();
+        grepActive = true;
+        int generation = searchGeneration.incrementAndGet();
+        String query = queryField.getText();
+        boolean ignoreCase = ignoreCaseBox.isSelected();
+        resultModel.setRows(new ArrayList<>());
+        statusLabel.setText("正在查找内容...");
+
+        searchExecutor.submit(() -> {
+            long start = System.nanoTime();
+            List<Path> files = new ArrayList<>();
+            if (query.trim().isEmpty()) {
+                files.addAll(index.allFiles());
+            } else {
+                for (FileSearchIndex.Result result : index.search(query, Integer.MAX_VALUE)) {
+                    if (!result.isDirectory()) {
+                        files.add(result.getPath());
+                    }
+                }
+            }
+            AtomicInteger found = new AtomicInteger();
+            try {
+                ContentGrep.search(files, text, ignoreCase,
+                        () -> generation != searchGeneration.get() || found.get() >= MAX_RESULTS,
+                        match -> {
+                            if (found.incrementAndGet() > MAX_RESULTS) return;
+                            ResultRow row = new ResultRow(match.getPath(), false, match.getLine() + ": " + match.getSnippet());
+                            SwingUtilities.invokeLater(() -> {
+                                if (generation == searchGeneration.get()) {
+                                    resultModel.addRow(row);
+                                }
+                            });
+                        });
+            } catch (InterruptedException e) {
+                return;
+            }
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            SwingUtilities.invokeLater(() -> {
+                if (generation != searchGeneration.get()) return;
+                statusLabel.setText(String.format("在 %d 个文件中找到 %d 个包含该文字的文件，用时 %d 毫秒",
+                        files.size(), Math.min(found.get(), MAX_RESULTS), elapsed));
+            });
+        });
+    }
+
+    private ResultRow getSelectedRow() {
+        int row = resultTable.getSelectedRow();
+        return row >= 0 ? resultModel.rows.get(row) : null;
+    }
+
+    private void openSelected() {
+        ResultRow row = getSelectedRow();
+        if (row == null) return;
+        if (row.directory) {
+            navigator.accept(row.path);
+            return;
+        }
+        try {
+            Desktop.getDesktop().open(row.path.toFile());
+        } catch (IOException | UnsupportedOperationException e) {
+            JOptionPane.showMessageDialog(this, "无法打开文件: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private void revealSelected() {
+        ResultRow row = getSelectedRow();
+        if (row != null && row.path.getParent() != null) {
+            navigator.accept(row.path.getParent());
+        }
+    }
+
+    @Override
+    public void dispose() {
+        searchGeneration.incrementAndGet();
+        queryTimer.stop();
+        searchExecutor.shutdownNow();
+        index.removeListener(indexListener);
+        index.close();
+        super.dispose();
+    }
+
+    private static class ResultRow {
+        final Path path;
+        final boolean directory;
+        final String detail;
+
+        ResultRow(Path path, boolean directory, String detail) {
+            this.path = path;
+            this.directory = directory;
+            this.detail = detail;
+        }
+    }
+
+    private static class ResultTableModel extends AbstractTableModel {
+        private final String[] columnNames = {"名称", "位置", "详情"};
+        private List<ResultRow> rows = new ArrayList<>();
+
+        void setRows(List<ResultRow> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        void addRow(ResultRow row) {
+            rows.add(row);
+            fireTableRowsInserted(rows.size() - 1, rows.size() - 1);
+        }
+
+        @Override
+        public int getRowCount() { return rows.size(); }
+
+        @Override
+        public int getColumnCount() { return columnNames.length; }
+
+        @Override
+        public String getColumnName(int column) { return columnNames[column]; }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            ResultRow result = rows.get(row);
+            switch (column) {
+                case 0: return result.path.getFileName();
+                case 1: return result.path.getParent();
+                default: return result.detail;
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,618 @@
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+// 目录树的文件名索引：按目录记录子项并持久化，目录修改时间不变的部分无需重新读取；
+// 查询使用按名称排序的快照，前缀查找走二分，子串查找在拼接好的名称串上做 indexOf。
+// 监视到的变化只把增减的条目合并进已排好序的快照，已有条目原样沿用，不重新排序
+public class FileSearchIndex {
+    private static final int FILE_MAGIC = 0x4D435449;
+    private static final int FILE_VERSION = 1;
+    private static final long REBUILD_DELAY_MILLIS = 300;
+    // 首次建立大索引时定期发布部分结果，不必等全部读完才能搜索
+    private static final long PARTIAL_PUBLISH_NANOS = 2_000_000_000L;
+    private static final long SAVE_DELAY_SECONDS = 5;
+    // WatchService 在 Linux 上受 inotify 数量限制，只监视较浅的一部分目录，其余在下次打开时按修改时间刷新
+    private static final int MAX_WATCHED_DIRECTORIES = 2000;
+
+    private static final File INDEX_DIR = new File(System.getProperty("user.home"), ".minecrafttoolkit/search-index");
+    private static final Map<Path, FileSearchIndex> INSTANCES = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService WORKER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "file-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 同一根目录共用一个索引，关闭搜索窗口后再次打开可直接使用
+    public static FileSearchIndex forRoot(Path root) {
+        return INSTANCES.computeIfAbsent(root.toAbsolutePath().normalize(), FileSearchIndex::new);
+    }
+
+    private final Path root;
+    private final File indexFile;
+    // 目录 -> 该目录的直接子项，由 this 保护
+    private final Map<Path, DirectoryEntry> directories = new HashMap<>();
+    private final Set<Path> watched = new HashSet<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean building;
+    private DirectoryWatcher watcher;
+    private int openCount;
+    private boolean rebuildScheduled;
+    private boolean saveScheduled;
+    private final List<Runnable> listeners = new ArrayList<>();
+    // 上次发布快照之后增加和删除的条目（按路径），由 this 保护
+    private final Map<String, Item> addedItems = new HashMap<>();
+    private final Map<String, Item> removedItems = new HashMap<>();
+
+    private FileSearchIndex(Path root) {
+        this.root = root;
+        this.indexFile = new File(INDEX_DIR, DownloadEngine.sha1Hex(root.toString()) + ".idx");
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public boolean isBuilding() {
+        return building;
+    }
+
+    public int size() {
+        return snapshot.items.length;
+    }
+
+    // 索引快照更新后在后台线程回调
+    public synchronized void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    // 打开索引：先载入磁盘上的索引以便立即查询，然后在后台按目录修改时间增量刷新并开始监视变化
+    public synchronized void open() {
+        if (openCount++ > 0) {
+            return;
+        }
+        building = true;
+        WORKER.execute(() -> {
+            synchronized (this) {
+                if (directories.isEmpty()) {
+                    load();
+                    rebuildSnapshot();
+                }
+            }
+            refresh(root);
+            synchronized (this) {
+                building = false;
+                if (openCount > 0) {
+                    startWatching();
+                }
+                rebuildSnapshot();
+                scheduleSave();
+            }
+        });
+    }
+
+    public synchronized void close() {
+        if (openCount == 0 || --openCount > 0) {
+            return;
+        }
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+        watched.clear();
+        scheduleSave();
+    }
+
+    // 查询文件名（包含路径分隔符时匹配完整路径），结果按名称排序，前缀匹配排在前面
+    public List<Result> search(String query, int limit) {
+        Snapshot current = snapshot;
+        String needle = query.trim().toLowerCase(Locale.ROOT);
+        List<Result> results = new ArrayList<>();
+        if (needle.isEmpty()) {
+            return results;
+        }
+
+        if (needle.indexOf('/') >= 0 || needle.indexOf('\\') >= 0) {
+            String normalized = needle.replace('\\', '/');
+            for (int i = 0; i < current.items.length && results.size() < limit; i++) {
+                if (current.items[i].lowerPath().contains(normalized)) {
+                    addResult(results, current, i);
+                }
+            }
+            return results;
+        }
+
+        // 前缀匹配在排序数组中是连续的一段
+        Set<Integer> added = new HashSet<>();
+        int index = current.lowerBound(needle);
+        while (index < current.items.length && current.items[index].key.startsWith(needle) && results.size() < limit) {
+            addResult(results, current, index);
+            added.add(index);
+            index++;
+        }
+
+        // 其余子串匹配：在以 '\n' 分隔的名称串上查找，再二分出所在的条目
+        int from = 0;
+        while (results.size() < limit) {
+            int found = current.haystack.indexOf(needle, from);
+            if (found < 0) {
+                break;
+            }
+            int entry = current.entryAt(found);
+            if (added.add(entry)) {
+                addResult(results, current, entry);
+            }
+            from = current.offsets[entry] + current.items[entry].key.length() + 1;
+        }
+        return results;
+    }
+
+    // 索引中的全部文件（不含目录），用于内容查找
+    public List<Path> allFiles() {
+        Snapshot current = snapshot;
+        List<Path> files = new ArrayList<>();
+        for (Item item : current.items) {
+            if (!item.directory) {
+                try {
+                    files.add(Paths.get(item.path));
+                } catch (InvalidPathException e) {
+                    // 文件名无法用当前系统编码表示，跳过
+                }
+            }
+        }
+        return files;
+    }
+
+    private static void addResult(List<Result> results, Snapshot snapshot, int index) {
+        try {
+            results.add(snapshot.result(index));
+        } catch (InvalidPathException e) {
+            // 文件名无法用当前系统编码表示，跳过
+        }
+    }
+
+    // 从 start 开始按目录修改时间刷新：未变化的目录沿用已有记录，只检查其子目录
+    private void refresh(Path start) {
+        Deque<Path> pending = new ArrayDeque<>();
+        pending.push(start);
+        Set<Path> seen = new HashSet<>();
+        long lastPublish = System.nanoTime();
+        while (!pending.isEmpty()) {
+            if (System.nanoTime() - lastPublish > PARTIAL_PUBLISH_NANOS) {
+                synchronized (this) {
+                    rebuildSnapshot();
+                }
+                lastPublish = System.nanoTime();
+            }
+            Path dir = pending.pop();
+            if (!seen.add(dir)) continue;
+            DirectoryEntry entry = readDirectory(dir, false);
+            synchronized (this) {
+                if (entry == null) {
+                    removeSubtree(dir);
+                    continue;
+                }
+                putDirectory(dir, entry);
+            }
+            for (String name : entry.subdirectories) {
+                pending.push(dir.resolve(name));
+            }
+        }
+        // 刷新过程中没有遇到的旧目录已被删除
+        synchronized (this) {
+            removeDirectories(dir -> dir.startsWith(start) && !seen.contains(dir));
+        }
+    }
+
+    private DirectoryEntry readDirectory(Path dir, boolean force) {
+        long modified;
+        try {
+            modified = Files.readAttributes(dir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                    .lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+        if (!force) {
+            DirectoryEntry existing;
+            synchronized (this) {
+                existing = directories.get(dir);
+            }
+            if (existing != null && existing.modified == modified) {
+                return existing;
+            }
+        }
+
+        List<String> files = new ArrayList<>();
+        List<String> subdirectories = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    (attrs.isDirectory() ? subdirectories : files).add(child.getFileName().toString());
+                } catch (IOException e) {
+                    // 读取属性失败的条目跳过
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            // 无权限的目录记为空目录
+        }
+        return new DirectoryEntry(modified, files, subdirectories);
+    }
+
+    private void removeSubtree(Path dir) {
+        removeDirectories(path -> path.startsWith(dir));
+        if (watcher != null) {
+            for (Iterator<Path> iterator = watched.iterator(); iterator.hasNext(); ) {
+                Path path = iterator.next();
+                if (path.startsWith(dir)) {
+                    watcher.unwatch(path);
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    // 按层次由浅到深监视目录，超过上限的部分不再监视
+    private void startWatching() {
+        try {
+            watcher = new DirectoryWatcher(this::onDirectoryChanged);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        List<Path> dirs = new ArrayList<>(directories.keySet());
+        dirs.sort(Comparator.comparingInt(Path::getNameCount));
+        for (Path dir : dirs) {
+            if (watched.size() >= MAX_WATCHED_DIRECTORIES) break;
+            watcher.watch(dir);
+            watched.add(dir);
+        }
+    }
+
+    private void onDirectoryChanged(Path dir, Set<Path> changed, boolean overflow) {
+        WORKER.execute(() -> {
+            if (overflow) {
+                refresh(dir);
+            } else {
+                DirectoryEntry entry = readDirectory(dir, true);
+                if (entry == null) {
+                    synchronized (this) {
+                        removeSubtree(dir);
+                    }
+                } else {
+                    DirectoryEntry previous;
+                    synchronized (this) {
+                        previous = putDirectory(dir, entry);
+                    }
+                    for (String name : entry.subdirectories) {
+                        if (previous == null || !previous.subdirectories.contains(name)) {
+                            refresh(dir.resolve(name));
+                            watchNewDirectory(dir.resolve(name));
+                        }
+                    }
+                    if (previous != null) {
+                        for (String name : previous.subdirectories) {
+                            if (!entry.subdirectories.contains(name)) {
+                                synchronized (this) {
+                                    removeSubtree(dir.resolve(name));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            synchronized (this) {
+                scheduleRebuild();
+                scheduleSave();
+            }
+        });
+    }
+
+    private synchronized void watchNewDirectory(Path dir) {
+        if (watcher != null && watched.size() < MAX_WATCHED_DIRECTORIES && watched.add(dir)) {
+            watcher.watch(dir);
+        }
+    }
+
+    private void scheduleRebuild() {
+        if (rebuildScheduled) {
+            return;
+        }
+        rebuildScheduled = true;
+        WORKER.schedule(() -> {
+            synchronized (this) {
+                rebuildScheduled = false;
+                publishChanges();
+            }
+        }, REBUILD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // 修改 directories 都经过 putDirectory 和 removeDirectories，以便记下条目的增减
+    private DirectoryEntry putDirectory(Path dir, DirectoryEntry entry) {
+        DirectoryEntry previous = directories.put(dir, entry);
+        if (previous != entry) {
+            recordChanges(dir, previous, entry);
+        }
+        return previous;
+    }
+
+    private void removeDirectories(Predicate<Path> filter) {
+        for (Iterator<Map.Entry<Path, DirectoryEntry>> iterator = directories.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<Path, DirectoryEntry> entry = iterator.next();
+            if (filter.test(entry.getKey())) {
+                recordChanges(entry.getKey(), entry.getValue(), null);
+                iterator.remove();
+            }
+        }
+    }
+
+    // 建索引期间最后会整体重建快照，不必逐项记录
+    private void recordChanges(Path dir, DirectoryEntry previous, DirectoryEntry current) {
+        if (building) {
+            return;
+        }
+        String prefix = dir.toString();
+        recordNames(prefix, previous != null ? previous.files : null, current != null ? current.files : null, false);
+        recordNames(prefix, previous != null ? previous.subdirectories : null,
+                current != null ? current.subdirectories : null, true);
+    }
+
+    private void recordNames(String dir, List<String> previous, List<String> current, boolean directory) {
+        Set<String> before = previous != null ? new HashSet<>(previous) : Collections.emptySet();
+        Set<String> after = current != null ? new HashSet<>(current) : Collections.emptySet();
+        for (String name : before) {
+            if (!after.contains(name)) {
+                Item item = new Item(dir, name, directory);
+                addedItems.remove(item.path);
+                removedItems.put(item.path, item);
+            }
+        }
+        for (String name : after) {
+            if (!before.contains(name)) {
+                Item item = new Item(dir, name, directory);
+                addedItems.put(item.path, item);
+            }
+        }
+    }
+
+    // 把记下的增减合并进当前快照：删除的条目二分定位后跳过，新增的条目排序后归并进去
+    private void publishChanges() {
+        if (addedItems.isEmpty() && removedItems.isEmpty()) {
+            return;
+        }
+        Item[] items = snapshot.items;
+        boolean[] dropped = new boolean[items.length];
+        int droppedCount = 0;
+        List<Item> changed = new ArrayList<>(removedItems.values());
+        changed.addAll(addedItems.values());
+        for (Item item : changed) {
+            int index = Arrays.binarySearch(items, item, ITEM_ORDER);
+            if (index >= 0 && !dropped[index]) {
+                dropped[index] = true;
+                droppedCount++;
+            }
+        }
+        List<Item> added = new ArrayList<>(addedItems.values());
+        added.sort(ITEM_ORDER);
+        addedItems.clear();
+        removedItems.clear();
+
+        Item[] merged = new Item[items.length - droppedCount + added.size()];
+        int count = 0;
+        int next = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (dropped[i]) continue;
+            while (next < added.size() && ITEM_ORDER.compare(added.get(next), items[i]) < 0) {
+                merged[count++] = added.get(next++);
+            }
+            merged[count++] = items[i];
+        }
+        while (next < added.size()) {
+            merged[count++] = added.get(next++);
+        }
+        publish(new Snapshot(merged));
+    }
+
+    private void rebuildSnapshot() {
+        List<Item> items = new ArrayList<>();
+        for (Map.Entry<Path, DirectoryEntry> entry : directories.entrySet()) {
+            String dir = entry.getKey().toString();
+            for (String name : entry.getValue().files) {
+                items.add(new Item(dir, name, false));
+            }
+            for (String name : entry.getValue().subdirectories) {
+                items.add(new Item(dir, name, true));
+            }
+        }
+        items.sort(ITEM_ORDER);
+        addedItems.clear();
+        removedItems.clear();
+        publish(new Snapshot(items.toArray(new Item[0])));
+    }
+
+    private void publish(Snapshot next) {
+        snapshot = next;
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    private void scheduleSave() {
+        if (saveScheduled) {
+            return;
+        }
+        saveScheduled = true;
+        WORKER.schedule(this::save, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void save() {
+        File temp = new File(INDEX_DIR, indexFile.getName() + ".tmp");
+        synchronized (this) {
+            saveScheduled = false;
+            INDEX_DIR.mkdirs();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(root.toString());
+                out.writeInt(directories.size());
+                for (Map.Entry<Path, DirectoryEntry> entry : directories.entrySet()) {
+                    out.writeUTF(entry.getKey().toString());
+                    out.writeLong(entry.getValue().modified);
+                    writeNames(out, entry.getValue().files);
+                    writeNames(out, entry.getValue().subdirectories);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+        try {
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void load() {
+        if (!indexFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION || !in.readUTF().equals(root.toString())) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Path dir = Paths.get(in.readUTF());
+                long modified = in.readLong();
+                directories.put(dir, new DirectoryEntry(modified, readNames(in), readNames(in)));
+            }
+        } catch (IOException | InvalidPathException e) {
+            // 索引文件损坏时丢弃，重新建立
+            e.printStackTrace();
+            directories.clear();
+        }
+    }
+
+    private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static List<String> readNames(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+        return names;
+    }
+
+    private static class DirectoryEntry {
+        final long modified;
+        final List<String> files;
+        final List<String> subdirectories;
+
+        DirectoryEntry(long modified, List<String> files, List<String> subdirectories) {
+            this.modified = modified;
+            this.files = files;
+            this.subdirectories = subdirectories;
+        }
+    }
+
+    private static final Comparator<Item> ITEM_ORDER = (a, b) -> {
+        int order = a.key.compareTo(b.key);
+        return order != 0 ? order : a.path.compareTo(b.path);
+    };
+
+    // 索引中的一项：key 为小写名称；按路径查询用的小写路径第一次用到时生成，之后随条目沿用
+    private static class Item {
+        final String key;
+        final String path;
+        final boolean directory;
+        private String lowerPath;
+
+        Item(String dir, String name, boolean directory) {
+            this.key = name.toLowerCase(Locale.ROOT);
+            this.path = dir + File.separator + name;
+            this.directory = directory;
+        }
+
+        String lowerPath() {
+            String result = lowerPath;
+            if (result == null) {
+                result = path.toLowerCase(Locale.ROOT).replace('\\', '/');
+                lowerPath = result;
+            }
+            return result;
+        }
+    }
+
+    // 不可变的查询快照：items 按小写名称排序，haystack 为以 '\n' 连接的全部名称，offsets 为各名称在其中的起点
+    private static class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new Item[0]);
+
+        final Item[] items;
+        final int[] offsets;
+        final String haystack;
+
+        Snapshot(Item[] items) {
+            this.items = items;
+            offsets = new int[items.length];
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < items.length; i++) {
+                offsets[i] = builder.length();
+                builder.append(items[i].key).append('\n');
+            }
+            haystack = builder.toString();
+        }
+
+        int lowerBound(String key) {
+            int low = 0;
+            int high = items.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (items[mid].key.compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        int entryAt(int offset) {
+            int index = Arrays.binarySearch(offsets, offset);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        Result result(int index) {
+            return new Result(Paths.get(items[index].path), items[index].directory);
+        }
+    }
+
+    public static class Result {
+        private final Path path;
+        private final boolean directory;
+
+        Result(Path path, boolean directory) {
+            this.path = path;
+            this.directory = directory;
+        }
+
+        public Path getPath() { return path; }
+        public boolean isDirectory() { return directory; }
+    }
+}
\ No newline at end of file
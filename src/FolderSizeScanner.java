@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+// 递归统计文件夹大小：fork/join 并行遍历，每个目录自身的文件大小和子目录列表按目录修改时间缓存
+public class FolderSizeScanner {
+    private static final FolderSizeScanner INSTANCE = new FolderSizeScanner();
+    // 缓存条目过多时整体清空，避免扫描整块磁盘后长期占用内存
+    private static final int MAX_CACHED_DIRECTORIES = 500_000;
+
+    public static FolderSizeScanner getInstance() {
+        return INSTANCE;
+    }
+
+    // 工作线程为守护线程，磁盘读取为主，线程数不必随核数无限增长
+    private final ForkJoinPool pool = new ForkJoinPool(Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())));
+    private final Map<Path, DirectoryInfo> cache = new ConcurrentHashMap<>();
+
+    private FolderSizeScanner() {
+    }
+
+    // 开始统计；进度通过 Scan 的计数器读取，完成后 getFuture() 给出完整的目录大小树
+    public Scan scan(Path root) {
+        Scan scan = new Scan(root);
+        pool.execute(ForkJoinTask.adapt(() -> {
+            try {
+                SizeNode result = new SizeTask(scan, root).invoke();
+                if (scan.isCancelled()) {
+                    scan.future.cancel(false);
+                } else {
+                    scan.future.complete(result);
+                }
+            } catch (RuntimeException e) {
+                scan.future.completeExceptionally(e);
+            }
+        }));
+        return scan;
+    }
+
+    // 目录的修改时间只随直接子项的增删改名变化：时间不变时沿用缓存的列表，
+    // 只对子目录逐个检查，未变化的子树无需再次列出其中的文件
+    private DirectoryInfo readDirectory(Path dir) {
+        long modified;
+        try {
+            modified = Files.readAttributes(dir, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                    .lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return DirectoryInfo.EMPTY;
+        }
+        DirectoryInfo cached = cache.get(dir);
+        if (cached != null && cached.modified == modified) {
+            return cached;
+        }
+
+        long fileBytes = 0;
+        long fileCount = 0;
+        List<Path> subdirectories = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                BasicFileAttributes attrs;
+                try {
+                    // 不跟随符号链接，避免循环和重复统计
+                    attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    continue;
+                }
+                if (attrs.isDirectory()) {
+                    subdirectories.add(entry);
+                } else {
+                    fileBytes += attrs.size();
+                    fileCount++;
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            // 无权限的目录按空目录统计，也不缓存，下次重试
+            return DirectoryInfo.EMPTY;
+        }
+
+        DirectoryInfo info = new DirectoryInfo(modified, fileBytes, fileCount, subdirectories);
+        if (cache.size() >= MAX_CACHED_DIRECTORIES) {
+            cache.clear();
+        }
+        cache.put(dir, info);
+        return info;
+    }
+
+    private class SizeTask extends RecursiveTask<SizeNode> {
+        private final Scan scan;
+        private final Path dir;
+
+        SizeTask(Scan scan, Path dir) {
+            this.scan = scan;
+            this.dir = dir;
+        }
+
+        @Override
+        protected SizeNode compute() {
+            if (scan.isCancelled()) {
+                return null;
+            }
+            DirectoryInfo info = readDirectory(dir);
+            scan.bytes.add(info.fileBytes);
+            scan.files.add(info.fileCount);
+
+            List<SizeTask> subtasks = new ArrayList<>(info.subdirectories.size());
+            for (Path subdirectory : info.subdirectories) {
+                subtasks.add(new SizeTask(scan, subdirectory));
+            }
+            invokeAll(subtasks);
+
+            long size = info.fileBytes;
+            long fileCount = info.fileCount;
+            List<SizeNode> children = new ArrayList<>(subtasks.size());
+            for (SizeTask subtask : subtasks) {
+                SizeNode child = subtask.join();
+                if (child != null) {
+                    children.add(child);
+                    size += child.size;
+                    fileCount += child.fileCount;
+                }
+            }
+            children.sort((a, b) -> Long.compare(b.size, a.size));
+            return new SizeNode(dir, size, info.fileBytes, fileCount, children);
+        }
+    }
+
+    private static class DirectoryInfo {
+        static final DirectoryInfo EMPTY = new DirectoryInfo(-1, 0, 0, Collections.emptyList());
+
+        final long modified;
+        final long fileBytes;
+        final long fileCount;
+        final List<Path> subdirectories;
+
+        DirectoryInfo(long modified, long fileBytes, long fileCount, List<Path> subdirectories) {
+            this.modified = modified;
+            this.fileBytes = fileBytes;
+            this.fileCount = fileCount;
+            this.subdirectories = subdirectories;
+        }
+    }
+
+    public static class Scan {
+        private final Path root;
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder files = new LongAdder();
+        private final CompletableFuture<SizeNode> future = new CompletableFuture<>();
+        private volatile boolean cancelled;
+
+        private Scan(Path root) {
+            this.root = root;
+        }
+
+        public Path getRoot() { return root; }
+        // 统计过程中的部分结果
+        public long getBytes() { return bytes.sum(); }
+        public long getFiles() { return files.sum(); }
+        public boolean isDone() { return future.isDone(); }
+        public boolean isCancelled() { return cancelled; }
+        public CompletableFuture<SizeNode> getFuture() { return future; }
+
+        // 完成后的总大小；尚未完成时返回已统计的部分
+        public long getSize() {
+            SizeNode result = future.getNow(null);
+            return result != null ? result.getSize() : getBytes();
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    public static class SizeNode {
+        private final Path path;
+        private final long size;
+        private final long fileBytes;
+        private final long fileCount;
+        private final List<SizeNode> children;
+
+        SizeNode(Path path, long size, long fileBytes, long fileCount, List<SizeNode> children) {
+            this.path = path;
+            this.size = size;
+            this.fileBytes = fileBytes;
+            this.fileCount = fileCount;
+            this.children = children;
+        }
+
+        public Path getPath() { return path; }
+        public String getName() {
+            Path name = path.getFileName();
+            return name != null ? name.toString() : path.toString();
+        }
+        public long getSize() { return size; }
+        // 直接位于该目录下的文件的总大小
+        public long getFileBytes() { return fileBytes; }
+        public long getFileCount() { return fileCount; }
+        // 按大小从大到小排列的子目录
+        public List<SizeNode> getChildren() { return children; }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,223 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+// 图片预读：后台解码当前图片及前后几张并建好金字塔，按内存预算 LRU 缓存；
+// 浏览位置变化后，不再需要的排队任务直接取消，正在解码的在进度回调中调用 ImageReader.abort() 中止
+public class ImagePrefetcher {
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "image-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final long budgetBytes = Math.min(768L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 4);
+    // 完整解码超过此大小的图片只读取预览，放大时再按可见区域分块解码
+    private final long fullDecodeBytes = Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 8);
+    // 超大图片预览的最大边长，约为一块屏幕的分辨率
+    private static final int PREVIEW_SIZE = 2048;
+    private final BiConsumer<File, ImagePyramid> listener;
+
+    // 以下字段只在事件分发线程上访问
+    private final LinkedHashMap<File, ImagePyramid> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<File, Task> loading = new HashMap<>();
+    private List<File> window = Collections.emptyList();
+    private long cachedBytes;
+
+    // listener 在事件分发线程上调用，解码失败时图片为 null
+    public ImagePrefetcher(BiConsumer<File, ImagePyramid> listener) {
+        this.listener = listener;
+    }
+
+    public ImagePyramid getCached(File file) {
+        return cache.get(file);
+    }
+
+    // window 按优先级排列，第一项为当前显示的图片；窗口外的加载任务被取消，
+    // 尚未开始的任务按新的顺序重新排队，保证当前图片最先解码
+    public void update(List<File> window) {
+        this.window = new ArrayList<>(window);
+        Set<File> wanted = new HashSet<>(window);
+        for (Iterator<Map.Entry<File, Task>> iterator = loading.entrySet().iterator(); iterator.hasNext(); ) {
+            Task task = iterator.next().getValue();
+            if (!wanted.contains(task.file) || !task.started) {
+                task.cancel();
+                iterator.remove();
+            }
+        }
+        for (File file : window) {
+            if (!cache.containsKey(file) && !loading.containsKey(file)) {
+                Task task = new Task(file);
+                loading.put(file, task);
+                task.future = executor.submit(task);
+            }
+        }
+    }
+
+    public void shutdown() {
+        for (Task task : loading.values()) {
+            task.cancel();
+        }
+        loading.clear();
+        executor.shutdownNow();
+    }
+
+    private void finished(Task task, ImagePyramid pyramid) {
+        if (task.cancelled || loading.get(task.file) != task) {
+            return;
+        }
+        loading.remove(task.file);
+        if (pyramid != null) {
+            cache.put(task.file, pyramid);
+            cachedBytes += estimateBytes(pyramid);
+            evict();
+        }
+        listener.accept(task.file, pyramid);
+    }
+
+    // 先淘汰窗口以外最久未用的图片，仍超出预算时再从窗口最远处淘汰，当前图片始终保留
+    private void evict() {
+        Set<File> wanted = new HashSet<>(window);
+        for (Iterator<Map.Entry<File, ImagePyramid>> iterator = cache.entrySet().iterator();
+             cachedBytes > budgetBytes && iterator.hasNext(); ) {
+            Map.Entry<File, ImagePyramid> entry = iterator.next();
+            if (!wanted.contains(entry.getKey())) {
+                cachedBytes -= estimateBytes(entry.getValue());
+                iterator.remove();
+            }
+        }
+        for (int i = window.size() - 1; i > 0 && cachedBytes > budgetBytes; i--) {
+            ImagePyramid removed = cache.remove(window.get(i));
+            if (removed != null) {
+                cachedBytes -= estimateBytes(removed);
+            }
+        }
+    }
+
+    private static long estimateBytes(ImagePyramid pyramid) {
+        long bytes = 0;
+        for (int i = 0; i < pyramid.getLevelCount(); i++) {
+            BufferedImage level = pyramid.getLevel(i);
+            if (level != null) {
+                bytes += (long) level.getWidth() * level.getHeight() * 4;
+            }
+        }
+        return bytes;
+    }
+
+    private class Task implements Runnable {
+        final File file;
+        volatile boolean started;
+        volatile boolean cancelled;
+        Future<?> future;
+
+        Task(File file) {
+            this.file = file;
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            started = true;
+            if (cancelled) return;
+            ImagePyramid pyramid = null;
+            try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+                Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : Collections.emptyIterator();
+                if (readers.hasNext()) {
+                    ImageReader imageReader = readers.next();
+                    // JPEG 等读取器只允许解码线程调用 abort()，因此在解码进度回调里检查是否已取消
+                    imageReader.addIIOReadProgressListener(new AbortListener(this));
+                    try {
+                        imageReader.setInput(input, true, true);
+                        if (!cancelled) {
+                            pyramid = decode(imageReader);
+                        }
+                    } finally {
+                        imageReader.dispose();
+                    }
+                }
+            } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                e.printStackTrace();
+            }
+            ImagePyramid result = pyramid;
+            SwingUtilities.invokeLater(() -> finished(this, result));
+        }
+
+        // 读取文件头得到尺寸，小图完整解码，超大图片按 2 的幂降采样读取一张预览
+        private ImagePyramid decode(ImageReader imageReader) throws IOException {
+            int width = imageReader.getWidth(0);
+            int height = imageReader.getHeight(0);
+            if ((long) width * height * 4 <= fullDecodeBytes) {
+                BufferedImage image = imageReader.read(0);
+                // 中止后 read 可能返回只解码了一部分的图片，丢弃
+                return image != null && !cancelled ? new ImagePyramid(image) : null;
+            }
+            int previewLevel = 0;
+            while (Math.max(width, height) >> previewLevel > PREVIEW_SIZE) {
+                previewLevel++;
+            }
+            ImageReadParam param = imageReader.getDefaultReadParam();
+            param.setSourceSubsampling(1 << previewLevel, 1 << previewLevel, 0, 0);
+            BufferedImage preview = imageReader.read(0, param);
+            if (preview == null || cancelled) return null;
+            return new ImagePyramid(preview, width, height, previewLevel, new ImageTileDecoder(file, width, height));
+        }
+    }
+
+    private static class AbortListener implements IIOReadProgressListener {
+        private final Task task;
+
+        AbortListener(Task task) {
+            this.task = task;
+        }
+
+        @Override
+        public void imageProgress(ImageReader source, float percentageDone) {
+            if (task.cancelled) {
+                source.abort();
+            }
+        }
+
+        @Override
+        public void sequenceStarted(ImageReader source, int minIndex) {}
+
+        @Override
+        public void sequenceComplete(ImageReader source) {}
+
+        @Override
+        public void imageStarted(ImageReader source, int imageIndex) {}
+
+        @Override
+        public void imageComplete(ImageReader source) {}
+
+        @Override
+        public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {}
+
+        @Override
+        public void thumbnailProgress(ImageReader source, float percentageDone) {}
+
+        @Override
+        public void thumbnailComplete(ImageReader source) {}
+
+        @Override
+        public void readAborted(ImageReader source) {}
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+// 图像金字塔：第 k 级为原图按 2^k 缩小，直到不超过 MIN_LEVEL_SIZE；
+// 缩小显示时选择最接近的一级绘制，不必每次缩放都重新处理整张原图。
+// 超大图片只在内存中保留降采样的预览及其以下各级，更精细的级别由 ImageTileDecoder 按图块解码
+public class ImagePyramid {
+    private static final int MIN_LEVEL_SIZE = 256;
+
+    private final int width;
+    private final int height;
+    // levels.get(0) 对应第 firstLevel 级，更精细的级别不在内存中
+    private final int firstLevel;
+    private final List<BufferedImage> levels = new ArrayList<>();
+    private final ImageTileDecoder tileDecoder;
+
+    // 可以在后台线程上构造；总内存约为原图的 4/3
+    public ImagePyramid(BufferedImage image) {
+        this(image, image.getWidth(), image.getHeight(), 0, null);
+    }
+
+    // preview 为原图按 2^previewLevel 降采样读取的结果
+    public ImagePyramid(BufferedImage preview, int width, int height, int previewLevel, ImageTileDecoder tileDecoder) {
+        this.width = width;
+        this.height = height;
+        this.firstLevel = previewLevel;
+        this.tileDecoder = tileDecoder;
+        levels.add(preview);
+        BufferedImage level = preview;
+        while (Math.max(level.getWidth(), level.getHeight()) > MIN_LEVEL_SIZE) {
+            level = halve(level);
+            levels.add(level);
+        }
+    }
+
+    // 原图尺寸
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getLevelCount() { return firstLevel + levels.size(); }
+    public ImageTileDecoder getTileDecoder() { return tileDecoder; }
+
+    // 不在内存中的级别返回 null，需通过 ImageTileDecoder 分块读取
+    public BufferedImage getLevel(int level) {
+        return level >= firstLevel ? levels.get(level - firstLevel) : null;
+    }
+
+    // 降采样读取得到的尺寸为向上取整
+    public int getLevelWidth(int level) {
+        BufferedImage image = getLevel(level);
+        return image != null ? image.getWidth() : (width + (1 << level) - 1) >> level;
+    }
+
+    public int getLevelHeight(int level) {
+        BufferedImage image = getLevel(level);
+        return image != null ? image.getHeight() : (height + (1 << level) - 1) >> level;
+    }
+
+    // 不低于目标缩放比例的最小一级：该级缩放到屏幕时只会缩小一点或放大，不会丢失细节。
+    // 没有分块解码时，最精细只能用到内存中的第一级
+    public int levelFor(double scale) {
+        int level = tileDecoder != null ? 0 : firstLevel;
+        while (level + 1 < getLevelCount() && scale <= 1.0 / (1 << (level + 1))) {
+            level++;
+        }
+        return level;
+    }
+
+    // 逐级减半并使用双线性插值，相当于 2x2 平均，比一次缩小多倍的结果平滑
+    private static BufferedImage halve(BufferedImage source) {
+        int width = Math.max(1, source.getWidth() / 2);
+        int height = Math.max(1, source.getHeight() / 2);
+        boolean alpha = source.getColorModel().hasAlpha();
+        BufferedImage result = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = result.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(source, 0, 0, width, height, null);
+        g2d.dispose();
+        return result;
+    }
+}
\ No newline at end of file
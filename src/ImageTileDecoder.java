@@ -0,0 +1,140 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+
+// 超大图片的按需分块解码：只解码可见区域对应的图块，第 level 级按 2^level 降采样读取，
+// 解码好的图块按字节数 LRU 缓存，内存占用取决于屏幕大小而不是图片大小
+public class ImageTileDecoder {
+    public static final int TILE_SIZE = 512;
+    private static final long MAX_TILE_BYTES = 64L * 1024 * 1024;
+    // 所有超大图片共用的解码线程
+    private static final ExecutorService DECODER = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "image-tile-decoder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File file;
+    private final int width;
+    private final int height;
+    private final LinkedHashMap<Long, BufferedImage> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long tileBytes;
+    // 后进先出：最后请求的图块通常离当前视图中心最近
+    private final LinkedBlockingDeque<Long> queue = new LinkedBlockingDeque<>();
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private volatile Runnable listener;
+
+    public ImageTileDecoder(File file, int width, int height) {
+        this.file = file;
+        this.width = width;
+        this.height = height;
+    }
+
+    // 有图块解码完成时在事件分发线程上调用
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    // 已缓存时返回图块，否则排队解码并返回 null
+    public BufferedImage getTile(int level, int column, int row) {
+        long key = key(level, column, row);
+        synchronized (tiles) {
+            BufferedImage tile = tiles.get(key);
+            if (tile != null) {
+                return tile;
+            }
+        }
+        if (pending.add(key)) {
+            queue.offerFirst(key);
+            DECODER.execute(this::decodeNext);
+        }
+        return null;
+    }
+
+    // 视图变化后丢弃尚未开始的请求，之后绘制时重新请求可见图块
+    public void cancelPending() {
+        Long key;
+        while ((key = queue.pollLast()) != null) {
+            pending.remove(key);
+        }
+    }
+
+    // 不再显示时释放全部图块
+    public void release() {
+        cancelPending();
+        synchronized (tiles) {
+            tiles.clear();
+            tileBytes = 0;
+        }
+    }
+
+    private void decodeNext() {
+        Long key = queue.pollFirst();
+        if (key == null) return;
+        BufferedImage tile = null;
+        try {
+            tile = decode(key);
+        } catch (IOException | RuntimeException | OutOfMemoryError e) {
+            e.printStackTrace();
+        }
+        if (tile != null) {
+            synchronized (tiles) {
+                tiles.put(key, tile);
+                tileBytes += (long) tile.getWidth() * tile.getHeight() * 4;
+                Iterator<BufferedImage> iterator = tiles.values().iterator();
+                while (tileBytes > MAX_TILE_BYTES && iterator.hasNext()) {
+                    BufferedImage evicted = iterator.next();
+                    tileBytes -= (long) evicted.getWidth() * evicted.getHeight() * 4;
+                    iterator.remove();
+                }
+            }
+        }
+        pending.remove(key);
+        Runnable current = listener;
+        if (tile != null && current != null) {
+            SwingUtilities.invokeLater(current);
+        }
+    }
+
+    private BufferedImage decode(long key) throws IOException {
+        int level = (int) (key >>> 56);
+        int column = (int) ((key >>> 28) & 0xFFFFFFF);
+        int row = (int) (key & 0xFFFFFFF);
+        int step = 1 << level;
+        int x = column * TILE_SIZE * step;
+        int y = row * TILE_SIZE * step;
+        if (x >= width || y >= height) return null;
+        Rectangle region = new Rectangle(x, y, Math.min(TILE_SIZE * step, width - x), Math.min(TILE_SIZE * step, height - y));
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(region);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static long key(int level, int column, int row) {
+        return ((long) level << 56) | ((long) column << 28) | row;
+    }
+}
\ No newline at end of file
@@ -4,18 +4,26 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 public class ImgViewer extends JFrame {
-    private JLabel imageLabel;
+    private TiledImagePanel imagePanel;
     private JScrollPane scrollPane;
-    private BufferedImage currentImage;
+    private JLabel statusBar;
     private File[] imageFiles;
     private int currentImageIndex = -1;
-    private double scaleFactor = 1.0;
+    // 最近一次翻页的方向，预读时优先这一侧
+    private int lastStep = 1;
+    // 当前图片前后各预读几张
+    private static final int PREFETCH_COUNT = 3;
+    private final ImagePrefetcher prefetcher = new ImagePrefetcher(this::onImageLoaded);
     
     public ImgViewer() {
         setTitle("Java照片查看器");
@@ -34,21 +42,23 @@ public class ImgViewer extends JFrame {
         initComponents();
         createMenuBar();
         setupKeyBindings();
+        
+        // 从工具启动器打开时关闭窗口只会 dispose，需要在这里停掉预读线程和进行中的解码
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                prefetcher.shutdown();
+            }
+        });
     }
     
     private void initComponents() {
-        // 创建图像显示标签
-        imageLabel = new JLabel();
-        imageLabel.setHorizontalAlignment(JLabel.CENTER);
-        imageLabel.setVerticalAlignment(JLabel.CENTER);
-        imageLabel.setBackground(Color.WHITE);
-        imageLabel.setOpaque(true);
-        imageLabel.setText("请选择图片文件");
-        imageLabel.setForeground(Color.WHITE);
-        imageLabel.setFont(new Font("微软雅黑", Font.PLAIN, 16));
+        // 创建图像显示面板：按图块绘制，缩放时不重新生成整张缩放图
+        imagePanel = new TiledImagePanel("请选择图片文件");
+        imagePanel.setScaleListener(this::updateStatusBar);
         
         // 创建滚动面板
-        scrollPane = new JScrollPane(imageLabel);
+        scrollPane = new JScrollPane(imagePanel);
         scrollPane.setPreferredSize(new Dimension(800, 600));
         scrollPane.getViewport().setBackground(Color.WHITE);
         
@@ -93,7 +103,7 @@ public class ImgViewer extends JFrame {
         add(toolBar, BorderLayout.NORTH);
         
         // 状态栏
-        JLabel statusBar = new JLabel("就绪");
+        statusBar = new JLabel("就绪");
         statusBar.setBorder(BorderFactory.createLoweredBevelBorder());
         statusBar.setBackground(new Color(102, 102, 102));
         statusBar.setOpaque(true);
@@ -178,97 +188,111 @@ public class ImgViewer extends JFrame {
         int result = fileChooser.showOpenDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
-            loadImageFromFile(selectedFile);
-            loadImagesFromDirectory(selectedFile.getParentFile());
+            loadImagesFromDirectory(selectedFile);
+            showImage(currentImageIndex);
         }
     }
     
-    private void loadImageFromFile(File file) {
-        try {
-            currentImage = ImageIO.read(file);
-            if (currentImage != null) {
-                scaleFactor = 1.0;
-                updateImageDisplay();
-                setTitle("Metal主题照片查看器 - " + file.getName());
-            } else {
-                JOptionPane.showMessageDialog(this, "无法加载图片文件", "错误", JOptionPane.ERROR_MESSAGE);
-            }
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, "读取图片时发生错误: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+    // 显示列表中的第 index 张；已预读的立即显示，否则在后台解码完成后显示
+    private void showImage(int index) {
+        currentImageIndex = index;
+        File file = imageFiles[index];
+        setTitle("Metal主题照片查看器 - " + file.getName());
+        
+        ImagePyramid cached = prefetcher.getCached(file);
+        if (cached != null) {
+            imagePanel.setPyramid(cached, 1.0);
+        } else {
+            imagePanel.setPyramid(null, 1.0);
+            imagePanel.setMessage("正在加载...");
+            statusBar.setText("正在加载 " + file.getName() + " ...");
         }
+        prefetcher.update(buildPrefetchWindow(index));
     }
     
-    private void loadImagesFromDirectory(File directory) {
-        if (directory != null && directory.isDirectory()) {
-            imageFiles = directory.listFiles(file -> {
-                String name = file.getName().toLowerCase();
-                return name.endsWith(".jpg") || name.endsWith(".jpeg") || 
-                       name.endsWith(".png") || name.endsWith(".bmp");
-            });
-            
-            if (imageFiles != null) {
-                // 找到当前图片的索引
-                String currentFileName = getTitle().substring(getTitle().lastIndexOf(" - ") + 3);
-                for (int i = 0; i < imageFiles.length; i++) {
-                    if (imageFiles[i].getName().equals(currentFileName)) {
-                        currentImageIndex = i;
-                        break;
-                    }
+    // 当前图片优先，之后按翻页方向交替取前后的图片
+    private List<File> buildPrefetchWindow(int index) {
+        List<File> window = new ArrayList<>();
+        window.add(imageFiles[index]);
+        for (int distance = 1; distance <= PREFETCH_COUNT; distance++) {
+            for (int step : new int[] {lastStep, -lastStep}) {
+                int neighbour = index + step * distance;
+                if (neighbour >= 0 && neighbour < imageFiles.length) {
+                    window.add(imageFiles[neighbour]);
                 }
             }
         }
+        return window;
+    }
+    
+    private void onImageLoaded(File file, ImagePyramid pyramid) {
+        if (imageFiles == null || currentImageIndex < 0 || !imageFiles[currentImageIndex].equals(file)) {
+            return;
+        }
+        if (pyramid != null) {
+            imagePanel.setPyramid(pyramid, 1.0);
+        } else {
+            imagePanel.setMessage("无法加载图片文件");
+            statusBar.setText("就绪");
+            JOptionPane.showMessageDialog(this, "无法加载图片文件: " + file.getName(), "错误", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    // 列出所选图片所在文件夹中的图片，按文件名排序，并定位到所选图片
+    private void loadImagesFromDirectory(File selectedFile) {
+        File directory = selectedFile.getParentFile();
+        File[] files = directory != null ? directory.listFiles(file -> {
+            String name = file.getName().toLowerCase();
+            return name.endsWith(".jpg") || name.endsWith(".jpeg") || 
+                   name.endsWith(".png") || name.endsWith(".bmp");
+        }) : null;
+        
+        if (files == null) {
+            files = new File[0];
+        }
+        Arrays.sort(files, Comparator.comparing(file -> file.getName().toLowerCase()));
+        imageFiles = files;
+        currentImageIndex = Arrays.asList(files).indexOf(selectedFile);
+        if (currentImageIndex < 0) {
+            imageFiles = new File[] {selectedFile};
+            currentImageIndex = 0;
+        }
     }
     
     private void showPreviousImage() {
         if (imageFiles != null && currentImageIndex > 0) {
-            currentImageIndex--;
-            loadImageFromFile(imageFiles[currentImageIndex]);
+            lastStep = -1;
+            showImage(currentImageIndex - 1);
         }
     }
     
     private void showNextImage() {
         if (imageFiles != null && currentImageIndex < imageFiles.length - 1) {
-            currentImageIndex++;
-            loadImageFromFile(imageFiles[currentImageIndex]);
+            lastStep = 1;
+            showImage(currentImageIndex + 1);
         }
     }
     
     private void zoomIn() {
-        scaleFactor *= 1.2;
-        updateImageDisplay();
+        imagePanel.setScale(imagePanel.getScale() * 1.2, null);
     }
     
     private void zoomOut() {
-        scaleFactor /= 1.2;
-        updateImageDisplay();
+        imagePanel.setScale(imagePanel.getScale() / 1.2, null);
     }
     
     private void fitToWindow() {
-        if (currentImage != null) {
-            Dimension viewSize = scrollPane.getViewport().getSize();
-            double scaleX = (double) viewSize.width / currentImage.getWidth();
-            double scaleY = (double) viewSize.height / currentImage.getHeight();
-            scaleFactor = Math.min(scaleX, scaleY);
-            updateImageDisplay();
-        }
+        imagePanel.fitToViewport();
     }
     
     private void actualSize() {
-        scaleFactor = 1.0;
-        updateImageDisplay();
+        imagePanel.setScale(1.0, null);
     }
     
-    private void updateImageDisplay() {
-        if (currentImage != null) {
-            int width = (int) (currentImage.getWidth() * scaleFactor);
-            int height = (int) (currentImage.getHeight() * scaleFactor);
-            
-            Image scaledImage = currentImage.getScaledInstance(width, height, Image.SCALE_SMOOTH);
-            imageLabel.setIcon(new ImageIcon(scaledImage));
-            imageLabel.setText("");
-            
-            imageLabel.setPreferredSize(new Dimension(width, height));
-            scrollPane.revalidate();
+    private void updateStatusBar() {
+        ImagePyramid pyramid = imagePanel.getPyramid();
+        if (pyramid != null) {
+            statusBar.setText(String.format("%d x %d    %.0f%%", pyramid.getWidth(), pyramid.getHeight(), imagePanel.getScale() * 100));
         }
     }
     
@@ -0,0 +1,215 @@
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.html.renderer.NodeRenderer;
+import com.vladsch.flexmark.html.renderer.NodeRenderingHandler;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.data.DataHolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+// 增量 Markdown 渲染：记住上一次文本的顶层块及各块的 HTML，编辑后只重新解析、渲染修改位置附近的块，
+// 前后未改动的块直接复用上次的结果。同一时间只能在一个线程上使用
+public class IncrementalMarkdownRenderer {
+    // 解析器会把源文本中的 \0 替换掉，渲染结果里只会出现我们插入的分隔符
+    private static final String SEPARATOR = "\0";
+
+    private final Parser parser;
+    // 在顶层块之间插入分隔符的渲染器：逐个块调用 HtmlRenderer.render 每次都要重新初始化，比整篇渲染一次慢得多
+    private final HtmlRenderer blockRenderer;
+    private String text;
+    private List<Block> blocks;
+
+    public IncrementalMarkdownRenderer(DataHolder options) {
+        parser = Parser.builder(options).build();
+        blockRenderer = HtmlRenderer.builder(options)
+                .nodeRendererFactory(rendererOptions -> new BlockSeparatorRenderer())
+                .build();
+    }
+
+    // 一个顶层块在源文本中的范围 [start, end) 及其 HTML
+    public static class Block {
+        public final int start;
+        public final int end;
+        public final String html;
+
+        Block(int start, int end, String html) {
+            this.start = start;
+            this.end = end;
+            this.html = html;
+        }
+
+        Block shift(int delta) {
+            return delta == 0 ? this : new Block(start + delta, end + delta, html);
+        }
+    }
+
+    // 渲染 newText 并返回全部顶层块；cancelled 返回 true 时中途放弃并返回 null，不改变已记住的状态
+    public List<Block> render(String newText, BooleanSupplier cancelled) {
+        if (newText.equals(text)) {
+            return blocks;
+        }
+        // 链接引用定义对全文生效（也可以写在列表项、引用块里），单独解析一段时找不到别处定义的引用，
+        // 删除定义后其他块里的链接也要恢复成原文，因此新旧文档中可能有引用定义时总是整篇解析
+        List<Block> result = null;
+        if (blocks != null && !text.contains("]:") && !newText.contains("]:")) {
+            result = renderChanged(newText, cancelled);
+        }
+        if (result == null) {
+            result = renderAll(newText, cancelled);
+        }
+        if (result == null) return null;
+        text = newText;
+        blocks = Collections.unmodifiableList(result);
+        return blocks;
+    }
+
+    public static String joinHtml(List<Block> blocks) {
+        StringBuilder html = new StringBuilder();
+        for (Block block : blocks) {
+            html.append(block.html);
+        }
+        return html.toString();
+    }
+
+    private List<Block> renderAll(String newText, BooleanSupplier cancelled) {
+        List<Block> result = new ArrayList<>();
+        if (!renderNodes(parser.parse(newText), 0, result, cancelled)) return null;
+        return result;
+    }
+
+    // 找出新旧文本的公共前缀和后缀，把修改范围扩展到前后各一个块、且两端都落在空行之后的块开头，
+    // 只把这一段当作独立文档解析。段末的块若跨过了结尾处的空行（例如未闭合的代码围栏吞掉了后文），
+    // 说明修改影响到了后面的内容，返回 null 改为整篇解析
+    private List<Block> renderChanged(String newText, BooleanSupplier cancelled) {
+        int oldLength = text.length();
+        int newLength = newText.length();
+        int prefix = 0;
+        int maxPrefix = Math.min(oldLength, newLength);
+        while (prefix < maxPrefix && text.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && text.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+            suffix++;
+        }
+        int changedEnd = oldLength - suffix;
+        int delta = newLength - oldLength;
+
+        // first 为第一个需要重新解析的块，last 之后的块保留
+        int first = 0;
+        while (first < blocks.size() && blocks.get(first).end < prefix) {
+            first++;
+        }
+        first--;
+        while (first > 0 && !isBoundary(newText, blocks.get(first).start)) {
+            first--;
+        }
+        first = Math.max(first, 0);
+        int last = blocks.size() - 1;
+        while (last >= 0 && blocks.get(last).start > changedEnd) {
+            last--;
+        }
+        last++;
+        while (last + 1 < blocks.size() && !isBoundary(newText, blocks.get(last + 1).start + delta)) {
+            last++;
+        }
+
+        int windowStart = first < blocks.size() && first > 0 ? blocks.get(first).start : 0;
+        int windowEnd = last + 1 < blocks.size() ? blocks.get(last + 1).start + delta : newLength;
+        if (windowStart > prefix || windowEnd < changedEnd + delta) {
+            return null;
+        }
+
+        Document document = parser.parse(newText.substring(windowStart, windowEnd));
+        if (windowEnd < newLength) {
+            Node lastNode = document.getLastChild();
+            if (lastNode != null && windowStart + lastNode.getEndOffset() > blankLineStart(newText, windowEnd)) {
+                return null;
+            }
+        }
+
+        List<Block> result = new ArrayList<>(blocks.subList(0, Math.min(first, blocks.size())));
+        if (!renderNodes(document, windowStart, result, cancelled)) return null;
+        for (int i = last + 1; i < blocks.size(); i++) {
+            result.add(blocks.get(i).shift(delta));
+        }
+        return result;
+    }
+
+    private boolean renderNodes(Document document, int offset, List<Block> result, BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) return false;
+        String[] pieces = blockRenderer.render(document).split(SEPARATOR, -1);
+        // 分隔符之后输出器会另起一行：此前的输出本来就停在行首时这个换行是多出来的，否则它属于前一块。
+        // 链接引用定义等块没有输出，不改变是否在行首
+        boolean lineStart = true;
+        for (int i = 0; i < pieces.length; i++) {
+            if (i > 0 && pieces[i].startsWith("\n")) {
+                if (!lineStart) {
+                    pieces[i - 1] += "\n";
+                }
+                pieces[i] = pieces[i].substring(1);
+                lineStart = true;
+            }
+            if (!pieces[i].isEmpty()) {
+                lineStart = pieces[i].endsWith("\n");
+            }
+        }
+        int i = 0;
+        for (Node node : document.getChildren()) {
+            result.add(new Block(offset + node.getStartOffset(), offset + node.getEndOffset(), pieces[i++]));
+        }
+        return true;
+    }
+
+    private static class BlockSeparatorRenderer implements NodeRenderer {
+        @Override
+        public Set<NodeRenderingHandler<?>> getNodeRenderingHandlers() {
+            return Collections.singleton(new NodeRenderingHandler<>(Document.class, (document, context, html) -> {
+                for (Node node : document.getChildren()) {
+                    context.render(node);
+                    html.raw(SEPARATOR);
+                }
+            }));
+        }
+    }
+
+    // 块开头可以作为独立解析的分界：位于行首、前一行是空行，没有缩进（否则可能是上一个列表项的延续），
+    // 也不是列表项（隔着空行的同类列表项会合并成一个列表）
+    private static boolean isBoundary(String text, int position) {
+        if (position <= 0 || position >= text.length()) return position == 0;
+        char c = text.charAt(position);
+        if (c == ' ' || c == '\t' || text.charAt(position - 1) != '\n') return false;
+        return blankLineStart(text, position) < position && !startsWithListMarker(text, position);
+    }
+
+    private static boolean startsWithListMarker(String text, int position) {
+        int i = position;
+        char c = text.charAt(i);
+        if (c == '-' || c == '+' || c == '*') {
+            i++;
+        } else {
+            while (i < text.length() && i - position < 9 && Character.isDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i == position || i >= text.length() || (text.charAt(i) != '.' && text.charAt(i) != ')')) return false;
+            i++;
+        }
+        return i >= text.length() || text.charAt(i) == ' ' || text.charAt(i) == '\t' || text.charAt(i) == '\n';
+    }
+
+    // position 处于行首时返回紧挨其前的空行的开头，前一行不是空行时返回 position
+    private static int blankLineStart(String text, int position) {
+        int i = position - 2;
+        while (i >= 0 && text.charAt(i) != '\n') {
+            if (!Character.isWhitespace(text.charAt(i))) return position;
+            i--;
+        }
+        return i >= -1 && position >= 1 ? i + 1 : position;
+    }
+}
\ No newline at end of file
@@ -1,7 +1,8 @@
+import com.vladsch.flexmark.ext.gfm.strikethrough.StrikethroughExtension;
+import com.vladsch.flexmark.ext.tables.TablesExtension;
 import com.vladsch.flexmark.html.HtmlRenderer;
 import com.vladsch.flexmark.parser.Parser;
 import com.vladsch.flexmark.util.data.MutableDataSet;
-import org.apache.poi.xwpf.usermodel.*;
 
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
@@ -12,22 +13,51 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
+import javax.swing.undo.CompoundEdit;
 import javax.swing.undo.UndoManager;
 import javax.swing.undo.UndoableEdit;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.*;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 public class JavaWord extends JFrame {
     private JTextPane left;  // 改为JTextPane支持格式化
     private JEditorPane right;
+    private MarkdownPreview preview;
     private File currentFile;
+    // 自动保存日志，记录上次保存之后的编辑
+    private static final String JOURNAL_NAME = "JavaWord";
+    private EditJournal journal;
+    private final MutableDataSet options;
     private final Parser parser;
     private final HtmlRenderer renderer;
 
+    // Markdown 预览：输入停顿后在后台线程增量渲染，过时的渲染结果直接丢弃
+    private static final int RENDER_DELAY_MILLIS = 200;
+    private final IncrementalMarkdownRenderer markdownRenderer;
+    private final ExecutorService renderExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "markdown-preview");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong renderGeneration = new AtomicLong();
+    private Timer renderTimer;
+
     // 撤销重做功能
     private UndoManager undoManager;
     private JMenuItem undoMenuItem, redoMenuItem;
+    // 不为 null 时撤销监听器把编辑收集到这里，整体作为一步撤销（如全部替换）
+    private CompoundEdit compoundEdit;
 
     // 格式化工具栏
     private JToolBar formatToolBar;
@@ -39,14 +69,19 @@ public class JavaWord extends JFrame {
     // 查找替换功能
     private JDialog findDialog;
     private JTextField findField, replaceField;
+    private JCheckBox ignoreCaseBox, regexBox;
+    private JLabel searchStatusLabel;
+    private DocumentSearch search;
 
     public JavaWord() {
         super("Javaows Office Word");
 
-        // Markdown 解析器
-        MutableDataSet options = new MutableDataSet();
+        // Markdown 解析器：支持表格和删除线，预览和导出使用同一套选项
+        options = new MutableDataSet();
+        options.set(Parser.EXTENSIONS, Arrays.asList(TablesExtension.create(), StrikethroughExtension.create()));
         parser = Parser.builder(options).build();
         renderer = HtmlRenderer.builder(options).build();
+        markdownRenderer = new IncrementalMarkdownRenderer(options);
 
         // 初始化撤销管理器
         undoManager = new UndoManager();
@@ -55,8 +90,16 @@ public class JavaWord extends JFrame {
         setupMenu();
         setupToolBar();
         setupKeyboardShortcuts();
+        startUntitledJournal();
 
         setDefaultCloseOperation(EXIT_ON_CLOSE);
+        // 从 ToolLauncher 打开时关闭窗口只是 dispose，要停掉日志的定时器并删除日志，下次启动不再提示恢复
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                journal.close(false);
+            }
+        });
         setSize(1400, 900);
         setLocationRelativeTo(null);
 
@@ -74,21 +117,29 @@ public class JavaWord extends JFrame {
 
         right = new JEditorPane("text/html", "");
         right.setEditable(false);
+        preview = new MarkdownPreview(right);
 
         // 设置字体
         Font editorFont = new Font("Microsoft YaHei", Font.PLAIN, 14);
         left.setFont(editorFont);
 
-        // 添加文档监听器
+        // 添加文档监听器：连续输入时不断推迟，停顿后才渲染一次
+        renderTimer = new Timer(RENDER_DELAY_MILLIS, e -> render());
+        renderTimer.setRepeats(false);
         left.getDocument().addDocumentListener(new DocumentListener() {
-            public void insertUpdate(DocumentEvent e) { render(); }
-            public void removeUpdate(DocumentEvent e) { render(); }
-            public void changedUpdate(DocumentEvent e) { render(); }
+            public void insertUpdate(DocumentEvent e) { renderTimer.restart(); }
+            public void removeUpdate(DocumentEvent e) { renderTimer.restart(); }
+            // 只是字体样式变化，Markdown 源文本不变
+            public void changedUpdate(DocumentEvent e) { }
         });
 
         // 添加撤销监听器
         left.getDocument().addUndoableEditListener(new UndoableEditListener() {
             public void undoableEditHappened(UndoableEditEvent e) {
+                if (compoundEdit != null) {
+                    compoundEdit.addEdit(e.getEdit());
+                    return;
+                }
                 undoManager.addEdit(e.getEdit());
                 updateUndoRedoButtons();
             }
@@ -218,13 +269,28 @@ public class JavaWord extends JFrame {
         });
     }
 
+    // 在事件分发线程上取出文本交给后台线程渲染；渲染期间又有新的请求时，旧的渲染中途放弃
     private void render() {
-        try {
-            String html = renderer.render(parser.parse(left.getText()));
-            right.setText("<html><head><style>body{font-family:'Microsoft YaHei',sans-serif; padding:20px;}</style></head><body>" + html + "</body></html>");
-        } catch (Exception ex) {
-            right.setText("<html><body style='color:red; font-family:Microsoft YaHei;'>" + ex.getMessage() + "</body></html>");
-        }
+        String text = left.getText();
+        long generation = renderGeneration.incrementAndGet();
+        BooleanSupplier stale = () -> renderGeneration.get() != generation;
+        renderExecutor.execute(() -> {
+            if (stale.getAsBoolean()) return;
+            Runnable update;
+            try {
+                List<IncrementalMarkdownRenderer.Block> blocks = markdownRenderer.render(text, stale);
+                if (blocks == null) return;
+                update = () -> preview.showBlocks(blocks);
+            } catch (Exception ex) {
+                update = () -> preview.showError(ex.getMessage());
+            }
+            Runnable show = update;
+            SwingUtilities.invokeLater(() -> {
+                if (!stale.getAsBoolean()) {
+                    show.run();
+                }
+            });
+        });
     }
 
     private void setupMenu() {
@@ -239,6 +305,12 @@ public class JavaWord extends JFrame {
         fileMenu.add(newItem("另存为", KeyEvent.VK_A, "ctrl shift S", e -> saveAsFile()));
         fileMenu.addSeparator();
         fileMenu.add(newItem("导出 DOCX", KeyEvent.VK_E, null, e -> exportDocx()));
+        JMenuItem exportPdfItem = newItem("导出 PDF", KeyEvent.VK_P, null, e -> exportPdf());
+        if (!MarkdownExporter.isPdfAvailable()) {
+            exportPdfItem.setEnabled(false);
+            exportPdfItem.setToolTipText("缺少 openhtmltopdf 库");
+        }
+        fileMenu.add(exportPdfItem);
         fileMenu.add(newItem("导出 HTML", KeyEvent.VK_H, null, e -> exportHtml()));
         fileMenu.addSeparator();
         fileMenu.add(newItem("退出", KeyEvent.VK_X, "ctrl Q", e -> exitApplication()));
@@ -442,8 +514,34 @@ public class JavaWord extends JFrame {
         replaceField = new JTextField(20);
         findDialog.add(replaceField, gbc);
 
+        // 选项
+        gbc.gridx = 1; gbc.gridy = 2;
+        gbc.fill = GridBagConstraints.NONE; gbc.anchor = GridBagConstraints.WEST;
+        JPanel optionPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        ignoreCaseBox = new JCheckBox("忽略大小写");
+        regexBox = new JCheckBox("正则表达式");
+        ignoreCaseBox.addActionListener(e -> updateSearchHighlights());
+        regexBox.addActionListener(e -> updateSearchHighlights());
+        optionPanel.add(ignoreCaseBox);
+        optionPanel.add(regexBox);
+        findDialog.add(optionPanel, gbc);
+
+        // 输入查找内容时在后台高亮全部匹配，关闭对话框时清除
+        search = new DocumentSearch(left);
+        searchStatusLabel = new JLabel(" ");
+        search.setStatusListener(searchStatusLabel::setText);
+        findField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { updateSearchHighlights(); }
+            public void removeUpdate(DocumentEvent e) { updateSearchHighlights(); }
+            public void changedUpdate(DocumentEvent e) { }
+        });
+        findDialog.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentHidden(ComponentEvent e) { search.clear(); }
+        });
+
         // 按钮
-        gbc.gridx = 0; gbc.gridy = 2;
+        gbc.gridx = 0; gbc.gridy = 3;
         gbc.gridwidth = 2; gbc.fill = GridBagConstraints.NONE;
         gbc.anchor = GridBagConstraints.CENTER;
         JPanel buttonPanel = new JPanel();
@@ -463,55 +561,76 @@ public class JavaWord extends JFrame {
 
         findDialog.add(buttonPanel, gbc);
 
-        findDialog.setSize(400, 150);
+        gbc.gridy = 4;
+        findDialog.add(searchStatusLabel, gbc);
+
+        findDialog.setSize(400, 200);
         findDialog.setLocationRelativeTo(this);
     }
 
-    private void findNext() {
+    // 按对话框中的选项编译查找内容；为空或正则表达式有误时返回 null
+    private Pattern searchPattern(boolean showError) {
         String searchText = findField.getText();
-        if (searchText.isEmpty()) return;
+        if (searchText.isEmpty()) return null;
+        try {
+            return DocumentSearch.compile(searchText, regexBox.isSelected(), ignoreCaseBox.isSelected());
+        } catch (PatternSyntaxException ex) {
+            if (showError) {
+                JOptionPane.showMessageDialog(this, "正则表达式有误：" + ex.getDescription(), "查找", JOptionPane.ERROR_MESSAGE);
+            } else {
+                searchStatusLabel.setText("正则表达式有误：" + ex.getDescription());
+            }
+            return null;
+        }
+    }
 
-        String content = left.getText();
-        int startPos = left.getCaretPosition();
-        int foundPos = content.indexOf(searchText, startPos);
+    private void updateSearchHighlights() {
+        search.setQuery(searchPattern(false));
+    }
 
-        if (foundPos == -1 && startPos > 0) {
-            // 从头开始搜索
-            foundPos = content.indexOf(searchText, 0);
-        }
+    private void findNext() {
+        Pattern pattern = searchPattern(true);
+        if (pattern == null) return;
 
-        if (foundPos != -1) {
-            left.setSelectionStart(foundPos);
-            left.setSelectionEnd(foundPos + searchText.length());
-            left.setCaretPosition(foundPos + searchText.length());
-        } else {
-            JOptionPane.showMessageDialog(this, "找不到 \"" + searchText + "\"", "查找", JOptionPane.INFORMATION_MESSAGE);
+        if (!search.findNext(pattern)) {
+            JOptionPane.showMessageDialog(this, "找不到 \"" + findField.getText() + "\"", "查找", JOptionPane.INFORMATION_MESSAGE);
         }
     }
 
     private void replace() {
-        String selectedText = left.getSelectedText();
-        String findText = findField.getText();
-        String replaceText = replaceField.getText();
+        Pattern pattern = searchPattern(true);
+        if (pattern == null) return;
 
-        if (selectedText != null && selectedText.equals(findText)) {
-            left.replaceSelection(replaceText);
+        try {
+            search.replaceSelection(pattern, replaceField.getText(), regexBox.isSelected());
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            JOptionPane.showMessageDialog(this, "替换内容有误：" + ex.getMessage(), "替换", JOptionPane.ERROR_MESSAGE);
+            return;
         }
         findNext();
     }
 
+    // 全部替换合并成一步撤销
     private void replaceAll() {
-        String findText = findField.getText();
-        String replaceText = replaceField.getText();
-
-        if (findText.isEmpty()) return;
+        Pattern pattern = searchPattern(true);
+        if (pattern == null) return;
 
-        String content = left.getText();
-        String newContent = content.replace(findText, replaceText);
-
-        left.setText(newContent);
-
-        int count = (content.length() - newContent.length()) / (findText.length() - replaceText.length());
+        int count;
+        compoundEdit = new CompoundEdit();
+        try {
+            count = search.replaceAll(pattern, replaceField.getText(), regexBox.isSelected());
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            JOptionPane.showMessageDialog(this, "替换内容有误：" + ex.getMessage(), "替换", JOptionPane.ERROR_MESSAGE);
+            return;
+        } finally {
+            CompoundEdit edit = compoundEdit;
+            compoundEdit = null;
+            edit.end();
+            if (edit.isSignificant()) {
+                undoManager.addEdit(edit);
+                updateUndoRedoButtons();
+            }
+        }
         JOptionPane.showMessageDialog(this, "已替换 " + count + " 处", "替换完成", JOptionPane.INFORMATION_MESSAGE);
     }
 
@@ -565,17 +684,51 @@ public class JavaWord extends JFrame {
         fontDialog.setVisible(true);
     }
 
+    // 自动保存日志：有上次异常退出留下的无标题文档时询问是否恢复（一次恢复最近的一个），否则从当前内容开始记录
+    private void startUntitledJournal() {
+        List<Path> journals = EditJournal.findUntitled(JOURNAL_NAME);
+        if (!journals.isEmpty()) {
+            Path latest = journals.get(0);
+            for (Path path : journals) {
+                if (path.toFile().lastModified() > latest.toFile().lastModified()) {
+                    latest = path;
+                }
+            }
+            // 其余的留待下次启动再恢复
+            for (Path path : journals) {
+                if (path != latest) EditJournal.releaseUntitled(path);
+            }
+            int option = JOptionPane.showConfirmDialog(this, "发现上次未保存的文档，是否恢复？", "恢复文档", JOptionPane.YES_NO_OPTION);
+            if (option == JOptionPane.YES_OPTION) {
+                left.setText("");
+                journal = EditJournal.openUntitled(latest, left.getDocument());
+                journal.start();
+                journal.replay();
+                return;
+            }
+            EditJournal.discardUntitled(latest);
+        }
+        journal = EditJournal.forUntitled(JOURNAL_NAME, left.getDocument());
+        journal.start();
+    }
+
     // 文件操作
     private void newFile() {
+        boolean keepJournal = false;
         if (hasUnsavedChanges()) {
             int option = JOptionPane.showConfirmDialog(this, "是否保存当前文档？", "新建文档", JOptionPane.YES_NO_CANCEL_OPTION);
             if (option == JOptionPane.YES_OPTION) {
+                // 保存在后台进行，万一失败日志还在
                 saveFile();
+                keepJournal = true;
             } else if (option == JOptionPane.CANCEL_OPTION) {
                 return;
             }
         }
+        journal.close(keepJournal);
         left.setText("");
+        journal = EditJournal.forUntitled(JOURNAL_NAME, left.getDocument());
+        journal.start();
         currentFile = null;
         undoManager.discardAllEdits();
         updateUndoRedoButtons();
@@ -588,6 +741,8 @@ public class JavaWord extends JFrame {
         if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
 
         currentFile = chooser.getSelectedFile();
+        // 当前文档未保存的修改留在日志里，下次打开时还能恢复
+        journal.close(true);
         try (BufferedReader br = new BufferedReader(new FileReader(currentFile, java.nio.charset.StandardCharsets.UTF_8))) {
             left.read(br, null);
             undoManager.discardAllEdits();
@@ -595,20 +750,47 @@ public class JavaWord extends JFrame {
             setTitle("Javaows Office Word - " + currentFile.getName());
         } catch (IOException ex) {
             JOptionPane.showMessageDialog(this, "打开文件失败：" + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+            journal = EditJournal.forUntitled(JOURNAL_NAME, left.getDocument());
+            journal.start();
+            return;
+        }
+
+        // read 换了一个新的文档对象，日志要记录新文档
+        journal = EditJournal.forFile(currentFile, left.getDocument());
+        journal.start();
+        if (journal.hasRecoverableEdits()) {
+            int option = JOptionPane.showConfirmDialog(this, currentFile.getName() + " 有上次未保存的修改，是否恢复？",
+                    "恢复文档", JOptionPane.YES_NO_OPTION);
+            if (option == JOptionPane.YES_OPTION) {
+                journal.replay();
+            } else {
+                journal.discard();
+            }
         }
     }
 
+    // 在事件分发线程上只取快照，编码、写临时文件、fsync 和替换都在后台进行
     private void saveFile() {
         if (currentFile == null) {
             saveAsFile();
             return;
         }
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(currentFile, java.nio.charset.StandardCharsets.UTF_8))) {
-            left.write(bw);
-            setTitle("Javaows Office Word - " + currentFile.getName());
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(this, "保存文件失败：" + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-        }
+        File target = currentFile;
+        EditJournal savedJournal = journal;
+        long mark = savedJournal.mark();
+        SaveService.save(target.toPath(), SaveService.snapshot(left.getDocument()), error -> {
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, "保存文件失败：" + error.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            // 保存期间又新建或打开了别的文档时，旧日志已经关闭
+            if (savedJournal == journal) {
+                journal.checkpoint(mark, target);
+            }
+            if (target.equals(currentFile)) {
+                setTitle("Javaows Office Word - " + target.getName());
+            }
+        });
     }
 
     private void saveAsFile() {
@@ -648,36 +830,43 @@ public class JavaWord extends JFrame {
         chooser.setSelectedFile(new File("document.docx"));
         if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
 
-        try (XWPFDocument doc = new XWPFDocument();
-             FileOutputStream out = new FileOutputStream(chooser.getSelectedFile())) {
-
-            for (String line : left.getText().split("\n")) {
-                line = line.trim();
-                if (line.startsWith("# ")) {
-                    XWPFParagraph p = doc.createParagraph();
-                    p.setStyle("Heading1");
-                    p.createRun().setText(line.substring(2));
-                } else if (line.startsWith("## ")) {
-                    XWPFParagraph p = doc.createParagraph();
-                    p.setStyle("Heading2");
-                    p.createRun().setText(line.substring(3));
-                } else if (line.startsWith("### ")) {
-                    XWPFParagraph p = doc.createParagraph();
-                    p.setStyle("Heading3");
-                    p.createRun().setText(line.substring(4));
-                } else if (line.startsWith("- ")) {
-                    XWPFParagraph p = doc.createParagraph();
-                    p.setStyle("ListBullet");
-                    p.createRun().setText(line.substring(2));
-                } else if (!line.isEmpty()) {
-                    doc.createParagraph().createRun().setText(line);
-                }
+        startExport(MarkdownExporter.Format.DOCX, chooser.getSelectedFile(), "DOCX");
+    }
+
+    private void exportPdf() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("PDF 文档", "pdf"));
+        chooser.setSelectedFile(new File("document.pdf"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        startExport(MarkdownExporter.Format.PDF, chooser.getSelectedFile(), "PDF");
+    }
+
+    // 导出在后台线程上进行，进度窗口超过片刻才弹出，可以取消
+    private void startExport(MarkdownExporter.Format format, File target, String name) {
+        MarkdownExporter exporter = new MarkdownExporter(options, parser, renderer, left.getText(), format, target.toPath());
+        ProgressMonitor monitor = new ProgressMonitor(this, "正在导出 " + target.getName(), null, 0, MarkdownExporter.PROGRESS_MAX);
+        monitor.setMillisToDecideToPopup(300);
+        Timer progressTimer = new Timer(200, e -> {
+            if (monitor.isCanceled()) {
+                exporter.cancel();
+            } else {
+                // 进度到满值时 ProgressMonitor 会自己关闭，留到导出真正结束再关
+                monitor.setProgress(Math.min(exporter.getProgress(), MarkdownExporter.PROGRESS_MAX - 1));
             }
-            doc.write(out);
-            JOptionPane.showMessageDialog(this, "DOCX 导出成功！", "完成", JOptionPane.INFORMATION_MESSAGE);
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(this, "导出失败：" + ex.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-        }
+        });
+        progressTimer.start();
+
+        exporter.start().whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            progressTimer.stop();
+            monitor.close();
+            if (error == null) {
+                JOptionPane.showMessageDialog(this, name + " 导出成功！", "完成", JOptionPane.INFORMATION_MESSAGE);
+            } else if (!(error instanceof CancellationException)) {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(this, "导出失败：" + error, "错误", JOptionPane.ERROR_MESSAGE);
+            }
+        }));
     }
 
     private boolean hasUnsavedChanges() {
@@ -689,9 +878,12 @@ public class JavaWord extends JFrame {
         if (hasUnsavedChanges()) {
             int option = JOptionPane.showConfirmDialog(this, "是否保存当前文档？", "退出程序", JOptionPane.YES_NO_CANCEL_OPTION);
             if (option == JOptionPane.YES_OPTION) {
+                // 退出时 SaveService 会等后台保存写完；日志留着，万一保存失败还能恢复
                 saveFile();
             } else if (option == JOptionPane.CANCEL_OPTION) {
                 return;
+            } else {
+                journal.close(false);
             }
         }
         System.exit(0);
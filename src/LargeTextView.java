@@ -0,0 +1,330 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.util.List;
+
+// 大文件编辑视图：行高固定，滚动范围按行数计算，绘制时只向 PieceTable 读取可见的几十行。
+// 支持插入符移动和基本的输入、删除；行索引建好之前只读
+public class LargeTextView extends JComponent implements Scrollable {
+    private static final int MARGIN = 4;
+    private static final int TAB_SIZE = 4;
+
+    private final PieceTable document;
+    private long caretLine;
+    private int caretColumn;
+    private int maxLineWidth;
+    private boolean editable = true;
+
+    public LargeTextView(PieceTable document) {
+        this.document = document;
+        setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
+        setBackground(Color.WHITE);
+        setOpaque(true);
+        setFocusable(true);
+        setFocusTraversalKeysEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.TEXT_CURSOR));
+
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                long line = Math.min(e.getY() / lineHeight(), document.lineCount() - 1);
+                caretLine = Math.max(0, line);
+                caretColumn = columnAt(line(caretLine).text, e.getX() - MARGIN);
+                repaint();
+            }
+        });
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                handleKey(e);
+            }
+
+            @Override
+            public void keyTyped(KeyEvent e) {
+                char c = e.getKeyChar();
+                if ((c >= ' ' && c != 127 || c == '\t') && !e.isControlDown() && !e.isAltDown()) {
+                    insert(String.valueOf(c));
+                }
+            }
+        });
+        addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) { repaint(); }
+
+            @Override
+            public void focusLost(FocusEvent e) { repaint(); }
+        });
+    }
+
+    public PieceTable getDocument() {
+        return document;
+    }
+
+    public void setEditable(boolean editable) {
+        this.editable = editable;
+    }
+
+    // 是否已滚动到最后一行，追加内容时据此决定是否自动滚动
+    public boolean isScrolledToEnd() {
+        Rectangle visible = getVisibleRect();
+        return visible.y + visible.height >= getPreferredSize().height - lineHeight();
+    }
+
+    // 滚动到最后一行，等布局按新的行数更新后再滚动
+    public void scrollToEnd() {
+        SwingUtilities.invokeLater(() -> {
+            int height = getPreferredSize().height;
+            scrollRectToVisible(new Rectangle(0, height - lineHeight(), 1, lineHeight()));
+        });
+    }
+
+    // 行数变化（编辑或行索引有进展）后调用，更新滚动范围
+    public void documentChanged() {
+        revalidate();
+        repaint();
+    }
+
+    private int lineHeight() {
+        return getFontMetrics(getFont()).getHeight();
+    }
+
+    private PieceTable.Line line(long index) {
+        return document.getLines(index, 1).get(0);
+    }
+
+    /* ---------------- 绘制 ---------------- */
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        FontMetrics metrics = g.getFontMetrics(getFont());
+        int lineHeight = metrics.getHeight();
+        long lineCount = document.lineCount();
+        long first = clip.y / lineHeight;
+        if (first >= lineCount) return;
+        int count = (int) Math.min(clip.height / lineHeight + 2, lineCount - first);
+        List<PieceTable.Line> lines = document.getLines(first, count);
+
+        g.setFont(getFont());
+        g.setColor(getForeground());
+        int widest = maxLineWidth;
+        for (int i = 0; i < lines.size(); i++) {
+            PieceTable.Line line = lines.get(i);
+            String display = expandTabs(line.text, line.text.length());
+            if (line.truncated) {
+                display += " …";
+            }
+            int y = (int) ((first + i) * lineHeight);
+            g.drawString(display, MARGIN, y + metrics.getAscent());
+            widest = Math.max(widest, metrics.stringWidth(display));
+        }
+
+        if (hasFocus() && caretLine >= first && caretLine < first + lines.size()) {
+            PieceTable.Line line = lines.get((int) (caretLine - first));
+            int x = MARGIN + metrics.stringWidth(expandTabs(line.text, Math.min(caretColumn, line.text.length())));
+            int y = (int) (caretLine * lineHeight);
+            g.drawLine(x, y, x, y + lineHeight - 1);
+        }
+
+        // 只能知道绘制过的行的宽度，遇到更宽的行再扩大横向滚动范围
+        if (widest > maxLineWidth) {
+            maxLineWidth = widest;
+            SwingUtilities.invokeLater(this::revalidate);
+        }
+    }
+
+    private static String expandTabs(String text, int end) {
+        if (text.indexOf('\t') < 0) {
+            return text.substring(0, end);
+        }
+        StringBuilder result = new StringBuilder(end + 16);
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\t') {
+                do {
+                    result.append(' ');
+                } while (result.length() % TAB_SIZE != 0);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private int columnAt(String text, int x) {
+        FontMetrics metrics = getFontMetrics(getFont());
+        for (int i = 0; i < text.length(); i++) {
+            int left = metrics.stringWidth(expandTabs(text, i));
+            int right = metrics.stringWidth(expandTabs(text, i + 1));
+            if (x < (left + right) / 2) return i;
+        }
+        return text.length();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        // 行数极多时受限于 int 像素坐标
+        long height = document.lineCount() * lineHeight();
+        return new Dimension(maxLineWidth + MARGIN * 2, (int) Math.min(height, Integer.MAX_VALUE - lineHeight()));
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(600, 400);
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? lineHeight() : getFontMetrics(getFont()).charWidth('m');
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? Math.max(lineHeight(), visibleRect.height - lineHeight()) : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return getParent() instanceof JViewport && getParent().getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+
+    /* ---------------- 插入符与编辑 ---------------- */
+
+    private void handleKey(KeyEvent e) {
+        long lineCount = document.lineCount();
+        int pageLines = Math.max(1, getVisibleRect().height / lineHeight() - 1);
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_LEFT:
+                if (caretColumn > 0) {
+                    caretColumn = Math.min(caretColumn, line(caretLine).text.length()) - 1;
+                } else if (caretLine > 0) {
+                    caretLine--;
+                    caretColumn = line(caretLine).text.length();
+                }
+                break;
+            case KeyEvent.VK_RIGHT:
+                if (caretColumn < line(caretLine).text.length()) {
+                    caretColumn++;
+                } else if (caretLine + 1 < lineCount) {
+                    caretLine++;
+                    caretColumn = 0;
+                }
+                break;
+            case KeyEvent.VK_UP:
+                caretLine = Math.max(0, caretLine - 1);
+                break;
+            case KeyEvent.VK_DOWN:
+                caretLine = Math.min(lineCount - 1, caretLine + 1);
+                break;
+            case KeyEvent.VK_PAGE_UP:
+                caretLine = Math.max(0, caretLine - pageLines);
+                break;
+            case KeyEvent.VK_PAGE_DOWN:
+                caretLine = Math.min(lineCount - 1, caretLine + pageLines);
+                break;
+            case KeyEvent.VK_HOME:
+                if (e.isControlDown()) caretLine = 0;
+                caretColumn = 0;
+                break;
+            case KeyEvent.VK_END:
+                if (e.isControlDown()) caretLine = lineCount - 1;
+                caretColumn = line(caretLine).text.length();
+                break;
+            case KeyEvent.VK_ENTER:
+                insert("\n");
+                break;
+            case KeyEvent.VK_BACK_SPACE:
+                backspace();
+                break;
+            case KeyEvent.VK_DELETE:
+                deleteForward();
+                break;
+            default:
+                return;
+        }
+        e.consume();
+        scrollToCaret();
+        repaint();
+    }
+
+    private boolean checkEditable(PieceTable.Line line) {
+        // 行索引建好之前只读；截断的行不知道行尾在哪里，不允许修改
+        if (!editable || !document.isIndexComplete() || line.truncated) {
+            Toolkit.getDefaultToolkit().beep();
+            return false;
+        }
+        return true;
+    }
+
+    private long caretOffset(PieceTable.Line line) {
+        return document.lineStart(caretLine) + line.byteOffsets[Math.min(caretColumn, line.text.length())];
+    }
+
+    private void insert(String text) {
+        PieceTable.Line line = line(caretLine);
+        if (!checkEditable(line)) return;
+        document.insert(caretOffset(line), text);
+        if (text.equals("\n")) {
+            caretLine++;
+            caretColumn = 0;
+        } else {
+            caretColumn = Math.min(caretColumn, line.text.length()) + text.length();
+        }
+        documentChanged();
+        scrollToCaret();
+    }
+
+    private void backspace() {
+        PieceTable.Line line = line(caretLine);
+        if (!checkEditable(line)) return;
+        int column = Math.min(caretColumn, line.text.length());
+        if (column > 0) {
+            int previous = column - Character.charCount(line.text.codePointBefore(column));
+            long start = document.lineStart(caretLine);
+            document.delete(start + line.byteOffsets[previous], line.byteOffsets[column] - line.byteOffsets[previous]);
+            caretColumn = previous;
+        } else if (caretLine > 0) {
+            // 与上一行合并：删除上一行末尾的换行符（可能是 \r\n）
+            PieceTable.Line previousLine = line(caretLine - 1);
+            if (previousLine.truncated) return;
+            long end = document.lineStart(caretLine - 1) + previousLine.byteOffsets[previousLine.text.length()];
+            document.delete(end, document.lineStart(caretLine) - end);
+            caretLine--;
+            caretColumn = previousLine.text.length();
+        }
+        documentChanged();
+    }
+
+    private void deleteForward() {
+        PieceTable.Line line = line(caretLine);
+        if (!checkEditable(line)) return;
+        int column = Math.min(caretColumn, line.text.length());
+        long start = document.lineStart(caretLine);
+        if (column < line.text.length()) {
+            int next = column + Character.charCount(line.text.codePointAt(column));
+            document.delete(start + line.byteOffsets[column], line.byteOffsets[next] - line.byteOffsets[column]);
+        } else if (caretLine + 1 < document.lineCount()) {
+            long end = start + line.byteOffsets[column];
+            document.delete(end, document.lineStart(caretLine + 1) - end);
+        }
+        caretColumn = column;
+        documentChanged();
+    }
+
+    private void scrollToCaret() {
+        PieceTable.Line line = line(caretLine);
+        FontMetrics metrics = getFontMetrics(getFont());
+        int x = MARGIN + metrics.stringWidth(expandTabs(line.text, Math.min(caretColumn, line.text.length())));
+        int y = (int) Math.min(caretLine * lineHeight(), Integer.MAX_VALUE - lineHeight());
+        scrollRectToVisible(new Rectangle(x - MARGIN, y, MARGIN * 2, lineHeight()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,133 @@
+import javax.swing.*;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 跟踪日志文件尾部：定时检查文件大小，只从上次读到的位置读取新增的完整行，成批交给界面追加。
+// 文件变小视为被截断，文件标识变化视为被轮转（改名后新建），两种情况都从新文件开头重新读取。
+// 跟踪器自己每次读取都重新打开文件，不长期占用句柄。大文件模式下 PieceTable 会一直打开原文件，但只是普通的
+// FileChannel（Windows 上以允许删除的共享方式打开），不做内存映射，服务器照样可以改名或删除日志；
+// 被删除的文件要等 reset 重新打开视图、关闭旧句柄后才真正消失
+public class LogFollower {
+    private static final int POLL_MILLIS = 250;
+    private static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+
+    // 回调均在事件分发线程上执行
+    public interface Listener {
+        // 文件被截断或轮转：清空视图（或重新载入文件），返回视图此后已包含的字节数，之后从那里继续读取
+        long reset();
+
+        // 新增的数据，除非单行超过 MAX_BATCH_BYTES，总是以换行符结尾
+        void append(byte[] data, int length);
+    }
+
+    private final Path path;
+    private final Listener listener;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "log-follower");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ByteBuffer buffer = ByteBuffer.allocate(MAX_BATCH_BYTES);
+    private long offset;
+    private Object identity;
+    private volatile boolean stopped;
+
+    // offset 为视图已包含的字节数
+    public LogFollower(Path path, long offset, Listener listener) {
+        this.path = path;
+        this.offset = offset;
+        this.listener = listener;
+        this.identity = identityOf(path);
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::poll, POLL_MILLIS, POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        stopped = true;
+        executor.shutdownNow();
+    }
+
+    private void poll() {
+        try {
+            Object current = identityOf(path);
+            if (current == null) {
+                // 轮转时旧文件已改名、新文件尚未创建
+                return;
+            }
+            long size = Files.size(path);
+            if (!Objects.equals(current, identity) || size < offset) {
+                identity = current;
+                long[] loaded = {0};
+                deliver(() -> loaded[0] = listener.reset());
+                offset = loaded[0];
+                size = Files.size(path);
+            }
+            if (size == offset) return;
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (!stopped && offset < channel.size()) {
+                    buffer.clear();
+                    int read = channel.read(buffer, offset);
+                    if (read <= 0) break;
+                    int length = read;
+                    byte[] data = buffer.array();
+                    while (length > 0 && data[length - 1] != '\n') {
+                        length--;
+                    }
+                    if (length == 0) {
+                        // 最后一行还没写完，下次再读；超长的行只好分段交付
+                        if (read < MAX_BATCH_BYTES) break;
+                        length = read;
+                    }
+                    byte[] batch = Arrays.copyOf(data, length);
+                    offset += length;
+                    deliver(() -> listener.append(batch, batch.length));
+                }
+            }
+        } catch (NoSuchFileException ignored) {
+            // 轮转过程中文件暂时不存在
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // 等待界面处理完一批再读下一批，数据很多时不会在事件队列里堆积
+    private void deliver(Runnable action) {
+        if (stopped) return;
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                if (!stopped) {
+                    action.run();
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Windows 上没有 fileKey，用创建时间区分轮转前后的文件
+    private static Object identityOf(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.fileKey() != null ? attributes.fileKey() : attributes.creationTime();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
\ No newline at end of file
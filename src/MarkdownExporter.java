@@ -0,0 +1,353 @@
+import com.vladsch.flexmark.ast.*;
+import com.vladsch.flexmark.ext.gfm.strikethrough.Strikethrough;
+import com.vladsch.flexmark.ext.tables.TableBlock;
+import com.vladsch.flexmark.ext.tables.TableCell;
+import com.vladsch.flexmark.ext.tables.TableHead;
+import com.vladsch.flexmark.ext.tables.TableRow;
+import com.vladsch.flexmark.ext.tables.TableSeparator;
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Block;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.data.DataHolder;
+import org.apache.poi.xwpf.usermodel.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+// 把 Markdown 导出为 DOCX 或 PDF：在后台线程上解析一次，DOCX 沿 flexmark 语法树把标题、段落、列表、
+// 引用、代码块、表格和强调、链接等行内格式映射成 XWPF 的段落、表格和文字块；PDF 交给 flexmark-pdf-converter。
+// flexmark-pdf-converter 依赖的 openhtmltopdf、pdfbox 不在 lib 中时编译也无法通过，所以 PDF 转换经反射调用，缺少时不提供 PDF 导出。
+// 只持有调用方给的一份文本，语法树中的字符序列都引用这份文本，不再复制。写入经 SaveService 原子替换目标文件
+public class MarkdownExporter {
+    public enum Format { DOCX, PDF }
+
+    // 进度满值，解析完成前为 0，写出文件占最后一小段
+    public static final int PROGRESS_MAX = 1000;
+    private static final int[] HEADING_SIZES = {22, 18, 16, 14, 12, 11};
+    private static final String CODE_FONT = "Consolas";
+    private static final int CODE_SIZE = 10;
+    // 每级缩进 0.75 厘米，单位为 1/20 磅
+    private static final int INDENT_TWIPS = 425;
+    private static final String PDF_PAGE_START = "<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\"/>\n" +
+            "<style>body{font-family:'Microsoft YaHei',sans-serif;} pre,code{font-family:Consolas,monospace;}" +
+            " table{border-collapse:collapse;} th,td{border:1px solid #999; padding:4px 8px;}</style>\n" +
+            "</head>\n<body>\n";
+    private static final String PDF_PAGE_END = "\n</body>\n</html>";
+    private static final Method PDF_CONVERTER = findPdfConverter();
+
+    private final Parser parser;
+    private final HtmlRenderer renderer;
+    private final DataHolder options;
+    private final String text;
+    private final Format format;
+    private final Path target;
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private volatile int progress;
+    private volatile boolean cancelled;
+
+    public MarkdownExporter(DataHolder options, Parser parser, HtmlRenderer renderer, String text, Format format, Path target) {
+        this.options = options;
+        this.parser = parser;
+        this.renderer = renderer;
+        this.text = text;
+        this.format = format;
+        this.target = target;
+    }
+
+    // 在新的后台线程上导出；取消时 future 以 CancellationException 结束
+    public CompletableFuture<Void> start() {
+        Thread thread = new Thread(() -> {
+            try {
+                SaveService.writeAtomically(target, format == Format.DOCX ? this::writeDocx : this::writePdf);
+                future.complete(null);
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }, "markdown-export");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+
+    // PdfConverterExtension.exportToPdf(OutputStream, String, String, DataHolder)，缺少 openhtmltopdf 时为 null
+    private static Method findPdfConverter() {
+        try {
+            Class.forName("com.openhtmltopdf.pdfboxout.PdfRendererBuilder");
+            return Class.forName("com.vladsch.flexmark.pdf.converter.PdfConverterExtension")
+                    .getMethod("exportToPdf", OutputStream.class, String.class, String.class, DataHolder.class);
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            return null;
+        }
+    }
+
+    public static boolean isPdfAvailable() {
+        return PDF_CONVERTER != null;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private void checkCancelled() {
+        if (cancelled) throw new CancellationException("导出已取消");
+    }
+
+    // 按已处理到的源文本位置估计进度，留最后 10% 给写出文件
+    private void updateProgress(Node node) {
+        progress = (int) ((long) node.getEndOffset() * (PROGRESS_MAX * 9 / 10) / Math.max(1, text.length()));
+    }
+
+    private void writePdf(OutputStream out) throws IOException {
+        Document document = parser.parse(text);
+        checkCancelled();
+        progress = PROGRESS_MAX / 3;
+        String html = PDF_PAGE_START + renderer.render(document) + PDF_PAGE_END;
+        checkCancelled();
+        progress = PROGRESS_MAX / 2;
+        if (PDF_CONVERTER == null) throw new IOException("缺少 openhtmltopdf，无法导出 PDF");
+        try {
+            PDF_CONVERTER.invoke(null, out, html, "", options);
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+        progress = PROGRESS_MAX;
+    }
+
+    /* ---------------- DOCX ---------------- */
+
+    private void writeDocx(OutputStream out) throws IOException {
+        Document document = parser.parse(text);
+        try (XWPFDocument docx = new XWPFDocument()) {
+            for (Node node : document.getChildren()) {
+                checkCancelled();
+                writeBlock(docx, node, 0);
+                updateProgress(node);
+            }
+            checkCancelled();
+            docx.write(out);
+            progress = PROGRESS_MAX;
+        }
+    }
+
+    private void writeBlock(XWPFDocument docx, Node node, int indent) {
+        if (node instanceof Heading) {
+            Heading heading = (Heading) node;
+            XWPFParagraph paragraph = paragraph(docx, indent);
+            paragraph.setStyle("Heading" + heading.getLevel());
+            writeInlines(paragraph, heading, RunStyle.PLAIN.bold().size(HEADING_SIZES[heading.getLevel() - 1]));
+        } else if (node instanceof Paragraph) {
+            writeInlines(paragraph(docx, indent), node, RunStyle.PLAIN);
+        } else if (node instanceof BulletList) {
+            for (Node item : node.getChildren()) {
+                writeListItem(docx, item, indent, "• ");
+            }
+        } else if (node instanceof OrderedList) {
+            int number = ((OrderedList) node).getStartNumber();
+            for (Node item : node.getChildren()) {
+                writeListItem(docx, item, indent, (number++) + ". ");
+            }
+        } else if (node instanceof BlockQuote) {
+            for (Node child : node.getChildren()) {
+                writeBlock(docx, child, indent + 1);
+            }
+        } else if (node instanceof FencedCodeBlock || node instanceof IndentedCodeBlock) {
+            writeCode(paragraph(docx, indent), ((Block) node).getContentChars().toString());
+        } else if (node instanceof HtmlBlock) {
+            writeCode(paragraph(docx, indent), node.getChars().toString());
+        } else if (node instanceof ThematicBreak) {
+            paragraph(docx, indent).setBorderBottom(Borders.SINGLE);
+        } else if (node instanceof TableBlock) {
+            writeTable(docx, (TableBlock) node);
+        } else if (node instanceof Reference || node instanceof HtmlCommentBlock) {
+            // 链接引用定义和 HTML 注释不输出
+        } else if (node.hasChildren()) {
+            for (Node child : node.getChildren()) {
+                writeBlock(docx, child, indent);
+            }
+        } else if (!node.getChars().isBlank()) {
+            paragraph(docx, indent).createRun().setText(node.getChars().toString());
+        }
+    }
+
+    // 列表项的第一个段落前加项目符号或编号，其余内容（包括嵌套列表）多缩进一级
+    private void writeListItem(XWPFDocument docx, Node item, int indent, String marker) {
+        boolean first = true;
+        for (Node child : item.getChildren()) {
+            if (first && child instanceof Paragraph) {
+                XWPFParagraph paragraph = paragraph(docx, indent + 1);
+                paragraph.setIndentationHanging(INDENT_TWIPS / 2);
+                paragraph.createRun().setText(marker);
+                writeInlines(paragraph, child, RunStyle.PLAIN);
+            } else {
+                writeBlock(docx, child, indent + 1);
+            }
+            first = false;
+        }
+    }
+
+    private static void writeCode(XWPFParagraph paragraph, String code) {
+        XWPFRun run = paragraph.createRun();
+        run.setFontFamily(CODE_FONT);
+        run.setFontSize(CODE_SIZE);
+        String[] lines = code.split("\n", -1);
+        int count = lines.length;
+        // 末尾的换行不再多出一个空行
+        if (count > 1 && lines[count - 1].isEmpty()) count--;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) run.addBreak();
+            run.setText(lines[i].replace("\t", "    ").replace("\r", ""));
+        }
+    }
+
+    private void writeTable(XWPFDocument docx, TableBlock block) {
+        List<TableRow> rows = new ArrayList<>();
+        List<Boolean> headers = new ArrayList<>();
+        int columns = 1;
+        for (Node section : block.getChildren()) {
+            // 分隔行 |---| 只表示对齐方式，不导出
+            if (section instanceof TableSeparator) continue;
+            for (Node row : section.getChildren()) {
+                if (!(row instanceof TableRow)) continue;
+                rows.add((TableRow) row);
+                headers.add(section instanceof TableHead);
+                int cells = 0;
+                for (Node cell : row.getChildren()) {
+                    if (cell instanceof TableCell) cells++;
+                }
+                columns = Math.max(columns, cells);
+            }
+        }
+        if (rows.isEmpty()) return;
+
+        XWPFTable table = docx.createTable(rows.size(), columns);
+        for (int r = 0; r < rows.size(); r++) {
+            int c = 0;
+            for (Node node : rows.get(r).getChildren()) {
+                if (!(node instanceof TableCell)) continue;
+                TableCell cell = (TableCell) node;
+                XWPFParagraph paragraph = table.getRow(r).getCell(c++).getParagraphs().get(0);
+                if (cell.getAlignment() == TableCell.Alignment.CENTER) {
+                    paragraph.setAlignment(ParagraphAlignment.CENTER);
+                } else if (cell.getAlignment() == TableCell.Alignment.RIGHT) {
+                    paragraph.setAlignment(ParagraphAlignment.RIGHT);
+                }
+                writeInlines(paragraph, cell, headers.get(r) ? RunStyle.PLAIN.bold() : RunStyle.PLAIN);
+            }
+        }
+    }
+
+    private static XWPFParagraph paragraph(XWPFDocument docx, int indent) {
+        XWPFParagraph paragraph = docx.createParagraph();
+        if (indent > 0) {
+            paragraph.setIndentationLeft(indent * INDENT_TWIPS);
+        }
+        return paragraph;
+    }
+
+    /* ---------------- 行内格式 ---------------- */
+
+    private void writeInlines(XWPFParagraph paragraph, Node parent, RunStyle style) {
+        for (Node node : parent.getChildren()) {
+            writeInline(paragraph, node, style);
+        }
+    }
+
+    private void writeInline(XWPFParagraph paragraph, Node node, RunStyle style) {
+        if (node instanceof Text) {
+            style.run(paragraph, node.getChars().unescape());
+        } else if (node instanceof Code) {
+            style.code().run(paragraph, ((Code) node).getText().toString());
+        } else if (node instanceof Emphasis) {
+            writeInlines(paragraph, node, style.italic());
+        } else if (node instanceof StrongEmphasis) {
+            writeInlines(paragraph, node, style.bold());
+        } else if (node instanceof Strikethrough) {
+            writeInlines(paragraph, node, style.strike());
+        } else if (node instanceof Link) {
+            Link link = (Link) node;
+            writeLink(paragraph, link.getUrl().unescape(), link.getText().unescape(), style);
+        } else if (node instanceof AutoLink) {
+            AutoLink link = (AutoLink) node;
+            writeLink(paragraph, link.getUrl().unescape(), link.getText().unescape(), style);
+        } else if (node instanceof Image) {
+            style.italic().run(paragraph, "[图片：" + ((Image) node).getText().unescape() + "]");
+        } else if (node instanceof SoftLineBreak) {
+            style.run(paragraph, " ");
+        } else if (node instanceof HardLineBreak) {
+            paragraph.createRun().addBreak();
+        } else if (node instanceof HtmlInline || node instanceof HtmlInlineComment) {
+            // 行内 HTML 标签不输出，标签之间的文字仍按普通文字输出
+        } else if (node.hasChildren()) {
+            writeInlines(paragraph, node, style);
+        } else {
+            style.run(paragraph, node.getChars().unescape());
+        }
+    }
+
+    private static void writeLink(XWPFParagraph paragraph, String url, String text, RunStyle style) {
+        XWPFHyperlinkRun run = paragraph.createHyperlinkRun(url);
+        style.apply(run);
+        run.setColor("0563C1");
+        run.setUnderline(UnderlinePatterns.SINGLE);
+        run.setText(text.isEmpty() ? url : text);
+    }
+
+    // 行内格式，嵌套的强调等节点逐层叠加
+    private static class RunStyle {
+        static final RunStyle PLAIN = new RunStyle(false, false, false, false, 0);
+
+        final boolean bold;
+        final boolean italic;
+        final boolean strike;
+        final boolean code;
+        final int size;
+
+        RunStyle(boolean bold, boolean italic, boolean strike, boolean code, int size) {
+            this.bold = bold;
+            this.italic = italic;
+            this.strike = strike;
+            this.code = code;
+            this.size = size;
+        }
+
+        RunStyle bold() { return new RunStyle(true, italic, strike, code, size); }
+        RunStyle italic() { return new RunStyle(bold, true, strike, code, size); }
+        RunStyle strike() { return new RunStyle(bold, italic, true, code, size); }
+        RunStyle code() { return new RunStyle(bold, italic, strike, true, size); }
+        RunStyle size(int size) { return new RunStyle(bold, italic, strike, code, size); }
+
+        void run(XWPFParagraph paragraph, String text) {
+            if (text.isEmpty()) return;
+            XWPFRun run = paragraph.createRun();
+            apply(run);
+            run.setText(text);
+        }
+
+        void apply(XWPFRun run) {
+            if (bold) run.setBold(true);
+            if (italic) run.setItalic(true);
+            if (strike) run.setStrikeThrough(true);
+            if (code) run.setFontFamily(CODE_FONT);
+            if (size > 0) run.setFontSize(size);
+        }
+    }
+}
\ No newline at end of file
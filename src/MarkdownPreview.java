@@ -0,0 +1,136 @@
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultCaret;
+import javax.swing.text.Element;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.html.HTML;
+import javax.swing.text.html.HTMLDocument;
+import java.awt.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Markdown 预览窗格：每个顶层块包在一个 <div> 里，与 <body> 的子元素一一对应。
+// 更新时比较新旧块列表，去掉首尾相同的块，只替换中间变化的元素，
+// 不必重新解析整篇 HTML、重建全部视图，滚动位置也保持不变
+public class MarkdownPreview {
+    private static final String PAGE_START = "<html><head><style>body{font-family:'Microsoft YaHei',sans-serif; padding:20px;}</style></head><body>";
+    private static final String PAGE_END = "</body></html>";
+
+    private final JEditorPane pane;
+    // 当前显示的块，显示的是错误信息或尚未显示过时为 null
+    private List<String> shown;
+
+    public MarkdownPreview(JEditorPane pane) {
+        this.pane = pane;
+        // 文档变化时不要把视图滚到插入符处
+        ((DefaultCaret) pane.getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+    }
+
+    public void showBlocks(List<IncrementalMarkdownRenderer.Block> blocks) {
+        // 没有输出的块（如链接引用定义）不占元素
+        List<String> html = new ArrayList<>();
+        for (IncrementalMarkdownRenderer.Block block : blocks) {
+            if (!block.html.isEmpty()) {
+                html.add(block.html);
+            }
+        }
+        if (shown != null && patch(html)) {
+            shown = html;
+            return;
+        }
+        StringBuilder page = new StringBuilder(PAGE_START);
+        for (String block : html) {
+            appendBlock(page, block);
+        }
+        setPage(page.append(PAGE_END).toString());
+        shown = html;
+    }
+
+    public void showError(String message) {
+        setPage("<html><body style='color:red; font-family:Microsoft YaHei;'>" + message + "</body></html>");
+        shown = null;
+    }
+
+    // 就地修改文档；文档结构与块列表对应不上时（例如块里有不成对的 HTML 标签）返回 false，改为整篇重设
+    private boolean patch(List<String> html) {
+        HTMLDocument document = (HTMLDocument) pane.getDocument();
+        Element body = findBody(document);
+        if (!matchesBlocks(body, shown.size())) return false;
+
+        int prefix = 0;
+        int maxPrefix = Math.min(shown.size(), html.size());
+        while (prefix < maxPrefix && shown.get(prefix).equals(html.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < maxPrefix - prefix
+                && shown.get(shown.size() - 1 - suffix).equals(html.get(html.size() - 1 - suffix))) {
+            suffix++;
+        }
+        int removed = shown.size() - prefix - suffix;
+        List<String> added = html.subList(prefix, html.size() - suffix);
+        if (removed == 0 && added.isEmpty()) return true;
+
+        StringBuilder insertion = new StringBuilder();
+        for (String block : added) {
+            // 块里自带的 div 标签可能提前结束或延续外面的包装 <div>，单独解析片段与整篇解析的结果会不同
+            String lower = block.toLowerCase();
+            if (lower.contains("<div") || lower.contains("</div")) return false;
+            appendBlock(insertion, block);
+        }
+        try {
+            // 先删后插：从后往前删除多余的旧元素，保留第一个用来整体替换成新内容
+            for (int i = prefix + removed - 1; i >= prefix + (added.isEmpty() ? 0 : 1); i--) {
+                document.removeElement(body.getElement(i));
+            }
+            if (!added.isEmpty()) {
+                if (removed > 0) {
+                    document.setOuterHTML(body.getElement(prefix), insertion.toString());
+                } else if (prefix > 0) {
+                    document.insertAfterEnd(body.getElement(prefix - 1), insertion.toString());
+                } else {
+                    document.insertBeforeStart(body.getElement(0), insertion.toString());
+                }
+            }
+        } catch (BadLocationException | IOException | RuntimeException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return matchesBlocks(body, html.size());
+    }
+
+    // <body> 的子元素恰好是 count 个包装块的 <div>；空文档的 <body> 里只有一个隐含段落，没有可以定位的块
+    private static boolean matchesBlocks(Element body, int count) {
+        if (body == null || count == 0 || body.getElementCount() != count) return false;
+        for (int i = 0; i < count; i++) {
+            if (body.getElement(i).getAttributes().getAttribute(StyleConstants.NameAttribute) != HTML.Tag.DIV) return false;
+        }
+        return true;
+    }
+
+    private static Element findBody(HTMLDocument document) {
+        Element root = document.getDefaultRootElement();
+        for (int i = 0; i < root.getElementCount(); i++) {
+            Element element = root.getElement(i);
+            if (element.getAttributes().getAttribute(StyleConstants.NameAttribute) == HTML.Tag.BODY) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    private static void appendBlock(StringBuilder html, String block) {
+        html.append("<div>").append(block).append("</div>");
+    }
+
+    // 整篇重设时记住滚动位置，新视图布局完成后再恢复
+    private void setPage(String html) {
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, pane);
+        Point position = viewport != null ? viewport.getViewPosition() : null;
+        pane.setText(html);
+        if (position != null) {
+            SwingUtilities.invokeLater(() -> viewport.setViewPosition(position));
+        }
+    }
+}
\ No newline at end of file
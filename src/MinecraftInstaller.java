@@ -0,0 +1,207 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// 自行安装 Minecraft 版本：解析版本 JSON，得到客户端、依赖库和资源文件列表，去重后并行下载并校验
+public class MinecraftInstaller {
+    private static final String ASSET_BASE_URL = "https://resources.download.minecraft.net/";
+    // 每个主机的实际并发仍受 DownloadScheduler 的单主机连接数限制
+    private static final int POOL_SIZE = 16;
+    private static final int MAX_RETRIES = 3;
+    private static final long BASE_BACKOFF_MS = 500;
+
+    private final File gameDir;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ArtifactCache cache = ArtifactCache.getInstance();
+
+    // 进度计数，界面按固定频率采样
+    private final AtomicInteger totalFiles = new AtomicInteger();
+    private final AtomicInteger doneFiles = new AtomicInteger();
+    private final LongAdder totalBytes = new LongAdder();
+    private final LongAdder doneBytes = new LongAdder();
+    // 同一次安装中相同 SHA-1 只下载一次
+    private final Set<String> scheduledHashes = ConcurrentHashMap.newKeySet();
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean cancelled;
+
+    public MinecraftInstaller(File gameDir) {
+        this.gameDir = gameDir;
+    }
+
+    public int getTotalFiles() { return totalFiles.get(); }
+    public int getDoneFiles() { return doneFiles.get(); }
+    public long getTotalBytes() { return totalBytes.sum(); }
+    public long getDoneBytes() { return doneBytes.sum(); }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    // 阻塞直到安装完成；有文件失败时抛出异常，已成功的文件保留，重新安装会跳过它们
+    public void install(String versionId) throws IOException, InterruptedException {
+        JsonNode version = VersionIndex.getInstance().getVersionJson(versionId);
+        File versionDir = new File(gameDir, "versions/" + versionId);
+        versionDir.mkdirs();
+        objectMapper.writeValue(new File(versionDir, versionId + ".json"), version);
+
+        ExecutorService pool = Executors.newFixedThreadPool(POOL_SIZE, r -> {
+            Thread thread = new Thread(r, "minecraft-installer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            JsonNode client = version.path("downloads").path("client");
+            if (client.has("url")) {
+                submit(pool, futures, client, new File(versionDir, versionId + ".jar"));
+            }
+
+            for (JsonNode library : version.path("libraries")) {
+                if (!isAllowed(library.path("rules"))) {
+                    continue;
+                }
+                JsonNode downloads = library.path("downloads");
+                JsonNode artifact = downloads.path("artifact");
+                if (artifact.has("url") && artifact.has("path")) {
+                    submit(pool, futures, artifact, new File(gameDir, "libraries/" + artifact.path("path").asText()));
+                }
+                // 旧格式的本地库放在 classifiers 中
+                String classifier = library.path("natives").path(osName()).asText(null);
+                if (classifier != null) {
+                    classifier = classifier.replace("${arch}", System.getProperty("os.arch").contains("64") ? "64" : "32");
+                    JsonNode natives = downloads.path("classifiers").path(classifier);
+                    if (natives.has("url") && natives.has("path")) {
+                        submit(pool, futures, natives, new File(gameDir, "libraries/" + natives.path("path").asText()));
+                    }
+                }
+            }
+
+            // 资源索引本身很小，先取回再展开成数千个资源对象，与上面的下载并行进行
+            JsonNode assetIndex = version.path("assetIndex");
+            if (assetIndex.has("url")) {
+                File indexFile = new File(gameDir, "assets/indexes/" + assetIndex.path("id").asText() + ".json");
+                fetchWithRetry(assetIndex.path("url").asText(), assetIndex.path("sha1").asText(null), indexFile, true);
+                JsonNode objects = objectMapper.readTree(indexFile).path("objects");
+                objects.fields().forEachRemaining(entry -> {
+                    String hash = entry.getValue().path("hash").asText();
+                    long size = entry.getValue().path("size").asLong();
+                    String path = hash.substring(0, 2) + "/" + hash;
+                    submit(pool, futures, ASSET_BASE_URL + path, hash, size, new File(gameDir, "assets/objects/" + path), false);
+                });
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause().getMessage());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (cancelled) {
+            throw new IOException("安装已取消");
+        }
+        if (!failures.isEmpty()) {
+            throw new IOException(failures.size() + " 个文件下载失败，例如: " + failures.get(0));
+        }
+    }
+
+    private void submit(ExecutorService pool, List<Future<?>> futures, JsonNode download, File target) {
+        submit(pool, futures, download.path("url").asText(), download.path("sha1").asText(null),
+                download.path("size").asLong(0), target, true);
+    }
+
+    // viaCache 为 false 时直接下载到 target：资源文件在游戏目录里本身就按哈希存放，不再在缓存里多存一份
+    private void submit(ExecutorService pool, List<Future<?>> futures, String url, String sha1, long size, File target,
+                        boolean viaCache) {
+        if (sha1 != null && !scheduledHashes.add(sha1 + target.getPath())) {
+            return;
+        }
+        totalFiles.incrementAndGet();
+        totalBytes.add(size);
+        futures.add(pool.submit(() -> {
+            if (cancelled) {
+                return null;
+            }
+            // 目标文件已存在且大小一致则视为已安装，避免每次安装都重读所有文件
+            if (!target.isFile() || (size > 0 && target.length() != size)) {
+                fetchWithRetry(url, sha1, target, viaCache);
+            }
+            doneFiles.incrementAndGet();
+            doneBytes.add(size);
+            return null;
+        }));
+    }
+
+    // 经缓存时按 SHA-1 先查本地缓存，未命中才下载，最后复制到 target；下载时都边写边校验
+    private void fetchWithRetry(String url, String sha1, File target, boolean viaCache) throws IOException, InterruptedException {
+        IOException last = null;
+        for (int attempt = 0; attempt <= MAX_RETRIES && !cancelled; attempt++) {
+            if (attempt > 0) {
+                Thread.sleep(BASE_BACKOFF_MS << (attempt - 1));
+            }
+            try {
+                if (viaCache) {
+                    cache.fetchTo(new URL(url), sha1, target);
+                } else {
+                    cache.download(new URL(url), sha1, target);
+                }
+                return;
+            } catch (IOException e) {
+                last = e;
+            }
+        }
+        throw last != null ? new IOException(url + ": " + last.getMessage(), last) : new IOException("安装已取消");
+    }
+
+    // Mojang 规则：没有规则即允许；否则按顺序匹配，最后一条匹配的规则决定结果
+    private static boolean isAllowed(JsonNode rules) {
+        if (!rules.isArray() || rules.size() == 0) {
+            return true;
+        }
+        boolean allowed = false;
+        for (JsonNode rule : rules) {
+            JsonNode os = rule.path("os");
+            if (os.has("name") && !os.path("name").asText().equals(osName())) {
+                continue;
+            }
+            if (os.has("arch") && !System.getProperty("os.arch").contains(os.path("arch").asText())) {
+                continue;
+            }
+            if (rule.has("features")) {
+                continue;
+            }
+            allowed = "allow".equals(rule.path("action").asText());
+        }
+        return allowed;
+    }
+
+    private static String osName() {
+        String name = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+        if (name.contains("win")) {
+            return "windows";
+        }
+        if (name.contains("mac")) {
+            return "osx";
+        }
+        return "linux";
+    }
+}
\ No newline at end of file
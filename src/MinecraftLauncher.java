@@ -6,6 +6,7 @@ import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
 
 public class MinecraftLauncher extends JFrame {
     private JButton findLauncherButton;
@@ -87,31 +88,53 @@ public class MinecraftLauncher extends JFrame {
         String downloadUrl = "https://files.moerain.cn/f/3Nc9/HMCL-3.6.11.jar";
         String destinationPath = System.getProperty("user.home") + "/Downloads/HMCL-3.6.11.jar";
 
-        try {
-            URL url = new URL(downloadUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.connect();
-
-            int responseCode = connection.getResponseCode();
-            if (responseCode == 200) {
-                try (InputStream in = connection.getInputStream();
-                     OutputStream out = new FileOutputStream(destinationPath)) {
-                    byte[] buffer = new byte[4096];
-                    int bytesRead;
-                    while ((bytesRead = in.read(buffer)) != -1) {
-                        out.write(buffer, 0, bytesRead);
-                    }
+        // 获取可能要排队等待其他下载让出连接，放到后台进行，完成后再回到界面线程启动
+        downloadHMCLButton.setEnabled(false);
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                // 通过本地缓存获取：未变化时只发一次条件请求，离线时直接使用缓存
+                ArtifactCache cache = ArtifactCache.getInstance();
+                String expectedHash = cache.lookup(downloadUrl) == null ? fetchPublishedSha1(downloadUrl) : null;
+                cache.fetchTo(new URL(downloadUrl), expectedHash, new File(destinationPath));
+                return null;
+            }
 
+            @Override
+            protected void done() {
+                downloadHMCLButton.setEnabled(true);
+                try {
+                    get();
                     // Launch HMCL with log window
                     launchHMCLWithLog(destinationPath);
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(MinecraftLauncher.this, "下载失败: " + cause.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
+                    cause.printStackTrace();
                 }
-            } else {
-                JOptionPane.showMessageDialog(this, "下载失败，响应码: " + responseCode, "错误", JOptionPane.ERROR_MESSAGE);
             }
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "下载失败: " + e.getMessage(), "错误", JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
+        };
+        worker.execute();
+    }
+
+    // 读取与文件同目录发布的 .sha1 校验文件，没有发布时返回 null
+    private String fetchPublishedSha1(String downloadUrl) {
+        try {
+            HttpURLConnection connection = DownloadEngine.openConnection(new URL(downloadUrl + ".sha1"));
+            connection.setRequestMethod("GET");
+            if (connection.getResponseCode() != 200) {
+                return null;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+                String line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+                String hash = line.trim().split("\\s+")[0];
+                return hash.matches("[0-9a-fA-F]{40}") ? hash : null;
+            }
+        } catch (IOException e) {
+            return null;
         }
     }
 
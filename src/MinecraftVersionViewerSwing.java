@@ -1,22 +1,49 @@
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.net.HttpURLConnection;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.net.URL;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.File;
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.Vector;
 
 public class MinecraftVersionViewerSwing extends JFrame {
     private JButton refreshButton;
     private JTable tableView;
     private JTextArea detailView;
     private JLabel statusLabel;
+    private JTextField librarySearchField;
+    private JButton installButton;
+    private JProgressBar installProgressBar;
+    private JButton cancelInstallButton;
+    // 正在进行的安装，没有时为 null；只在 EDT 上修改
+    private MinecraftInstaller currentInstaller;
+    private final VersionIndex versionIndex = VersionIndex.getInstance();
+    // 每次载入递增，旧的载入结果到达 EDT 时直接丢弃；只在 EDT 上修改
+    private int loadGeneration;
+
+    // v2 清单为每个版本附带 SHA-1，版本 JSON 可直接按哈希命中本地缓存
+    private static final String MANIFEST_URL = "https://piston-meta.mojang.com/mc/game/version_manifest_v2.json";
+    // 选中某个版本时同时预取上下相邻的版本
+    private static final int PREFETCH_NEIGHBOURS = 3;
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final DateTimeFormatter OUTPUT_FORMAT = DateTimeFormatter.ofPattern("yyyy年MM月dd日HH点mm分");
+    private static final ZoneOffset DISPLAY_ZONE = ZoneOffset.ofHours(8);
+    private static final int ROW_BATCH = 200;
 
     public MinecraftVersionViewerSwing() {
         super("Minecraft 版本查看器");
@@ -35,6 +62,11 @@ public class MinecraftVersionViewerSwing extends JFrame {
         // Layout
         JPanel northPanel = new JPanel();
         northPanel.add(refreshButton);
+        northPanel.add(new JLabel("搜索依赖库:"));
+        librarySearchField = new JTextField(20);
+        northPanel.add(librarySearchField);
+        installButton = new JButton("安装所选版本");
+        northPanel.add(installButton);
 
         JScrollPane tableScrollPane = new JScrollPane(tableView);
         JScrollPane detailScrollPane = new JScrollPane(detailView);
@@ -48,56 +80,187 @@ public class MinecraftVersionViewerSwing extends JFrame {
 
         add(northPanel, BorderLayout.NORTH);
         add(splitPane, BorderLayout.CENTER);
-        add(statusLabel, BorderLayout.SOUTH);
+        installProgressBar = new JProgressBar(0, 1000);
+        installProgressBar.setStringPainted(true);
+        installProgressBar.setVisible(false);
+        cancelInstallButton = new JButton("取消安装");
+        cancelInstallButton.setVisible(false);
+        JPanel installPanel = new JPanel(new BorderLayout());
+        installPanel.add(installProgressBar, BorderLayout.CENTER);
+        installPanel.add(cancelInstallButton, BorderLayout.EAST);
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(statusLabel, BorderLayout.CENTER);
+        southPanel.add(installPanel, BorderLayout.EAST);
+        add(southPanel, BorderLayout.SOUTH);
 
         // Event handlers
         refreshButton.addActionListener(e -> loadVersions());
+        librarySearchField.addActionListener(e -> searchLibraries());
+        installButton.addActionListener(e -> installSelectedVersion());
+        cancelInstallButton.addActionListener(e -> cancelInstall());
+        // 关闭窗口时停止还在进行的安装，不让下载线程在后台继续跑
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                cancelInstall();
+            }
+        });
         tableView.getSelectionModel().addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 showVersionDetails();
             }
         });
+
+        // 打开窗口时立即从缓存显示版本列表
+        loadVersions();
     }
 
     private void loadVersions() {
-        statusLabel.setText("状态：正在下载元文件");
+        int generation = ++loadGeneration;
+        statusLabel.setText("状态：正在读取缓存");
         new Thread(() -> {
+            ArtifactCache cache = ArtifactCache.getInstance();
+            File shown = null;
             try {
-                String url = "https://launchermeta.mojang.com/mc/game/version_manifest.json";
-                HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
-                connection.setRequestMethod("GET");
-                connection.connect();
-
-                ObjectMapper objectMapper = new ObjectMapper();
-                JsonNode rootNode = objectMapper.readTree(connection.getInputStream());
-                JsonNode versionsNode = rootNode.path("versions");
-
-                DefaultTableModel model = (DefaultTableModel) tableView.getModel();
-                model.setRowCount(0);
-
-                for (JsonNode versionNode : versionsNode) {
-                    String id = versionNode.path("id").asText();
-                    String type = versionNode.path("type").asText();
-                    String releaseTime = versionNode.path("releaseTime").asText();
-
-                    // Convert releaseTime to UTC+8
-                    SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssX");
-                    SimpleDateFormat outputFormat = new SimpleDateFormat("yyyy年MM月dd日HH点mm分");
-                    outputFormat.setTimeZone(TimeZone.getTimeZone("UTC+8"));
-                    Date date = inputFormat.parse(releaseTime);
-                    String formattedReleaseTime = outputFormat.format(date);
-
-                    model.addRow(new Object[]{id, getTypeDescription(type), formattedReleaseTime});
+                // 先显示磁盘缓存，再带条件头向服务器确认；未变化时不会重新下载和解析
+                ArtifactCache.Entry entry = cache.lookup(MANIFEST_URL);
+                Integer cachedCount = entry == null ? null
+                        : cache.withObject(entry.sha1, object -> showManifest(object, generation));
+                if (cachedCount != null) {
+                    shown = cache.objectFile(entry.sha1);
+                    setStatus(generation, "状态：已从缓存载入 " + cachedCount + " 个版本，正在检查更新");
+                } else {
+                    setStatus(generation, "状态：正在下载元文件");
                 }
 
-                statusLabel.setText("状态：版本载入完成！");
+                // 内容未变时得到的是同一个对象，返回 -1 表示不必重新解析
+                File cachedFile = shown;
+                int count = cache.fetch(new URL(MANIFEST_URL), null,
+                        fresh -> fresh.equals(cachedFile) ? -1 : showManifest(fresh, generation));
+                if (count >= 0) {
+                    setStatus(generation, "状态：版本载入完成！共 " + count + " 个版本");
+                } else {
+                    setStatus(generation, "状态：版本载入完成！已是最新");
+                }
             } catch (Exception e) {
-                statusLabel.setText("状态: 错误 - " + e.getMessage());
-                JOptionPane.showMessageDialog(this, "无法加载版本信息，请检查链接的合法性或稍后重试。\n链接: " , "错误", JOptionPane.ERROR_MESSAGE);
+                if (shown != null) {
+                    setStatus(generation, "状态: 无法检查更新，显示的是缓存 - " + e.getMessage());
+                    return;
+                }
+                setStatus(generation, "状态: 错误 - " + e.getMessage());
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                        "无法加载版本信息，请检查链接的合法性或稍后重试。\n链接: " + MANIFEST_URL, "错误", JOptionPane.ERROR_MESSAGE));
             }
         }).start();
     }
 
+    // 用流式解析读取 versions 数组，每攒够一批行就在 EDT 上一次性插入表格
+    private int showManifest(File manifest, int generation) throws IOException {
+        SwingUtilities.invokeLater(() -> {
+            if (generation == loadGeneration) {
+                ((DefaultTableModel) tableView.getModel()).setRowCount(0);
+            }
+        });
+
+        List<Object[]> batch = new ArrayList<>(ROW_BATCH);
+        int count = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(manifest)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("元文件格式错误");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (!"versions".equals(field) || parser.currentToken() != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    String id = null;
+                    String type = null;
+                    String releaseTime = null;
+                    String url = null;
+                    String sha1 = null;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.getCurrentName();
+                        parser.nextToken();
+                        switch (name) {
+                            case "id":
+                                id = parser.getText();
+                                break;
+                            case "type":
+                                type = parser.getText();
+                                break;
+                            case "releaseTime":
+                                releaseTime = parser.getText();
+                                break;
+                            case "url":
+                                url = parser.getText();
+                                break;
+                            case "sha1":
+                                sha1 = parser.getText();
+                                break;
+                            default:
+                                parser.skipChildren();
+                                break;
+                        }
+                    }
+                    if (id != null && url != null) {
+                        versionIndex.register(id, url, sha1);
+                    }
+                    batch.add(new Object[]{id, getTypeDescription(type), formatReleaseTime(releaseTime)});
+                    count++;
+                    if (batch.size() == ROW_BATCH) {
+                        appendRows(batch, generation);
+                        batch = new ArrayList<>(ROW_BATCH);
+                    }
+                }
+            }
+        }
+        appendRows(batch, generation);
+        return count;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void appendRows(List<Object[]> rows, int generation) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (generation != loadGeneration) {
+                return;
+            }
+            DefaultTableModel model = (DefaultTableModel) tableView.getModel();
+            int first = model.getRowCount();
+            Vector<Vector> data = model.getDataVector();
+            for (Object[] row : rows) {
+                data.add(new Vector<>(Arrays.asList(row)));
+            }
+            // 整批只触发一次表格事件
+            model.fireTableRowsInserted(first, first + rows.size() - 1);
+        });
+    }
+
+    private void setStatus(int generation, String text) {
+        SwingUtilities.invokeLater(() -> {
+            if (generation == loadGeneration) {
+                statusLabel.setText(text);
+            }
+        });
+    }
+
+    // releaseTime 形如 2024-06-13T08:24:03+00:00，转换为 UTC+8 显示
+    private static String formatReleaseTime(String releaseTime) {
+        if (releaseTime == null) {
+            return "";
+        }
+        try {
+            return OffsetDateTime.parse(releaseTime).atZoneSameInstant(DISPLAY_ZONE).format(OUTPUT_FORMAT);
+        } catch (DateTimeParseException e) {
+            return releaseTime;
+        }
+    }
+
     private String getTypeDescription(String type) {
         switch (type) {
             case "snapshot":
@@ -121,8 +284,151 @@ public class MinecraftVersionViewerSwing extends JFrame {
             String releaseTime = tableView.getValueAt(selectedRow, 2).toString();
 
             String details = String.format("版本号: %s\n发布类型: %s\n发布日期: %s", versionId, versionType, releaseTime);
-            detailView.setText(details);
+            VersionIndex.VersionInfo info = versionIndex.getSummary(versionId);
+            if (info != null) {
+                detailView.setText(details + formatVersionInfo(info));
+            } else {
+                detailView.setText(details + "\n\n正在载入版本详情...");
+                versionIndex.load(versionId).whenComplete((loaded, error) -> SwingUtilities.invokeLater(() -> {
+                    // 只在用户仍停留在该版本时更新
+                    int row = tableView.getSelectedRow();
+                    if (row < 0 || !versionId.equals(tableView.getValueAt(row, 0))) {
+                        return;
+                    }
+                    if (loaded != null) {
+                        detailView.setText(details + formatVersionInfo(loaded));
+                    } else {
+                        detailView.setText(details + "\n\n无法载入版本详情: " + error.getMessage());
+                    }
+                }));
+            }
+
+            List<String> neighbours = new ArrayList<>();
+            for (int offset = 1; offset <= PREFETCH_NEIGHBOURS; offset++) {
+                if (selectedRow - offset >= 0) {
+                    neighbours.add(tableView.getValueAt(selectedRow - offset, 0).toString());
+                }
+                if (selectedRow + offset < tableView.getRowCount()) {
+                    neighbours.add(tableView.getValueAt(selectedRow + offset, 0).toString());
+                }
+            }
+            versionIndex.prefetch(neighbours);
+        }
+    }
+
+    private static String formatVersionInfo(VersionIndex.VersionInfo info) {
+        StringBuilder sb = new StringBuilder("\n");
+        sb.append(String.format("\n主类: %s", info.mainClass));
+        if (info.javaVersion > 0) {
+            sb.append(String.format("\nJava 版本: %d", info.javaVersion));
+        }
+        sb.append(String.format("\n资源索引: %s (%s)", info.assetIndex, formatSize(info.assetsSize)));
+        sb.append(String.format("\n客户端: %s", formatSize(info.clientSize)));
+        if (info.serverSize > 0) {
+            sb.append(String.format("\n服务端: %s", formatSize(info.serverSize)));
+        }
+        sb.append(String.format("\n依赖库: %d 个, 共 %s", info.libraries.size(), formatSize(info.librariesSize)));
+        for (VersionIndex.LibraryInfo lib : info.libraries) {
+            sb.append("\n  ").append(lib.name);
+        }
+        return sb.toString();
+    }
+
+    // 在已索引的版本里查找使用某个库的版本，不需要重新解析 JSON
+    private void searchLibraries() {
+        String query = librarySearchField.getText().trim();
+        if (query.isEmpty()) {
+            return;
+        }
+        SortedMap<String, SortedSet<String>> result = versionIndex.findLibraries(query);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("在 %d 个已索引版本中搜索 \"%s\"，找到 %d 个库\n", versionIndex.getIndexedCount(), query, result.size()));
+        for (Map.Entry<String, SortedSet<String>> entry : result.entrySet()) {
+            sb.append("\n").append(entry.getKey()).append("\n  ").append(String.join(", ", entry.getValue()));
+        }
+        detailView.setText(sb.toString());
+        detailView.setCaretPosition(0);
+    }
+
+    // 直接安装所选版本到游戏目录，不再经过 HMCL
+    private void installSelectedVersion() {
+        int selectedRow = tableView.getSelectedRow();
+        if (selectedRow < 0) {
+            JOptionPane.showMessageDialog(this, "请先选择一个版本", "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String versionId = tableView.getValueAt(selectedRow, 0).toString();
+
+        JFileChooser chooser = new JFileChooser(defaultGameDir());
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        chooser.setDialogTitle("选择游戏目录 (.minecraft)");
+        chooser.setSelectedFile(defaultGameDir());
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File gameDir = chooser.getSelectedFile();
+
+        MinecraftInstaller installer = new MinecraftInstaller(gameDir);
+        currentInstaller = installer;
+        installButton.setEnabled(false);
+        installProgressBar.setValue(0);
+        installProgressBar.setVisible(true);
+        cancelInstallButton.setEnabled(true);
+        cancelInstallButton.setVisible(true);
+        revalidate();
+        Timer progressTimer = new Timer(200, e -> {
+            long total = installer.getTotalBytes();
+            installProgressBar.setValue(total > 0 ? (int) (installer.getDoneBytes() * 1000 / total) : 0);
+            installProgressBar.setString(String.format("%d/%d 个文件, %s/%s", installer.getDoneFiles(),
+                    installer.getTotalFiles(), formatSize(installer.getDoneBytes()), formatSize(total)));
+        });
+        progressTimer.start();
+        statusLabel.setText("状态：正在安装 " + versionId);
+
+        new Thread(() -> {
+            long start = System.currentTimeMillis();
+            String result;
+            try {
+                installer.install(versionId);
+                result = String.format("状态：%s 安装完成，用时 %.1f 秒", versionId, (System.currentTimeMillis() - start) / 1000.0);
+            } catch (Exception e) {
+                e.printStackTrace();
+                result = "状态: 安装失败 - " + e.getMessage();
+            }
+            String message = result;
+            SwingUtilities.invokeLater(() -> {
+                progressTimer.stop();
+                installProgressBar.setVisible(false);
+                cancelInstallButton.setVisible(false);
+                installButton.setEnabled(true);
+                currentInstaller = null;
+                statusLabel.setText(message);
+            });
+        }, "minecraft-install-" + versionId).start();
+    }
+
+    // 已开始的文件下载完当前这一个后停止，尚未开始的不再下载
+    private void cancelInstall() {
+        if (currentInstaller != null) {
+            currentInstaller.cancel();
+            cancelInstallButton.setEnabled(false);
+            statusLabel.setText("状态：正在取消安装…");
+        }
+    }
+
+    private static File defaultGameDir() {
+        String appData = System.getenv("APPDATA");
+        if (appData != null) {
+            return new File(appData, ".minecraft");
+        }
+        return new File(System.getProperty("user.home"), ".minecraft");
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes >= 1024 * 1024) {
+            return String.format("%.1f MB", bytes / 1048576.0);
         }
+        return String.format("%.1f KB", bytes / 1024.0);
     }
 
     public static void main(String[] args) {
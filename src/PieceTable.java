@@ -0,0 +1,632 @@
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 大文件的文档模型：原文件只读打开，插入的内容追加到一块缓冲区，文档由指向两者的片段依次拼成。
+// 原文件按位置分块读取，只缓存最近用到的几块；不做内存映射，因为 Windows 上被映射的文件不能被替换、改名或删除，
+// 原地保存和日志轮转都会失败。FileChannel 在 Windows 上以允许删除的共享方式打开，不妨碍这些操作。
+// 行索引由后台线程扫描换行符建立，每 CHECKPOINT_LINES 行记录一次行首位置，
+// 因此内存占用只与修改量和行数 / CHECKPOINT_LINES 有关。位置均为 UTF-8 字节偏移。
+// 跟踪日志时文件末尾新增的内容已经在文件里，片段直接指向原文件超出打开时长度的部分，不复制到内存。
+// 除后台建索引外，所有方法只在事件分发线程上调用；索引建好之前文档只读
+public class PieceTable {
+    private static final int CHECKPOINT_LINES = 1024;
+    private static final int SCAN_BUFFER_SIZE = 1 << 20;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int CACHED_BLOCKS = 16;
+    // 单行最多读取的字节数，更长的行显示时截断
+    public static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private final File file;
+    private final long originalLength;
+    // 片段可以引用的原文件长度：打开时的长度加上 append 追加的部分，只在事件分发线程上访问
+    private long fileLength;
+    private final FileChannel channel;
+    // 最近读取的原文件块：块号 -> 内容，按访问顺序淘汰
+    private final Map<Long, byte[]> blocks = new LinkedHashMap<Long, byte[]>(CACHED_BLOCKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+    private long lastBlockIndex = -1;
+    private byte[] lastBlock;
+    // 已取出但还没写完的快照数，由 this 保护；关闭时等它们写完再关闭文件
+    private int pendingSnapshots;
+    private long editCount;
+    private byte[] added = new byte[4096];
+    private int addedLength;
+    private final List<Piece> pieces = new ArrayList<>();
+    private long length;
+    private long newlines;
+    private boolean modified;
+
+    // 行索引：checkpoints[i] 为原文件第 i * CHECKPOINT_LINES 行（从 0 开始）的行首偏移
+    private final Object indexLock = new Object();
+    private long[] checkpoints = new long[64];
+    private int checkpointCount;
+    private volatile long scannedBytes;
+    private volatile long scannedLines;
+    private volatile boolean indexComplete;
+    private volatile boolean closed;
+    private volatile Runnable indexListener;
+    // 原文件打开时长度以内的换行数，索引建好后才有值
+    private long originalNewlines;
+    // append 追加部分的索引：tailCheckpoints[i] 为追加部分第 i * CHECKPOINT_LINES 个换行之后的偏移
+    private long[] tailCheckpoints = new long[16];
+    private int tailCheckpointCount;
+    private long tailNewlines;
+
+    // 一个片段：added 为 true 时指向追加缓冲区，否则指向原文件
+    private static class Piece {
+        final boolean added;
+        final long start;
+        final long length;
+        long newlines;
+
+        Piece(boolean added, long start, long length, long newlines) {
+            this.added = added;
+            this.start = start;
+            this.length = length;
+            this.newlines = newlines;
+        }
+    }
+
+    // 读取到的一行：text 不含换行符，byteOffsets[i] 为第 i 个字符在行内的字节偏移（长度为 text.length() + 1）
+    public static class Line {
+        public final String text;
+        public final int[] byteOffsets;
+        public final boolean truncated;
+
+        Line(String text, int[] byteOffsets, boolean truncated) {
+            this.text = text;
+            this.byteOffsets = byteOffsets;
+            this.truncated = truncated;
+        }
+    }
+
+    public PieceTable(File file) throws IOException {
+        this.file = file;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            originalLength = channel.size();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        length = originalLength;
+        fileLength = originalLength;
+        tailCheckpoints[tailCheckpointCount++] = originalLength;
+        if (originalLength > 0) {
+            pieces.add(new Piece(false, 0, originalLength, 0));
+        }
+        checkpoints[checkpointCount++] = 0;
+
+        Thread indexer = new Thread(this::buildIndex, "line-index-" + file.getName());
+        indexer.setDaemon(true);
+        indexer.setPriority(Thread.NORM_PRIORITY - 1);
+        indexer.start();
+    }
+
+    public File getFile() { return file; }
+    public long length() { return length; }
+    public boolean isIndexComplete() { return indexComplete; }
+    // 是否被 insert、delete 修改过；append 追加文件新增的内容不算修改
+    public boolean isModified() { return modified; }
+    // 每次 insert、delete 加一，用来判断保存期间是否又有修改
+    public long getEditCount() { return editCount; }
+
+    // 建索引的进度，0 到 1
+    public double getIndexProgress() {
+        return originalLength == 0 ? 1 : (double) scannedBytes / originalLength;
+    }
+
+    // 索引有进展或建好时在事件分发线程上调用
+    public void setIndexListener(Runnable listener) {
+        this.indexListener = listener;
+    }
+
+    // 停止建索引并关闭原文件；还有快照没写完时等写完再关闭
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            if (pendingSnapshots == 0) {
+                closeChannel();
+            }
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /* ---------------- 行索引 ---------------- */
+
+    private void buildIndex() {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        long lines = 0;
+        long position = 0;
+        long lastNotify = System.currentTimeMillis();
+        try {
+            while (position < originalLength && !closed) {
+                buffer.clear().limit((int) Math.min(SCAN_BUFFER_SIZE, originalLength - position));
+                int count = channel.read(buffer, position);
+                // 文件在打开之后被截断
+                if (count < 0) break;
+                for (int i = 0; i < count; i++) {
+                    if (bytes[i] == '\n' && ++lines % CHECKPOINT_LINES == 0) {
+                        addCheckpoint(position + i + 1);
+                    }
+                }
+                position += count;
+                synchronized (indexLock) {
+                    scannedLines = lines;
+                    scannedBytes = position;
+                }
+                if (System.currentTimeMillis() - lastNotify > 200) {
+                    lastNotify = System.currentTimeMillis();
+                    notifyIndexListener();
+                }
+            }
+        } catch (IOException e) {
+            // 关闭时正在读取会抛出 ClosedChannelException
+            if (!closed) e.printStackTrace();
+            return;
+        }
+        if (closed) return;
+        long total = lines;
+        SwingUtilities.invokeLater(() -> {
+            // 索引建好之前不允许修改，此时原文件只有开头一个片段，后面可能有 append 追加的片段
+            if (originalLength > 0) {
+                pieces.get(0).newlines = total;
+            }
+            originalNewlines = total;
+            newlines += total;
+            indexComplete = true;
+        });
+        notifyIndexListener();
+    }
+
+    private void addCheckpoint(long offset) {
+        synchronized (indexLock) {
+            if (checkpointCount == checkpoints.length) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+            }
+            checkpoints[checkpointCount++] = offset;
+        }
+    }
+
+    private void notifyIndexListener() {
+        Runnable listener = indexListener;
+        if (listener != null) {
+            SwingUtilities.invokeLater(listener);
+        }
+    }
+
+    // 只在事件分发线程上调用；连续读取同一块时不查表
+    private byte originalByte(long position) {
+        long index = position / BLOCK_SIZE;
+        if (index != lastBlockIndex) {
+            byte[] block = blocks.get(index);
+            if (block == null) {
+                block = readBlock(index);
+                blocks.put(index, block);
+            }
+            lastBlockIndex = index;
+            lastBlock = block;
+        }
+        int offset = (int) (position % BLOCK_SIZE);
+        // 文件在打开之后被截断时读不满，缺少的部分当作 0
+        return offset < lastBlock.length ? lastBlock[offset] : 0;
+    }
+
+    private byte[] readBlock(long index) {
+        long start = index * BLOCK_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BLOCK_SIZE, fileLength - start));
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) break;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.position() == buffer.capacity() ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    // 原文件 [0, position) 中的换行数，position 不超过已扫描的范围
+    private long originalNewlinesBefore(long position) {
+        int index;
+        long start;
+        synchronized (indexLock) {
+            index = Arrays.binarySearch(checkpoints, 0, checkpointCount, position);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            start = checkpoints[index];
+        }
+        long count = (long) index * CHECKPOINT_LINES;
+        for (long p = start; p < position; p++) {
+            if (originalByte(p) == '\n') count++;
+        }
+        return count;
+    }
+
+    // 原文件第 line 行的行首偏移，line 不超过已扫描的行数
+    private long originalLineStart(long line) {
+        long position;
+        synchronized (indexLock) {
+            position = checkpoints[(int) (line / CHECKPOINT_LINES)];
+        }
+        return skipLines(position, line % CHECKPOINT_LINES);
+    }
+
+    // 包括追加部分在内的原文件 [0, position) 中的换行数，只在索引建好之后调用
+    private long fileNewlinesBefore(long position) {
+        if (position <= originalLength) {
+            return originalNewlinesBefore(position);
+        }
+        int index = Arrays.binarySearch(tailCheckpoints, 0, tailCheckpointCount, position);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        long count = originalNewlines + (long) index * CHECKPOINT_LINES;
+        for (long p = tailCheckpoints[index]; p < position; p++) {
+            if (originalByte(p) == '\n') count++;
+        }
+        return count;
+    }
+
+    // 包括追加部分在内的原文件第 line 行的行首偏移，只在索引建好之后调用
+    private long fileLineStart(long line) {
+        if (line <= originalNewlines) {
+            return originalLineStart(line);
+        }
+        long tailLine = line - originalNewlines;
+        return skipLines(tailCheckpoints[(int) (tailLine / CHECKPOINT_LINES)], tailLine % CHECKPOINT_LINES);
+    }
+
+    private long skipLines(long position, long remaining) {
+        while (remaining > 0) {
+            if (originalByte(position++) == '\n') remaining--;
+        }
+        return position;
+    }
+
+    /* ---------------- 按行读取 ---------------- */
+
+    // 索引建好之前按已扫描部分的平均行长估计原文件的行数，此时 newlines 只含追加内容中的换行
+    public long lineCount() {
+        if (indexComplete) {
+            return newlines + 1;
+        }
+        long bytes = scannedBytes;
+        long lines = scannedLines;
+        if (bytes == 0 || lines == 0) {
+            return Math.max(1, originalLength / 80) + newlines;
+        }
+        return lines + (long) ((double) (originalLength - bytes) * lines / bytes) + newlines + 1;
+    }
+
+    // 第 line 行的行首偏移；索引尚未扫描到该行时按平均行长估计位置，再对齐到下一行的行首
+    public long lineStart(long line) {
+        if (line <= 0) return 0;
+        if (!indexComplete) {
+            long lines;
+            long bytes;
+            synchronized (indexLock) {
+                lines = scannedLines;
+                bytes = scannedBytes;
+            }
+            if (line <= lines) {
+                return originalLineStart(line);
+            }
+            long estimate = bytes + (long) ((double) (line - lines) * bytes / Math.max(1, lines));
+            if (estimate >= originalLength) return originalLength;
+            long limit = Math.min(originalLength, estimate + MAX_LINE_BYTES);
+            for (long p = estimate; p < limit; p++) {
+                if (originalByte(p) == '\n') return p + 1;
+            }
+            return estimate;
+        }
+
+        long position = 0;
+        long remaining = line;
+        for (Piece piece : pieces) {
+            if (piece.newlines < remaining) {
+                remaining -= piece.newlines;
+                position += piece.length;
+                continue;
+            }
+            if (piece.added) {
+                for (int p = (int) piece.start; ; p++) {
+                    if (added[p] == '\n' && --remaining == 0) {
+                        return position + p + 1 - piece.start;
+                    }
+                }
+            }
+            long start = fileLineStart(fileNewlinesBefore(piece.start) + remaining);
+            return position + start - piece.start;
+        }
+        return length;
+    }
+
+    // 从 firstLine 开始读取最多 count 行
+    public List<Line> getLines(long firstLine, int count) {
+        List<Line> lines = new ArrayList<>(count);
+        Cursor cursor = new Cursor(lineStart(firstLine));
+        byte[] buffer = new byte[256];
+        while (lines.size() < count) {
+            int size = 0;
+            boolean truncated = false;
+            boolean newline = false;
+            int b;
+            while ((b = cursor.next()) >= 0) {
+                if (b == '\n') {
+                    newline = true;
+                    break;
+                }
+                if (size == MAX_LINE_BYTES) {
+                    truncated = true;
+                    continue;
+                }
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, Math.min(MAX_LINE_BYTES, size * 2));
+                }
+                buffer[size++] = (byte) b;
+            }
+            if (!truncated && size > 0 && buffer[size - 1] == '\r') {
+                size--;
+            }
+            lines.add(decode(buffer, size, truncated));
+            if (!newline) break;
+        }
+        return lines;
+    }
+
+    // 逐字节解码 UTF-8 并记下每个字符的字节偏移，这样字符位置总能准确换算回字节偏移，不会因为编码不一致改坏文件。
+    // 非法序列按 Unicode 推荐的做法，每个最长的合法前缀替换为一个替换字符
+    private static Line decode(byte[] bytes, int size, boolean truncated) {
+        StringBuilder text = new StringBuilder(size);
+        int[] offsets = new int[size + 1];
+        int chars = 0;
+        int i = 0;
+        while (i < size) {
+            int b = bytes[i] & 0xFF;
+            int sequence = b < 0x80 ? 1 : b >= 0xC2 && b < 0xE0 ? 2 : b >= 0xE0 && b < 0xF0 ? 3 : b >= 0xF0 && b < 0xF5 ? 4 : 0;
+            int codePoint = sequence == 1 ? b : b & (0xFF >> (sequence + 1));
+            for (int k = 1; k < sequence; k++) {
+                // 第二个字节的范围排除了过长编码、代理区和超出 U+10FFFF 的码点
+                int low = k > 1 ? 0x80 : b == 0xE0 ? 0xA0 : b == 0xF0 ? 0x90 : 0x80;
+                int high = k > 1 ? 0xBF : b == 0xED ? 0x9F : b == 0xF4 ? 0x8F : 0xBF;
+                int next = i + k < size ? bytes[i + k] & 0xFF : -1;
+                if (next < low || next > high) {
+                    sequence = -k;
+                    break;
+                }
+                codePoint = (codePoint << 6) | (next & 0x3F);
+            }
+            if (sequence <= 0) {
+                codePoint = 0xFFFD;
+                sequence = Math.max(1, -sequence);
+            }
+            offsets[chars++] = i;
+            if (Character.isSupplementaryCodePoint(codePoint)) {
+                offsets[chars++] = i;
+            }
+            text.appendCodePoint(codePoint);
+            i += sequence;
+        }
+        offsets[chars] = size;
+        return new Line(text.toString(), Arrays.copyOf(offsets, chars + 1), truncated);
+    }
+
+    // 从指定偏移开始顺序读取文档字节
+    private class Cursor {
+        private int pieceIndex;
+        private long offsetInPiece;
+
+        Cursor(long position) {
+            while (pieceIndex < pieces.size() && position >= pieces.get(pieceIndex).length) {
+                position -= pieces.get(pieceIndex).length;
+                pieceIndex++;
+            }
+            offsetInPiece = position;
+        }
+
+        int next() {
+            while (pieceIndex < pieces.size()) {
+                Piece piece = pieces.get(pieceIndex);
+                if (offsetInPiece < piece.length) {
+                    long p = piece.start + offsetInPiece++;
+                    return (piece.added ? added[(int) p] : originalByte(p)) & 0xFF;
+                }
+                pieceIndex++;
+                offsetInPiece = 0;
+            }
+            return -1;
+        }
+    }
+
+    /* ---------------- 修改 ---------------- */
+
+    public void insert(long position, String text) {
+        checkEditable();
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        insertBytes(position, bytes, bytes.length);
+        modified = true;
+        editCount++;
+    }
+
+    // 文件末尾新增了 data 中的 count 个字节（跟踪日志时使用），行索引建好之前也可以调用。
+    // 文档末尾接上指向原文件这部分的片段，data 只用来统计换行，不保留
+    public void append(byte[] data, int count) {
+        if (count == 0) return;
+        long start = fileLength;
+        long appendedNewlines = 0;
+        for (int i = 0; i < count; i++) {
+            if (data[i] == '\n') {
+                appendedNewlines++;
+                if (++tailNewlines % CHECKPOINT_LINES == 0) {
+                    if (tailCheckpointCount == tailCheckpoints.length) {
+                        tailCheckpoints = Arrays.copyOf(tailCheckpoints, tailCheckpointCount * 2);
+                    }
+                    tailCheckpoints[tailCheckpointCount++] = start + i + 1;
+                }
+            }
+        }
+        fileLength += count;
+        // 原来的最后一块没有读满，文件变长后重新读取
+        blocks.remove(start / BLOCK_SIZE);
+        lastBlockIndex = -1;
+
+        Piece last = pieces.isEmpty() ? null : pieces.get(pieces.size() - 1);
+        if (last != null && !last.added && last.start >= originalLength && last.start + last.length == start) {
+            pieces.set(pieces.size() - 1, new Piece(false, last.start, last.length + count, last.newlines + appendedNewlines));
+        } else {
+            pieces.add(new Piece(false, start, count, appendedNewlines));
+        }
+        length += count;
+        newlines += appendedNewlines;
+    }
+
+    private void insertBytes(long position, byte[] bytes, int byteCount) {
+        if (byteCount == 0) return;
+        if (addedLength + byteCount > added.length) {
+            added = Arrays.copyOf(added, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(added.length * 2L, (long) addedLength + byteCount)));
+        }
+        System.arraycopy(bytes, 0, added, addedLength, byteCount);
+        long count = countNewlines(bytes, 0, byteCount);
+
+        int index = split(position);
+        // 连续输入时接在上一个追加片段后面，不产生新片段
+        Piece previous = index > 0 ? pieces.get(index - 1) : null;
+        if (previous != null && previous.added && previous.start + previous.length == addedLength) {
+            pieces.set(index - 1, new Piece(true, previous.start, previous.length + byteCount, previous.newlines + count));
+        } else {
+            pieces.add(index, new Piece(true, addedLength, byteCount, count));
+        }
+        addedLength += byteCount;
+        length += byteCount;
+        newlines += count;
+    }
+
+    public void delete(long position, long count) {
+        checkEditable();
+        if (count <= 0) return;
+        int first = split(position);
+        int end = split(position + count);
+        for (int i = end - 1; i >= first; i--) {
+            Piece removed = pieces.remove(i);
+            newlines -= removed.newlines;
+        }
+        length -= count;
+        modified = true;
+        editCount++;
+    }
+
+    private void checkEditable() {
+        if (!indexComplete) {
+            throw new IllegalStateException("行索引尚未建立完成");
+        }
+    }
+
+    // 在 position 处切开片段，返回从 position 开始的片段下标
+    private int split(long position) {
+        long start = 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece piece = pieces.get(i);
+            if (position == start) return i;
+            if (position < start + piece.length) {
+                long head = position - start;
+                long headNewlines = newlinesIn(piece, head);
+                pieces.set(i, new Piece(piece.added, piece.start, head, headNewlines));
+                pieces.add(i + 1, new Piece(piece.added, piece.start + head, piece.length - head, piece.newlines - headNewlines));
+                return i + 1;
+            }
+            start += piece.length;
+        }
+        return pieces.size();
+    }
+
+    // 片段前 count 个字节中的换行数
+    private long newlinesIn(Piece piece, long count) {
+        if (piece.added) {
+            return countNewlines(added, (int) piece.start, (int) count);
+        }
+        return fileNewlinesBefore(piece.start + count) - fileNewlinesBefore(piece.start);
+    }
+
+    private static long countNewlines(byte[] bytes, int offset, int count) {
+        long result = 0;
+        for (int i = offset; i < offset + count; i++) {
+            if (bytes[i] == '\n') result++;
+        }
+        return result;
+    }
+
+    /* ---------------- 保存 ---------------- */
+
+    public void writeTo(OutputStream out) throws IOException {
+        write(pieces, added, out);
+    }
+
+    // 当前内容的快照，可以在后台线程上写出：编辑只替换片段、只在追加缓冲区末尾写入，
+    // 复制一份片段列表后，之后的编辑不会影响快照引用的字节。快照应写出一次，写完之前原文件保持打开
+    public SaveService.Content snapshot() {
+        List<Piece> snapshot = new ArrayList<>(pieces);
+        byte[] buffer = added;
+        synchronized (this) {
+            pendingSnapshots++;
+        }
+        return out -> {
+            try {
+                write(snapshot, buffer, out);
+            } finally {
+                synchronized (this) {
+                    if (--pendingSnapshots == 0 && closed) {
+                        closeChannel();
+                    }
+                }
+            }
+        };
+    }
+
+    private void write(List<Piece> pieces, byte[] added, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        for (Piece piece : pieces) {
+            if (piece.added) {
+                out.write(added, (int) piece.start, (int) piece.length);
+                continue;
+            }
+            // 按位置读取，与事件分发线程上的读取互不影响
+            long position = piece.start;
+            long end = piece.start + piece.length;
+            while (position < end) {
+                long transferred = channel.transferTo(position, end - position, target);
+                if (transferred <= 0) {
+                    throw new IOException(file.getName() + " 在打开之后被截断，无法保存");
+                }
+                position += transferred;
+            }
+        }
+        out.flush();
+    }
+}
\ No newline at end of file
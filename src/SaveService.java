@@ -0,0 +1,169 @@
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultEditorKit;
+import javax.swing.text.Document;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// 后台保存：调用方在事件分发线程上取得文档快照，编码和写盘都在保存线程上进行。
+// 先写同目录的临时文件并 fsync，再原子替换目标文件，写到一半崩溃也不会损坏原文件
+public class SaveService {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    // 单线程：同一文件的多次保存按提交顺序完成，后一次总是覆盖前一次
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "save-service");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // 退出程序时等待已提交的保存写完，避免刚点完保存就退出而丢失内容
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            EXECUTOR.shutdown();
+            try {
+                EXECUTOR.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ignored) {
+            }
+        }, "save-service-shutdown"));
+    }
+
+    // 文档快照，在保存线程上写出
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private SaveService() {
+    }
+
+    // 文本快照：编码在保存线程上边写边做，不再额外复制一份字节数组
+    public static Content text(String text) {
+        return out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(text);
+            writer.flush();
+        };
+    }
+
+    // 文本组件的文档快照：与 JTextComponent.write 一样，把换行符还原成读入文件时的换行符。在事件分发线程上调用
+    public static Content snapshot(Document document) {
+        String text;
+        try {
+            text = document.getText(0, document.getLength());
+        } catch (BadLocationException e) {
+            throw new IllegalStateException(e);
+        }
+        Object lineSeparator = document.getProperty(DefaultEditorKit.EndOfLineStringProperty);
+        if (lineSeparator instanceof String && !lineSeparator.equals("\n")) {
+            String separator = (String) lineSeparator;
+            return out -> text(text.replace("\n", separator)).writeTo(out);
+        }
+        return text(text);
+    }
+
+    // 保存完成或失败后在事件分发线程上调用 onDone，参数为 null 表示成功
+    public static CompletableFuture<Void> save(Path target, Content content, Consumer<IOException> onDone) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        EXECUTOR.execute(() -> {
+            IOException error = null;
+            try {
+                writeAtomically(target, content);
+            } catch (IOException e) {
+                error = e;
+            }
+            IOException result = error;
+            SwingUtilities.invokeLater(() -> onDone.accept(result));
+            if (result == null) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(result);
+            }
+        });
+        return future;
+    }
+
+    // 在调用线程上同步写入：临时文件、fsync、原子替换。导出等自带后台线程的操作直接调用
+    public static void writeAtomically(Path target, Content content) throws IOException {
+        // 目标是符号链接时写到它指向的文件，链接本身保持不变
+        target = Files.exists(target) ? target.toRealPath() : target.toAbsolutePath();
+        Path directory = target.getParent();
+        // 临时文件名前缀至少 3 个字符
+        Path temp = Files.createTempFile(directory, "." + target.getFileName() + "-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+                content.writeTo(out);
+                out.flush();
+                channel.force(true);
+            }
+            // 临时文件创建时只有属主可读写，换上原文件的权限，否则每次保存都会改掉原文件的权限
+            if (Files.exists(target)) {
+                copyPermissions(target, temp);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+            throw e;
+        }
+        forceDirectory(directory);
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        PosixFileAttributeView posix = Files.getFileAttributeView(from, PosixFileAttributeView.class);
+        if (posix != null) {
+            PosixFileAttributes attributes = posix.readAttributes();
+            PosixFileAttributeView view = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+            view.setPermissions(attributes.permissions());
+            try {
+                // 改属组要求当前用户也在那个组里，改不了就保持默认
+                view.setGroup(attributes.group());
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+        AclFileAttributeView acl = Files.getFileAttributeView(from, AclFileAttributeView.class);
+        if (acl != null) {
+            Files.getFileAttributeView(to, AclFileAttributeView.class).setAcl(acl.getAcl());
+        }
+        DosFileAttributeView dos = Files.getFileAttributeView(from, DosFileAttributeView.class);
+        if (dos != null) {
+            DosFileAttributes attributes = dos.readAttributes();
+            DosFileAttributeView view = Files.getFileAttributeView(to, DosFileAttributeView.class);
+            view.setHidden(attributes.isHidden());
+            view.setSystem(attributes.isSystem());
+            view.setArchive(attributes.isArchive());
+        }
+    }
+
+    // 让改名本身也落盘；Windows 不能以这种方式打开目录，忽略即可
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+}
\ No newline at end of file
@@ -1,4 +1,7 @@
 import javax.swing.*;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
+import javax.swing.text.DefaultCaret;
 import javax.swing.text.DefaultEditorKit;
 import java.awt.*;
 import java.awt.event.ActionEvent;
@@ -6,9 +9,16 @@ import java.awt.event.KeyEvent;
 import java.awt.event.InputEvent;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class TextEditor extends JFrame {
 
+    // 超过此大小的文件用 PieceTable 打开，不整个读入 JTextArea
+    private static final long LARGE_FILE_THRESHOLD = 32L * 1024 * 1024;
+    // 自动保存日志中无标题文档的文件名前缀
+    private static final String JOURNAL_NAME = "TextEditor";
+
     private final JDesktopPane desktop = new JDesktopPane();
     private int windowCount = 0;
 
@@ -35,7 +45,12 @@ public class TextEditor extends JFrame {
         fileMenu.addSeparator();
         fileMenu.add(createMenuItem("退出(X)", 'X', null, e -> System.exit(0)));
 
+        JMenu viewMenu = new JMenu("查看(V)");
+        viewMenu.setMnemonic('V');
+        viewMenu.add(createMenuItem("跟踪文件尾部(T)", 'T', KeyStroke.getKeyStroke(KeyEvent.VK_T, InputEvent.CTRL_DOWN_MASK), this::toggleFollow));
+
         menuBar.add(fileMenu);
+        menuBar.add(viewMenu);
         setJMenuBar(menuBar);
 
         // 4. 工具栏（简单示例）
@@ -44,10 +59,14 @@ public class TextEditor extends JFrame {
 
         toolBar.add(createToolbarButton("打开(Ctrl+O)", this::openFile));
         toolBar.add(createToolbarButton("保存(Ctrl+S)", this::saveFile));
+        toolBar.add(createToolbarButton("跟踪(Ctrl+T)", this::toggleFollow));
         add(toolBar, BorderLayout.NORTH);
 
         // 5. 把 desktop 放到窗口中心
         add(desktop);
+
+        // 6. 恢复上次异常退出时未保存的无标题文档
+        SwingUtilities.invokeLater(this::recoverUntitledDocuments);
     }
 
     /* ---------------- 内部窗口管理 ---------------- */
@@ -63,18 +82,44 @@ public class TextEditor extends JFrame {
         createInternalFrame(file);
     }
 
-    // 修改文件读取方法
+    private void recoverUntitledDocuments() {
+        java.util.List<Path> journals = EditJournal.findUntitled(JOURNAL_NAME);
+        if (journals.isEmpty()) return;
+        int choice = JOptionPane.showConfirmDialog(this, "发现 " + journals.size() + " 个上次未保存的无标题文档，是否恢复？",
+                "恢复文档", JOptionPane.YES_NO_OPTION);
+        for (Path journal : journals) {
+            if (choice == JOptionPane.YES_OPTION) {
+                createInternalFrame(null, journal);
+            } else {
+                EditJournal.discardUntitled(journal);
+            }
+        }
+    }
+
     private void createInternalFrame(File file) {
+        createInternalFrame(file, null);
+    }
+
+    // 修改文件读取方法；recoveredJournal 不为 null 时从该日志恢复无标题文档
+    private void createInternalFrame(File file, Path recoveredJournal) {
+        if (file != null && file.length() >= LARGE_FILE_THRESHOLD) {
+            createLargeFileFrame(file);
+            return;
+        }
         JInternalFrame frame = new JInternalFrame(
                 file == null ? "无标题 " + (++windowCount) : file.getName(),
                 true, true, true, true);
         JTextArea textArea = new JTextArea(20, 60);
         textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 14));
 
+        boolean loaded = file == null;
         if (file != null) {
-            try (BufferedReader br = new BufferedReader(
-                    new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
-                textArea.read(br, null);
+            // 记下读入的字节数，跟踪文件尾部时从这里接着读
+            try {
+                byte[] bytes = Files.readAllBytes(file.toPath());
+                textArea.read(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8), null);
+                frame.putClientProperty("loadedLength", (long) bytes.length);
+                loaded = true;
             } catch (IOException ex) {
                 JOptionPane.showMessageDialog(this, "无法读取文件:\n" + ex.getMessage(),
                         "错误", JOptionPane.ERROR_MESSAGE);
@@ -82,10 +127,91 @@ public class TextEditor extends JFrame {
         }
 
         frame.add(new JScrollPane(textArea));
+        frame.putClientProperty("textArea", textArea);
+        if (loaded) {
+            frame.putClientProperty("journal", startJournal(file, recoveredJournal, textArea));
+        }
+        showInternalFrame(frame, file);
+    }
+
+    // 自动保存日志：定时记下上次保存之后的编辑，异常退出后重新打开同一文件时可以恢复
+    private EditJournal startJournal(File file, Path recoveredJournal, JTextArea textArea) {
+        EditJournal journal;
+        if (file != null) {
+            journal = EditJournal.forFile(file, textArea.getDocument());
+        } else if (recoveredJournal != null) {
+            journal = EditJournal.openUntitled(recoveredJournal, textArea.getDocument());
+        } else {
+            journal = EditJournal.forUntitled(JOURNAL_NAME, textArea.getDocument());
+        }
+        journal.start();
+        if (recoveredJournal != null) {
+            journal.replay();
+        } else if (file != null && journal.hasRecoverableEdits()) {
+            int choice = JOptionPane.showConfirmDialog(this, file.getName() + " 有上次未保存的修改，是否恢复？",
+                    "恢复文档", JOptionPane.YES_NO_OPTION);
+            if (choice == JOptionPane.YES_OPTION) {
+                journal.replay();
+            } else {
+                journal.discard();
+            }
+        }
+        return journal;
+    }
+
+    // 大文件模式：只打开文件不读入，行索引在后台建立，标题栏显示进度
+    private void createLargeFileFrame(File file) {
+        JInternalFrame frame = new JInternalFrame(file.getName() + "（正在建立行索引，只读）", true, true, true, true);
+        frame.add(new JScrollPane());
+        LargeTextView view = openLargeView(frame, file);
+        if (view == null) return;
+        showInternalFrame(frame, file);
+        view.requestFocusInWindow();
+    }
+
+    // 打开文件并放进窗口的滚动窗格，替换并关闭原来的视图（原地保存后，或跟踪文件尾部时文件被截断、轮转，需要重新打开）
+    private LargeTextView openLargeView(JInternalFrame frame, File file) {
+        PieceTable document;
+        try {
+            document = new PieceTable(file);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "无法读取文件:\n" + ex.getMessage(),
+                    "错误", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+        LargeTextView view = new LargeTextView(document);
+        document.setIndexListener(() -> {
+            view.documentChanged();
+            updateTitle(frame);
+        });
+        LargeTextView old = (LargeTextView) frame.getClientProperty("largeView");
+        if (old != null) {
+            old.getDocument().close();
+        }
+        JScrollPane scrollPane = (JScrollPane) frame.getContentPane().getComponent(0);
+        scrollPane.setViewportView(view);
+        frame.putClientProperty("largeView", view);
+        return view;
+    }
+
+    private void showInternalFrame(JInternalFrame frame, File file) {
         frame.setSize(400, 300);
         frame.setLocation(20 * (windowCount % 10), 20 * (windowCount % 10));
-        frame.putClientProperty("textArea", textArea);
         frame.putClientProperty("file", file);
+        frame.addInternalFrameListener(new InternalFrameAdapter() {
+            @Override
+            public void internalFrameClosed(InternalFrameEvent e) {
+                stopFollowing(frame);
+                EditJournal journal = (EditJournal) frame.getClientProperty("journal");
+                if (journal != null) {
+                    journal.close(false);
+                }
+                LargeTextView largeView = (LargeTextView) frame.getClientProperty("largeView");
+                if (largeView != null) {
+                    largeView.getDocument().close();
+                }
+            }
+        });
         frame.setVisible(true);
         desktop.add(frame);
         try {
@@ -94,6 +220,139 @@ public class TextEditor extends JFrame {
         }
     }
 
+    // 标题栏：文件名，加上行索引进度和跟踪状态
+    private static void updateTitle(JInternalFrame frame) {
+        File file = (File) frame.getClientProperty("file");
+        if (file == null) return;
+        String title = file.getName();
+        LargeTextView largeView = (LargeTextView) frame.getClientProperty("largeView");
+        if (largeView != null && !largeView.getDocument().isIndexComplete()) {
+            title += String.format("（正在建立行索引 %.0f%%，只读）", largeView.getDocument().getIndexProgress() * 100);
+        }
+        if (frame.getClientProperty("follower") != null) {
+            title += "［跟踪中］";
+        }
+        frame.setTitle(title);
+    }
+
+    /* ---------------- 跟踪文件尾部 ---------------- */
+
+    // 像 tail -f 一样跟踪日志：只读取上次之后新增的完整行追加到末尾，跟踪期间文档只读
+    private void toggleFollow(ActionEvent e) {
+        JInternalFrame frame = desktop.getSelectedFrame();
+        if (frame == null) return;
+        if (frame.getClientProperty("follower") != null) {
+            stopFollowing(frame);
+            return;
+        }
+        File file = (File) frame.getClientProperty("file");
+        if (file == null) {
+            JOptionPane.showMessageDialog(this, "请先保存文件再跟踪。", "提示", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        JTextArea textArea = (JTextArea) frame.getClientProperty("textArea");
+        LogFollower follower = textArea != null ? followTextArea(frame, textArea, file) : followLargeView(frame, file);
+        if (follower == null) return;
+        // 跟踪期间文档内容就是文件内容，不必记入自动保存日志
+        EditJournal journal = (EditJournal) frame.getClientProperty("journal");
+        if (journal != null) {
+            journal.suspend();
+        }
+        frame.putClientProperty("follower", follower);
+        follower.start();
+        updateTitle(frame);
+    }
+
+    private LogFollower followTextArea(JInternalFrame frame, JTextArea textArea, File file) {
+        JScrollBar scrollBar = ((JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, textArea)).getVerticalScrollBar();
+        textArea.setEditable(false);
+        // 只在视图本来就停在末尾时跟着滚动，用户往上翻看时不打扰
+        ((DefaultCaret) textArea.getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+        // 读取失败的窗口是空的，从头开始
+        if (frame.getClientProperty("loadedLength") == null) {
+            frame.putClientProperty("loadedLength", 0L);
+        }
+        long loaded = (Long) frame.getClientProperty("loadedLength");
+        return new LogFollower(file.toPath(), loaded, new LogFollower.Listener() {
+            @Override
+            public long reset() {
+                textArea.setText("");
+                frame.putClientProperty("loadedLength", 0L);
+                return 0;
+            }
+
+            @Override
+            public void append(byte[] data, int length) {
+                boolean atEnd = scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum() - textArea.getFont().getSize() * 2;
+                textArea.append(new String(data, 0, length, StandardCharsets.UTF_8).replace("\r\n", "\n"));
+                frame.putClientProperty("loadedLength", (Long) frame.getClientProperty("loadedLength") + length);
+                if (atEnd) {
+                    textArea.setCaretPosition(textArea.getDocument().getLength());
+                }
+            }
+        });
+    }
+
+    private LogFollower followLargeView(JInternalFrame frame, File file) {
+        LargeTextView view = (LargeTextView) frame.getClientProperty("largeView");
+        if (view.getDocument().isModified()) {
+            int choice = JOptionPane.showConfirmDialog(this, "文档有未保存的修改，跟踪文件尾部将重新载入文件并放弃这些修改。是否继续？",
+                    "跟踪文件尾部", JOptionPane.OK_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE);
+            if (choice != JOptionPane.OK_OPTION) return null;
+            view = openLargeView(frame, file);
+            if (view == null) return null;
+        }
+        view.setEditable(false);
+        view.scrollToEnd();
+        return new LogFollower(file.toPath(), view.getDocument().length(), new LogFollower.Listener() {
+            @Override
+            public long reset() {
+                // 文件被截断或轮转后旧的片段表已经对不上，重新打开文件，同时关闭旧文件的句柄
+                LargeTextView reopened = openLargeView(frame, file);
+                if (reopened == null) {
+                    stopFollowing(frame);
+                    return 0;
+                }
+                reopened.setEditable(false);
+                reopened.scrollToEnd();
+                return reopened.getDocument().length();
+            }
+
+            @Override
+            public void append(byte[] data, int length) {
+                LargeTextView current = (LargeTextView) frame.getClientProperty("largeView");
+                boolean atEnd = current.isScrolledToEnd();
+                current.getDocument().append(data, length);
+                current.documentChanged();
+                if (atEnd) {
+                    current.scrollToEnd();
+                }
+            }
+        });
+    }
+
+    private void stopFollowing(JInternalFrame frame) {
+        LogFollower follower = (LogFollower) frame.getClientProperty("follower");
+        if (follower == null) return;
+        follower.stop();
+        frame.putClientProperty("follower", null);
+        JTextArea textArea = (JTextArea) frame.getClientProperty("textArea");
+        if (textArea != null) {
+            textArea.setEditable(true);
+            ((DefaultCaret) textArea.getCaret()).setUpdatePolicy(DefaultCaret.UPDATE_WHEN_ON_EDT);
+        }
+        LargeTextView largeView = (LargeTextView) frame.getClientProperty("largeView");
+        if (largeView != null) {
+            largeView.setEditable(true);
+        }
+        EditJournal journal = (EditJournal) frame.getClientProperty("journal");
+        if (journal != null) {
+            journal.resume((File) frame.getClientProperty("file"));
+        }
+        updateTitle(frame);
+    }
+
     /* ---------------- 保存 ---------------- */
 
     // 修改文件保存方法
@@ -102,6 +361,7 @@ public class TextEditor extends JFrame {
         if (frame == null) return;
 
         JTextArea textArea = (JTextArea) frame.getClientProperty("textArea");
+        LargeTextView largeView = (LargeTextView) frame.getClientProperty("largeView");
         File file = (File) frame.getClientProperty("file");
 
         if (file == null) {
@@ -109,16 +369,49 @@ public class TextEditor extends JFrame {
             if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
             file = chooser.getSelectedFile();
             frame.putClientProperty("file", file);
-            frame.setTitle(file.getName());
+            updateTitle(frame);
         }
 
-        try (BufferedWriter bw = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
-            textArea.write(bw);
+        // 在事件分发线程上只取快照，编码和写盘交给后台，界面不会因为大文件卡住。
+        // 大文件的未修改部分还从原文件读取，SaveService 先写临时文件再替换，不会覆盖正在读取的内容
+        SaveService.Content content = largeView != null
+                ? largeView.getDocument().snapshot()
+                : SaveService.snapshot(textArea.getDocument());
+        long editCount = largeView != null ? largeView.getDocument().getEditCount() : 0;
+        EditJournal journal = (EditJournal) frame.getClientProperty("journal");
+        long mark = journal != null ? journal.mark() : 0;
+        File target = file;
+        SaveService.save(target.toPath(), content, error -> {
+            if (error != null) {
+                JOptionPane.showMessageDialog(this, "无法保存文件:\n" + error.getMessage(),
+                        "错误", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if (journal != null && !frame.isClosed()) {
+                journal.checkpoint(mark, target);
+            }
+            if (textArea != null) {
+                frame.putClientProperty("loadedLength", target.length());
+            }
+            if (largeView != null) {
+                reopenSavedLargeView(frame, largeView, target, editCount);
+            }
             JOptionPane.showMessageDialog(this, "文件保存成功！", "成功", JOptionPane.INFORMATION_MESSAGE);
-        } catch (IOException ex) {
-            JOptionPane.showMessageDialog(this, "无法保存文件:\n" + ex.getMessage(),
-                    "错误", JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
+    // 大文件原地保存后，旧的 PieceTable 还打开着已被替换掉的原文件。保存期间没有再修改时改为打开新文件，
+    // 放掉旧文件并清除修改标记；保存期间又有修改或正在跟踪时保留旧表，旧文件的内容仍然可以读取
+    private void reopenSavedLargeView(JInternalFrame frame, LargeTextView saved, File target, long editCount) {
+        PieceTable document = saved.getDocument();
+        if (frame.isClosed() || frame.getClientProperty("largeView") != saved || frame.getClientProperty("follower") != null
+                || !document.getFile().equals(target) || document.getEditCount() != editCount) {
+            return;
+        }
+        JViewport viewport = ((JScrollPane) frame.getContentPane().getComponent(0)).getViewport();
+        Point position = viewport.getViewPosition();
+        if (openLargeView(frame, target) != null) {
+            SwingUtilities.invokeLater(() -> viewport.setViewPosition(position));
         }
     }
 
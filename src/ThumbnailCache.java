@@ -0,0 +1,196 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+
+// 图片缩略图缓存：后台线程按降采样解码，内存中按字节数 LRU 淘汰，磁盘上按 路径+修改时间 缓存
+public class ThumbnailCache {
+    private static final File CACHE_DIR = new File(System.getProperty("user.home"), ".minecrafttoolkit/thumbnails");
+    private static final long MAX_MEMORY_BYTES = 32L * 1024 * 1024;
+    // 超过后删除最早写入的缓存文件
+    private static final int MAX_DISK_ENTRIES = 20_000;
+    // 滚动很快时只保留最近的请求，更早的已经滚出可见区域
+    private static final int MAX_PENDING = 256;
+    // 解码失败的文件也记录下来，避免每次绘制都重新排队
+    private static final BufferedImage FAILED = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+    private final int size;
+    private final Runnable onLoaded;
+    private final LinkedHashMap<String, BufferedImage> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+    // 后进先出：最新请求的通常是当前可见的单元格
+    private final LinkedBlockingDeque<Request> queue = new LinkedBlockingDeque<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean closed;
+
+    // onLoaded 在事件分发线程上调用，通常用来重绘列表
+    public ThumbnailCache(int size, Runnable onLoaded) {
+        this.size = size;
+        this.onLoaded = onLoaded;
+        CACHE_DIR.mkdirs();
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::runWorker, "thumbnail-" + i);
+            worker.setDaemon(true);
+            worker.setPriority(Thread.NORM_PRIORITY - 1);
+            worker.start();
+            workers.add(worker);
+        }
+        Thread pruner = new Thread(ThumbnailCache::pruneDiskCache, "thumbnail-prune");
+        pruner.setDaemon(true);
+        pruner.start();
+    }
+
+    // 只在事件分发线程上调用；已缓存时直接返回，否则排队解码并返回 null
+    public BufferedImage get(Path path, long lastModified, long length) {
+        String key = path + "|" + lastModified + "|" + length;
+        BufferedImage image;
+        synchronized (memory) {
+            image = memory.get(key);
+        }
+        if (image != null) {
+            return image == FAILED ? null : image;
+        }
+        if (!closed && pending.add(key)) {
+            queue.offerFirst(new Request(key, path));
+            while (queue.size() > MAX_PENDING) {
+                Request dropped = queue.pollLast();
+                if (dropped != null) {
+                    pending.remove(dropped.key);
+                }
+            }
+        }
+        return null;
+    }
+
+    // 丢弃尚未开始的请求；滚动后重绘时可见单元格会重新请求
+    public void cancelPending() {
+        Request request;
+        while ((request = queue.pollLast()) != null) {
+            pending.remove(request.key);
+        }
+    }
+
+    public void close() {
+        closed = true;
+        cancelPending();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    private void runWorker() {
+        while (!closed) {
+            Request request;
+            try {
+                request = queue.takeFirst();
+            } catch (InterruptedException e) {
+                return;
+            }
+            BufferedImage image = null;
+            try {
+                File cacheFile = new File(CACHE_DIR, DownloadEngine.sha1Hex(request.key) + ".png");
+                if (cacheFile.isFile()) {
+                    image = ImageIO.read(cacheFile);
+                }
+                if (image == null) {
+                    image = decode(request.path.toFile());
+                    if (image != null) {
+                        ImageIO.write(image, "png", cacheFile);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // 损坏或不支持的图片显示默认图标
+                image = null;
+            }
+            store(request.key, image != null ? image : FAILED);
+            pending.remove(request.key);
+            SwingUtilities.invokeLater(onLoaded);
+        }
+    }
+
+    private void store(String key, BufferedImage image) {
+        synchronized (memory) {
+            BufferedImage old = memory.put(key, image);
+            if (old != null) {
+                memoryBytes -= cost(old);
+            }
+            memoryBytes += cost(image);
+            Iterator<BufferedImage> iterator = memory.values().iterator();
+            while (memoryBytes > MAX_MEMORY_BYTES && iterator.hasNext()) {
+                memoryBytes -= cost(iterator.next());
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long cost(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    // 按源图尺寸降采样读取，大图不必完整解码到内存，再平滑缩放到缩略图大小
+    private BufferedImage decode(File file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                // 保留约两倍目标尺寸的像素，缩放后边缘不至于发虚
+                int step = Math.max(1, Math.max(width, height) / (size * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                BufferedImage source = reader.read(0, param);
+                return scale(source);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source) {
+        double ratio = Math.min(1.0, Math.min((double) size / source.getWidth(), (double) size / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = thumbnail.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.drawImage(source, 0, 0, width, height, null);
+        g2d.dispose();
+        return thumbnail;
+    }
+
+    private static void pruneDiskCache() {
+        File[] files = CACHE_DIR.listFiles();
+        if (files == null || files.length <= MAX_DISK_ENTRIES) return;
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length - MAX_DISK_ENTRIES * 3 / 4; i++) {
+            files[i].delete();
+        }
+    }
+
+    private static class Request {
+        final String key;
+        final Path path;
+
+        Request(String key, Path path) {
+            this.key = key;
+            this.path = path;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,320 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// 分块绘制的图片显示面板：按当前缩放比例从图像金字塔中选一级，只绘制与可见区域相交的图块，
+// 缩放只改变比例，不生成新的缩放图；支持拖动平移和 Ctrl+滚轮以鼠标位置为中心缩放。
+// 超大图片放大到预览精度以上时，可见区域的图块由 ImageTileDecoder 在后台解码后再补上
+public class TiledImagePanel extends JPanel implements Scrollable {
+    private static final int TILE_SIZE = 512;
+    private static final double MIN_SCALE = 0.01;
+    private static final double MAX_SCALE = 32.0;
+    // 放大到此倍数以上时按最近邻绘制，能看清单个像素
+    private static final double PIXELATED_SCALE = 3.0;
+
+    private ImagePyramid pyramid;
+    private double scale = 1.0;
+    private String message;
+    private Point dragStart;
+    private Runnable scaleListener;
+
+    public TiledImagePanel(String message) {
+        this.message = message;
+        setBackground(Color.WHITE);
+        setFont(new Font("微软雅黑", Font.PLAIN, 16));
+
+        MouseAdapter mouseHandler = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragStart = e.getLocationOnScreen();
+                setCursor(Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR));
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                dragStart = null;
+                setCursor(Cursor.getDefaultCursor());
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                JViewport viewport = getViewport();
+                if (dragStart == null || viewport == null) return;
+                Point current = e.getLocationOnScreen();
+                Point position = viewport.getViewPosition();
+                position.translate(dragStart.x - current.x, dragStart.y - current.y);
+                dragStart = current;
+                setViewPosition(viewport, position);
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (e.isControlDown() && pyramid != null) {
+                    setScale(scale * Math.pow(1.2, -e.getPreciseWheelRotation()), e.getPoint());
+                    return;
+                }
+                // 普通滚轮交给滚动面板处理
+                JScrollPane scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, TiledImagePanel.this);
+                if (scrollPane != null) {
+                    scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(TiledImagePanel.this, e, scrollPane));
+                }
+            }
+        };
+        addMouseListener(mouseHandler);
+        addMouseMotionListener(mouseHandler);
+        addMouseWheelListener(mouseHandler);
+    }
+
+    public void setPyramid(ImagePyramid pyramid, double scale) {
+        // 切换图片后释放上一张超大图片已解码的图块
+        ImageTileDecoder oldDecoder = this.pyramid != null ? this.pyramid.getTileDecoder() : null;
+        ImageTileDecoder newDecoder = pyramid != null ? pyramid.getTileDecoder() : null;
+        if (oldDecoder != null && oldDecoder != newDecoder) {
+            oldDecoder.setListener(null);
+            oldDecoder.release();
+        }
+        if (newDecoder != null) {
+            newDecoder.setListener(this::repaint);
+        }
+        this.pyramid = pyramid;
+        this.scale = clampScale(scale);
+        revalidate();
+        repaint();
+        fireScaleChanged();
+    }
+
+    public ImagePyramid getPyramid() {
+        return pyramid;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+        repaint();
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    // 缩放比例变化时（包括滚轮缩放）通知，用于更新状态栏
+    public void setScaleListener(Runnable scaleListener) {
+        this.scaleListener = scaleListener;
+    }
+
+    // anchor 为面板坐标中保持不动的点，为 null 时以可见区域中心为准
+    public void setScale(double newScale, Point anchor) {
+        newScale = clampScale(newScale);
+        JViewport viewport = getViewport();
+        if (pyramid == null || viewport == null) {
+            scale = newScale;
+            revalidate();
+            repaint();
+            fireScaleChanged();
+            return;
+        }
+
+        Rectangle view = viewport.getViewRect();
+        if (anchor == null) {
+            anchor = new Point(view.x + view.width / 2, view.y + view.height / 2);
+        }
+        Point origin = getImageOrigin();
+        double imageX = (anchor.x - origin.x) / scale;
+        double imageY = (anchor.y - origin.y) / scale;
+        int offsetX = anchor.x - view.x;
+        int offsetY = anchor.y - view.y;
+
+        scale = newScale;
+        revalidate();
+        // 立即重新布局，以便按新的尺寸计算滚动位置，避免先跳动再归位
+        viewport.getParent().validate();
+        Point newOrigin = getImageOrigin();
+        setViewPosition(viewport, new Point(
+                (int) Math.round(newOrigin.x + imageX * scale) - offsetX,
+                (int) Math.round(newOrigin.y + imageY * scale) - offsetY));
+        repaint();
+        fireScaleChanged();
+    }
+
+    // 缩放到刚好完整显示在可见区域内
+    public void fitToViewport() {
+        JViewport viewport = getViewport();
+        if (pyramid == null || viewport == null) return;
+        Dimension viewSize = viewport.getExtentSize();
+        setScale(Math.min((double) viewSize.width / pyramid.getWidth(), (double) viewSize.height / pyramid.getHeight()), null);
+    }
+
+    private void fireScaleChanged() {
+        if (scaleListener != null) {
+            scaleListener.run();
+        }
+    }
+
+    private static double clampScale(double scale) {
+        return Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+    }
+
+    private JViewport getViewport() {
+        return getParent() instanceof JViewport ? (JViewport) getParent() : null;
+    }
+
+    private void setViewPosition(JViewport viewport, Point position) {
+        Dimension extent = viewport.getExtentSize();
+        position.x = Math.max(0, Math.min(position.x, getWidth() - extent.width));
+        position.y = Math.max(0, Math.min(position.y, getHeight() - extent.height));
+        viewport.setViewPosition(position);
+    }
+
+    private Dimension getDisplaySize() {
+        return new Dimension((int) Math.ceil(pyramid.getWidth() * scale), (int) Math.ceil(pyramid.getHeight() * scale));
+    }
+
+    // 图片比可见区域小时居中显示
+    private Point getImageOrigin() {
+        Dimension size = getDisplaySize();
+        return new Point(Math.max(0, (getWidth() - size.width) / 2), Math.max(0, (getHeight() - size.height) / 2));
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return pyramid == null ? new Dimension(1, 1) : getDisplaySize();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (pyramid == null) {
+            if (message != null) {
+                g.setColor(Color.GRAY);
+                FontMetrics metrics = g.getFontMetrics();
+                g.drawString(message, (getWidth() - metrics.stringWidth(message)) / 2, (getHeight() + metrics.getAscent()) / 2);
+            }
+            return;
+        }
+
+        int levelIndex = pyramid.levelFor(scale);
+        BufferedImage level = pyramid.getLevel(levelIndex);
+        Dimension displaySize = getDisplaySize();
+        Point origin = getImageOrigin();
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+
+        Graphics2D g2d = (Graphics2D) g.create();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, (double) displaySize.width / pyramid.getLevelWidth(levelIndex) >= PIXELATED_SCALE
+                ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        if (level != null) {
+            drawLevel(g2d, level, origin, displaySize, clip);
+        } else {
+            // 该级不在内存中：先用内存中最精细的一级铺底，再叠加已经解码好的图块
+            int previewIndex = levelIndex;
+            while (pyramid.getLevel(previewIndex) == null) {
+                previewIndex++;
+            }
+            drawLevel(g2d, pyramid.getLevel(previewIndex), origin, displaySize, clip);
+            drawDecodedTiles(g2d, levelIndex, origin, displaySize, clip);
+        }
+        g2d.dispose();
+    }
+
+    private void drawLevel(Graphics2D g2d, BufferedImage level, Point origin, Dimension displaySize, Rectangle clip) {
+        // 该级图像的一个像素在屏幕上的大小；按实际宽高计算，避免奇数尺寸减半带来的误差
+        double levelScaleX = (double) displaySize.width / level.getWidth();
+        double levelScaleY = (double) displaySize.height / level.getHeight();
+        Rectangle tiles = tileRange(clip, origin, levelScaleX, levelScaleY, level.getWidth(), level.getHeight(), TILE_SIZE);
+        for (int row = tiles.y; row < tiles.y + tiles.height; row++) {
+            for (int column = tiles.x; column < tiles.x + tiles.width; column++) {
+                int sx1 = column * TILE_SIZE;
+                int sy1 = row * TILE_SIZE;
+                int sx2 = Math.min(sx1 + TILE_SIZE, level.getWidth());
+                int sy2 = Math.min(sy1 + TILE_SIZE, level.getHeight());
+                // 相邻图块的边界按同一公式取整，拼接处不会出现缝隙
+                g2d.drawImage(level,
+                        origin.x + (int) Math.round(sx1 * levelScaleX), origin.y + (int) Math.round(sy1 * levelScaleY),
+                        origin.x + (int) Math.round(sx2 * levelScaleX), origin.y + (int) Math.round(sy2 * levelScaleY),
+                        sx1, sy1, sx2, sy2, null);
+            }
+        }
+    }
+
+    // 按整个可见区域请求图块（而不只是本次重绘的区域）；由远及近请求，
+    // 解码队列后进先出，视图中心的图块最先解码
+    private void drawDecodedTiles(Graphics2D g2d, int levelIndex, Point origin, Dimension displaySize, Rectangle clip) {
+        ImageTileDecoder decoder = pyramid.getTileDecoder();
+        int levelWidth = pyramid.getLevelWidth(levelIndex);
+        int levelHeight = pyramid.getLevelHeight(levelIndex);
+        int tileSize = ImageTileDecoder.TILE_SIZE;
+        double levelScaleX = (double) displaySize.width / levelWidth;
+        double levelScaleY = (double) displaySize.height / levelHeight;
+        Rectangle visible = getVisibleRect();
+        Rectangle tiles = tileRange(visible, origin, levelScaleX, levelScaleY, levelWidth, levelHeight, tileSize);
+
+        List<Point> order = new ArrayList<>();
+        for (int row = tiles.y; row < tiles.y + tiles.height; row++) {
+            for (int column = tiles.x; column < tiles.x + tiles.width; column++) {
+                order.add(new Point(column, row));
+            }
+        }
+        double centerX = (visible.getCenterX() - origin.x) / levelScaleX / tileSize - 0.5;
+        double centerY = (visible.getCenterY() - origin.y) / levelScaleY / tileSize - 0.5;
+        order.sort(Comparator.comparingDouble(p -> -Point.distanceSq(p.x, p.y, centerX, centerY)));
+
+        decoder.cancelPending();
+        for (Point p : order) {
+            BufferedImage tile = decoder.getTile(levelIndex, p.x, p.y);
+            if (tile == null) continue;
+            int dx1 = origin.x + (int) Math.round(p.x * tileSize * levelScaleX);
+            int dy1 = origin.y + (int) Math.round(p.y * tileSize * levelScaleY);
+            int dx2 = origin.x + (int) Math.round(Math.min((p.x + 1) * tileSize, levelWidth) * levelScaleX);
+            int dy2 = origin.y + (int) Math.round(Math.min((p.y + 1) * tileSize, levelHeight) * levelScaleY);
+            if (clip.intersects(dx1, dy1, dx2 - dx1, dy2 - dy1)) {
+                g2d.drawImage(tile, dx1, dy1, dx2, dy2, 0, 0, tile.getWidth(), tile.getHeight(), null);
+            }
+        }
+    }
+
+    // 与 area 相交的图块的列、行范围，宽高为列数和行数
+    private static Rectangle tileRange(Rectangle area, Point origin, double levelScaleX, double levelScaleY,
+                                       int levelWidth, int levelHeight, int tileSize) {
+        int firstColumn = Math.max(0, (int) ((area.x - origin.x) / levelScaleX) / tileSize);
+        int lastColumn = Math.min((levelWidth - 1) / tileSize, (int) ((area.x + area.width - origin.x) / levelScaleX) / tileSize);
+        int firstRow = Math.max(0, (int) ((area.y - origin.y) / levelScaleY) / tileSize);
+        int lastRow = Math.min((levelHeight - 1) / tileSize, (int) ((area.y + area.height - origin.y) / levelScaleY) / tileSize);
+        return new Rectangle(firstColumn, firstRow, Math.max(0, lastColumn - firstColumn + 1), Math.max(0, lastRow - firstRow + 1));
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return 20;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.HORIZONTAL ? visibleRect.width - 20 : visibleRect.height - 20;
+    }
+
+    // 图片比可见区域小时面板撑满可见区域，以便居中显示
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        JViewport viewport = getViewport();
+        return viewport != null && viewport.getWidth() > getPreferredSize().width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        JViewport viewport = getViewport();
+        return viewport != null && viewport.getHeight() > getPreferredSize().height;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,229 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.MapType;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 各版本 JSON 的预取与索引：原始 JSON 放在有上限的内存缓存和 ArtifactCache 中，摘要与库索引常驻并持久化
+public class VersionIndex {
+    private static final int MEMORY_CACHE_SIZE = 16;
+    private static final int PREFETCH_THREADS = 3;
+    private static final long SAVE_DELAY_SECONDS = 2;
+
+    private static final VersionIndex INSTANCE = new VersionIndex(
+            new File(System.getProperty("user.home"), ".minecrafttoolkit/version-index.json"));
+
+    public static VersionIndex getInstance() {
+        return INSTANCE;
+    }
+
+    private final File indexFile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService prefetchPool = Executors.newFixedThreadPool(PREFETCH_THREADS, r -> {
+        Thread thread = new Thread(r, "version-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "version-index-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 版本号 -> 版本 JSON 的地址和 SHA-1，来自版本清单
+    private final Map<String, String[]> refs = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<VersionInfo>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, VersionInfo> summaries = new ConcurrentHashMap<>();
+    // 以下字段由 this 保护
+    private final Map<String, JsonNode> memoryCache = new LinkedHashMap<String, JsonNode>(MEMORY_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JsonNode> eldest) {
+            return size() > MEMORY_CACHE_SIZE;
+        }
+    };
+    // 库坐标 -> 使用它的版本号，按坐标排序便于前缀和子串查找
+    private final TreeMap<String, SortedSet<String>> libraryIndex = new TreeMap<>();
+    private boolean saveScheduled;
+
+    private VersionIndex(File indexFile) {
+        this.indexFile = indexFile;
+        loadSummaries();
+    }
+
+    public void register(String id, String url, String sha1) {
+        refs.put(id, new String[]{url, sha1});
+    }
+
+    public VersionInfo getSummary(String id) {
+        return summaries.get(id);
+    }
+
+    // 异步载入一个版本；同一版本同时只会有一个请求
+    public CompletableFuture<VersionInfo> load(String id) {
+        VersionInfo summary = summaries.get(id);
+        if (summary != null) {
+            return CompletableFuture.completedFuture(summary);
+        }
+        CompletableFuture<VersionInfo> future = inFlight.computeIfAbsent(id, key -> CompletableFuture.supplyAsync(() -> {
+            try {
+                getVersionJson(key);
+                return summaries.get(key);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, prefetchPool));
+        // 清理回调在 computeIfAbsent 返回之后再挂：任务可能已经完成，回调会立即执行，
+        // 在映射函数里修改同一个键会抛出 IllegalStateException: Recursive update
+        future.whenComplete((info, error) -> inFlight.remove(id, future));
+        return future;
+    }
+
+    public void prefetch(Collection<String> ids) {
+        for (String id : ids) {
+            if (!summaries.containsKey(id) && refs.containsKey(id)) {
+                load(id);
+            }
+        }
+    }
+
+    // 取得完整的版本 JSON：内存缓存 -> 磁盘缓存（按 SHA-1 命中无需联网）-> 下载
+    public JsonNode getVersionJson(String id) throws IOException {
+        synchronized (this) {
+            JsonNode cached = memoryCache.get(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        String[] ref = refs.get(id);
+        if (ref == null) {
+            throw new IOException("未知的版本: " + id);
+        }
+        JsonNode root = ArtifactCache.getInstance().fetch(new URL(ref[0]), ref[1], objectMapper::readTree);
+        synchronized (this) {
+            memoryCache.put(id, root);
+        }
+        if (!summaries.containsKey(id)) {
+            addSummary(summarize(id, root));
+        }
+        return root;
+    }
+
+    // 按库坐标子串查找，返回 坐标 -> 使用该库的已索引版本
+    public synchronized SortedMap<String, SortedSet<String>> findLibraries(String query) {
+        String needle = query.trim().toLowerCase();
+        SortedMap<String, SortedSet<String>> result = new TreeMap<>();
+        for (Map.Entry<String, SortedSet<String>> entry : libraryIndex.entrySet()) {
+            if (entry.getKey().toLowerCase().contains(needle)) {
+                result.put(entry.getKey(), new TreeSet<>(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    public int getIndexedCount() {
+        return summaries.size();
+    }
+
+    private static VersionInfo summarize(String id, JsonNode root) {
+        VersionInfo info = new VersionInfo();
+        info.id = id;
+        info.type = root.path("type").asText();
+        info.mainClass = root.path("mainClass").asText();
+        info.javaVersion = root.path("javaVersion").path("majorVersion").asInt(0);
+        info.assetIndex = root.path("assetIndex").path("id").asText();
+        info.assetsSize = root.path("assetIndex").path("totalSize").asLong(0);
+        info.clientSize = root.path("downloads").path("client").path("size").asLong(0);
+        info.serverSize = root.path("downloads").path("server").path("size").asLong(0);
+        for (JsonNode library : root.path("libraries")) {
+            LibraryInfo lib = new LibraryInfo();
+            lib.name = library.path("name").asText();
+            lib.size = library.path("downloads").path("artifact").path("size").asLong(0);
+            info.libraries.add(lib);
+            info.librariesSize += lib.size;
+        }
+        return info;
+    }
+
+    private void addSummary(VersionInfo info) {
+        summaries.put(info.id, info);
+        synchronized (this) {
+            indexLibraries(info);
+            scheduleSave();
+        }
+    }
+
+    private void indexLibraries(VersionInfo info) {
+        for (LibraryInfo lib : info.libraries) {
+            libraryIndex.computeIfAbsent(lib.name, k -> new TreeSet<>()).add(info.id);
+        }
+    }
+
+    private void loadSummaries() {
+        if (!indexFile.isFile()) {
+            return;
+        }
+        try {
+            MapType type = objectMapper.getTypeFactory().constructMapType(HashMap.class, String.class, VersionInfo.class);
+            Map<String, VersionInfo> loaded = objectMapper.readValue(indexFile, type);
+            summaries.putAll(loaded);
+            synchronized (this) {
+                for (VersionInfo info : loaded.values()) {
+                    indexLibraries(info);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void scheduleSave() {
+        if (saveScheduled) {
+            return;
+        }
+        saveScheduled = true;
+        saver.schedule(this::saveSummaries, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void saveSummaries() {
+        synchronized (this) {
+            saveScheduled = false;
+        }
+        File temp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try {
+            indexFile.getParentFile().mkdirs();
+            objectMapper.writeValue(temp, new HashMap<>(summaries));
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static class VersionInfo {
+        public String id;
+        public String type;
+        public String mainClass;
+        public int javaVersion;
+        public String assetIndex;
+        public long assetsSize;
+        public long clientSize;
+        public long serverSize;
+        public long librariesSize;
+        public List<LibraryInfo> libraries = new ArrayList<>();
+    }
+
+    public static class LibraryInfo {
+        public String name;
+        public long size;
+    }
+}
\ No newline at end of file
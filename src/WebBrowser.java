@@ -11,7 +11,10 @@ import java.net.URLConnection;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class WebBrowser extends JFrame {
 
@@ -33,6 +36,10 @@ public class WebBrowser extends JFrame {
     // 默认主页
     private static final String DEFAULT_HOME = "https://www.google.com";
 
+    private static final int DEFAULT_DOWNLOAD_THREADS = 4;
+    private static final Set<String> DOWNLOAD_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jar", "zip", "rar", "7z", "gz", "exe", "msi", "mrpack", "mcpack", "mcworld", "iso", "dmg"));
+
     public WebBrowser() {
         super("Web Browser");
 
@@ -379,16 +386,61 @@ public class WebBrowser extends JFrame {
         JScrollPane scrollPane = new JScrollPane(downloadList);
 
         JPanel buttonPanel = new JPanel(new FlowLayout());
+        JButton cancelButton = new JButton("取消下载");
+        cancelButton.addActionListener(e -> {
+            DownloadManager.DownloadItem item = downloadList.getSelectedValue();
+            if (item != null && item.getJob() != null) {
+                item.getJob().cancel();
+            }
+        });
+        buttonPanel.add(cancelButton);
+
         JButton clearButton = new JButton("清空下载");
         clearButton.addActionListener(e -> {
             downloadManager.clearDownloads();
-            downloadList.setListData(new DownloadManager.DownloadItem[0]);
+            downloadList.setListData(downloadManager.getDownloads().toArray(new DownloadManager.DownloadItem[0]));
         });
         buttonPanel.add(clearButton);
 
+        // 对话框打开期间定时刷新进度
+        Timer refreshTimer = new Timer(500, e -> downloadList.repaint());
+        refreshTimer.start();
+
         dialog.add(scrollPane, BorderLayout.CENTER);
         dialog.add(buttonPanel, BorderLayout.SOUTH);
         dialog.setVisible(true);
+        refreshTimer.stop();
+    }
+
+    // 链接指向文件时交给下载管理器，而不是在页面中打开
+    private boolean startDownloadIfFile(URL url) {
+        String path = url.getPath();
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0 || !DOWNLOAD_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase())) {
+            return false;
+        }
+        File target = downloadTarget(new File(System.getProperty("user.home") + "/Downloads"), fileName, url);
+        downloadManager.addDownload(url.toString(), target.getAbsolutePath());
+        updateStatus("已加入下载队列: " + target.getName());
+        return true;
+    }
+
+    // 下载引擎不续传时会先删掉已有的同名文件，所以同名文件已存在或正被别的下载使用时改名为 "name (1).ext"；
+    // 同一地址留下的未完成下载沿用原文件名，接着续传
+    private File downloadTarget(File directory, String fileName, URL url) {
+        int dot = fileName.lastIndexOf('.');
+        String base = fileName.substring(0, dot);
+        String extension = fileName.substring(dot);
+        File target = new File(directory, fileName);
+        for (int n = 1; ; n++) {
+            boolean free = !target.exists() && !DownloadEngine.stateFileFor(target).exists()
+                    || DownloadEngine.canResume(target, url);
+            if (free && !downloadManager.isDownloadingTo(target)) {
+                return target;
+            }
+            target = new File(directory, base + " (" + n + ")" + extension);
+        }
     }
 
     private void showAbout() {
@@ -465,7 +517,7 @@ public class WebBrowser extends JFrame {
                             HTMLFrameHyperlinkEvent frameEvent = (HTMLFrameHyperlinkEvent) e;
                             HTMLDocument doc = (HTMLDocument) editorPane.getDocument();
                             doc.processHTMLFrameHyperlinkEvent(frameEvent);
-                        } else {
+                        } else if (!browserWindow.startDownloadIfFile(e.getURL())) {
                             navigateTo(e.getURL().toString());
                         }
                     }
@@ -732,7 +784,7 @@ public class WebBrowser extends JFrame {
         }
     }
 
-    // 内部类：下载管理器
+    // 内部类：下载管理器，实际下载交给全局 DownloadScheduler
     private class DownloadManager {
         private List<DownloadItem> downloads;
 
@@ -740,17 +792,25 @@ public class WebBrowser extends JFrame {
             this.downloads = new ArrayList<>();
         }
 
-        public void addDownload(String url, String filePath) {
+        public DownloadItem addDownload(String url, String filePath) {
             DownloadItem item = new DownloadItem(url, filePath, LocalDateTime.now());
             downloads.add(0, item);
+            return item;
         }
 
         public List<DownloadItem> getDownloads() {
             return new ArrayList<>(downloads);
         }
 
+        // 是否有进行中的下载以 file 为目标
+        public boolean isDownloadingTo(File file) {
+            String path = file.getAbsolutePath();
+            return downloads.stream().anyMatch(item -> item.isActive() && item.getFilePath().equals(path));
+        }
+
+        // 只清除已经结束的下载，进行中的任务保留
         public void clearDownloads() {
-            downloads.clear();
+            downloads.removeIf(item -> !item.isActive());
         }
 
         public class DownloadItem {
@@ -758,23 +818,42 @@ public class WebBrowser extends JFrame {
             private String filePath;
             private LocalDateTime downloadTime;
             private String status;
+            private DownloadScheduler.Job job;
 
             public DownloadItem(String url, String filePath, LocalDateTime downloadTime) {
                 this.url = url;
                 this.filePath = filePath;
                 this.downloadTime = downloadTime;
-                this.status = "已完成";
+                try {
+                    this.job = DownloadScheduler.getInstance().submit(new URL(url), new File(filePath),
+                            DEFAULT_DOWNLOAD_THREADS, DownloadScheduler.PRIORITY_NORMAL);
+                } catch (IOException e) {
+                    this.status = "失败";
+                }
             }
 
             public String getUrl() { return url; }
             public String getFilePath() { return filePath; }
             public LocalDateTime getDownloadTime() { return downloadTime; }
-            public String getStatus() { return status; }
+            public String getStatus() { return job != null ? job.getStatus().getDescription() : status; }
             public void setStatus(String status) { this.status = status; }
+            public DownloadScheduler.Job getJob() { return job; }
+
+            public boolean isActive() {
+                if (job == null) {
+                    return false;
+                }
+                DownloadScheduler.Status jobStatus = job.getStatus();
+                return jobStatus == DownloadScheduler.Status.QUEUED || jobStatus == DownloadScheduler.Status.RUNNING;
+            }
 
             @Override
             public String toString() {
-                return filePath + " - " + status + " (" + downloadTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) + ")";
+                String progress = "";
+                if (job != null && job.getStatus() == DownloadScheduler.Status.RUNNING && job.getFileSize() > 0) {
+                    progress = " " + (job.getDownloaded() * 100 / job.getFileSize()) + "%";
+                }
+                return filePath + " - " + getStatus() + progress + " (" + downloadTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")) + ")";
             }
         }
     }